@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ *
+ * This file is part of The Lambda Calculator.
+ *
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * Benchmark.java
+ */
+
+package lambdacalc;
+
+import java.io.*;
+import java.util.*;
+import lambdacalc.exercises.*;
+import lambdacalc.lf.*;
+import lambdacalc.logic.*;
+
+/**
+ * Micro-benchmarks for the core operations of the program, driven by the
+ * exercise files in examples/. Run it with
+ * <pre>--benchmark [--warmup N] [--iterations N] [file-or-directory...]</pre>.
+ *
+ * The exercise files are loaded once to build a corpus of expression
+ * strings, expressions, type strings, types and trees. Each benchmark then
+ * runs over the whole corpus for a number of warm-up iterations followed by
+ * the measured iterations, and the mean and best time per operation is
+ * reported. Several of the operations cache their results on the Expr
+ * objects, so the benchmarks that measure them work on fresh copies of the
+ * corpus made (untimed) before each iteration.
+ */
+public class Benchmark {
+
+    private static final String[] DEFAULT_PATHS = {
+        "examples/all-exercises", "examples/hk", "examples/more-exercises"
+    };
+
+    /**
+     * Results are folded into this so the JIT can't discard the work.
+     */
+    private static volatile int sink;
+
+    private int warmupIterations = 5;
+    private int measuredIterations = 10;
+
+    // the corpus
+    private List<String> exprStrings = new ArrayList<String>();
+    private List<ExpressionParser.ParseOptions> exprOptions = new ArrayList<ExpressionParser.ParseOptions>(); // parallel to exprStrings
+    private List<Expr> exprs = new ArrayList<Expr>();     // parallel to exprStrings
+    private List<Expr> reducible = new ArrayList<Expr>(); // from lambda conversion exercises and lexicons
+    private List<String> typeStrings = new ArrayList<String>();
+    private List<Type> types = new ArrayList<Type>();     // distinct
+    private List<TreeSource> trees = new ArrayList<TreeSource>();
+    private int filesLoaded, filesSkipped;
+
+    /**
+     * A tree string together with what's needed to interpret it.
+     */
+    private static class TreeSource {
+        final String tree;
+        final Lexicon lexicon;
+        final RuleList rules;
+        final EvaluationContext context;
+        TreeSource(String tree, Lexicon lexicon, RuleList rules, IdentifierTyper typer) {
+            this.tree = tree;
+            this.lexicon = lexicon;
+            this.rules = rules;
+            this.context = new EvaluationContext(rules, typer);
+        }
+    }
+
+    /**
+     * A single benchmark. setUp is called before each iteration and is not
+     * timed; run performs getOperations() operations.
+     */
+    private abstract static class Case {
+        final String name;
+        Case(String name) {
+            this.name = name;
+        }
+        abstract int getOperations();
+        void setUp() throws Exception {
+        }
+        abstract void run() throws Exception;
+    }
+
+    public Benchmark() {
+    }
+
+    public void setWarmupIterations(int n) {
+        warmupIterations = n;
+    }
+
+    public void setMeasuredIterations(int n) {
+        if (n < 1)
+            throw new IllegalArgumentException("At least one measured iteration is required.");
+        measuredIterations = n;
+    }
+
+    /**
+     * Adds the exercise files (.txt) among the given paths to the corpus,
+     * descending into directories.
+     */
+    public void loadCorpus(File path) {
+        if (path.isDirectory()) {
+            File[] children = path.listFiles();
+            if (children == null)
+                return;
+            Arrays.sort(children);
+            for (int i = 0; i < children.length; i++)
+                if (children[i].isDirectory() || children[i].getName().endsWith(".txt"))
+                    loadCorpus(children[i]);
+            return;
+        }
+
+        ExerciseFile ef;
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(path), "UTF-8");
+            try {
+                ef = ExerciseFileParser.parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            filesSkipped++;
+            return;
+        }
+        filesLoaded++;
+
+        for (Iterator i = ef.getLexicon().getEntries().iterator(); i.hasNext(); ) {
+            Lexicon.Entry entry = (Lexicon.Entry)i.next();
+            addExpression(entry.meaning.toString(), entry.meaning, IdentifierTyper.createDefault());
+            reducible.add(entry.meaning);
+        }
+
+        for (Iterator i = ef.exercises().iterator(); i.hasNext(); ) {
+            Exercise ex = (Exercise)i.next();
+            if (ex instanceof TreeExercise) {
+                TreeExercise te = (TreeExercise)ex;
+                addTree(te.getTree().toString(), ef.getLexicon(), ef.getRules(), te.getIdentifierTyper());
+            } else if (ex instanceof HasIdentifierTyper) {
+                IdentifierTyper typer = ((HasIdentifierTyper)ex).getIdentifierTyper();
+                Expr expr = addExpression(ex.getExerciseText(), null, typer);
+                if (expr != null && ex instanceof LambdaConversionExercise)
+                    reducible.add(expr);
+            }
+        }
+    }
+
+    /**
+     * Adds an expression string to the corpus if it parses (expressions are
+     * printed with Unicode symbols, so they are parsed in non-ASCII mode),
+     * and the types occurring in it.
+     */
+    private Expr addExpression(String text, Expr meaning, IdentifierTyper typer) {
+        ExpressionParser.ParseOptions opts = new ExpressionParser.ParseOptions(false, false, typer);
+        Expr expr;
+        try {
+            expr = ExpressionParser.parse(text, opts);
+        } catch (SyntaxException e) {
+            return null;
+        }
+        exprStrings.add(text);
+        exprOptions.add(opts);
+        exprs.add(expr);
+
+        try {
+            addType((meaning != null ? meaning : expr).getType());
+        } catch (TypeEvaluationException e) {
+        }
+        return expr;
+    }
+
+    private void addType(Type type) {
+        if (types.contains(type))
+            return;
+        try {
+            TypeParser.parse(type.toString());
+        } catch (SyntaxException e) {
+            return;
+        }
+        types.add(type);
+        typeStrings.add(type.toString());
+        if (type instanceof CompositeType) {
+            addType(((CompositeType)type).getLeft());
+            addType(((CompositeType)type).getRight());
+        }
+    }
+
+    private void addTree(String tree, Lexicon lexicon, RuleList rules, IdentifierTyper typer) {
+        try {
+            if (!BracketedTreeParser.parse(tree).toString().equals(tree))
+                return; // doesn't survive printing, e.g. has inline meanings
+        } catch (SyntaxException e) {
+            return;
+        }
+        trees.add(new TreeSource(tree, lexicon, rules, typer));
+    }
+
+    /**
+     * Makes a copy of the expression with all new nonterminal nodes, so none
+     * of the values cached on the nodes carry over.
+     */
+    private static Expr copy(Expr expr) {
+        List subs = expr.getSubExpressions();
+        if (subs == null || subs.size() == 0)
+            return expr;
+        List<Expr> newSubs = new ArrayList<Expr>(subs.size());
+        for (int i = 0; i < subs.size(); i++)
+            newSubs.add(copy((Expr)subs.get(i)));
+        return expr.createFromSubExpressions(newSubs);
+    }
+
+    private static List<Expr> copyAll(List<Expr> exprs) {
+        List<Expr> ret = new ArrayList<Expr>(exprs.size());
+        for (int i = 0; i < exprs.size(); i++)
+            ret.add(copy(exprs.get(i)));
+        return ret;
+    }
+
+    /**
+     * Expr.replace as it was before it used ExprTransformer, which makes a
+     * new Vector of subexpressions at every node whether or not any of them
+     * change. The Expr.replace case is measured against this.
+     */
+    private static Expr vectorReplace(Expr expr, Expr thisExpr, Expr byExpr) {
+        if (expr.equals(thisExpr)) return byExpr;
+
+        Iterator subExpressions = expr.getSubExpressions().iterator();
+        List<Expr> newSubExpr = new Vector<Expr>();
+        boolean madeChange = false;
+        while (subExpressions.hasNext()) {
+            Expr next = (Expr) subExpressions.next();
+            Expr newnext = vectorReplace(next, thisExpr, byExpr);
+            newSubExpr.add(newnext);
+            if (next != newnext) madeChange = true;
+        }
+
+        if (madeChange)
+            return expr.createFromSubExpressions(newSubExpr);
+        else
+            return expr;
+    }
+
+    private static void evaluateTree(LFNode node, EvaluationContext context) {
+        try {
+            sink += node.getMeaning(context, null).hashCode();
+        } catch (MeaningEvaluationException e) {
+            sink++;
+        }
+        for (Iterator i = node.getChildren().iterator(); i.hasNext(); )
+            evaluateTree((LFNode)i.next(), context);
+    }
+
+    private List<Case> createCases() {
+        List<Case> cases = new ArrayList<Case>();
+
+        cases.add(new Case("ExpressionParser.parse") {
+            int getOperations() { return exprStrings.size(); }
+            void run() throws Exception {
+                for (int i = 0; i < exprStrings.size(); i++)
+                    sink += ExpressionParser.parse(exprStrings.get(i),
+                            exprOptions.get(i)).hashCode();
+            }
+        });
+
+        cases.add(new Case("TypeParser.parse") {
+            int getOperations() { return typeStrings.size(); }
+            void run() throws Exception {
+                for (int i = 0; i < typeStrings.size(); i++)
+                    sink += TypeParser.parse(typeStrings.get(i)).hashCode();
+            }
+        });
+
+        cases.add(new Case("Expr.getType") {
+            List<Expr> fresh;
+            int getOperations() { return exprs.size(); }
+            void setUp() { fresh = copyAll(exprs); }
+            void run() {
+                for (int i = 0; i < fresh.size(); i++) {
+                    try {
+                        sink += fresh.get(i).getType().hashCode();
+                    } catch (TypeEvaluationException e) {
+                        sink++;
+                    }
+                }
+            }
+        });
+
+        cases.add(new Case("Expr.simplifyFully") {
+            List<Expr> fresh;
+            int getOperations() { return reducible.size(); }
+            void setUp() { fresh = copyAll(reducible); }
+            void run() {
+                for (int i = 0; i < fresh.size(); i++) {
+                    try {
+                        sink += fresh.get(i).simplifyFully().hashCode();
+                    } catch (TypeEvaluationException e) {
+                        sink++;
+                    }
+                }
+            }
+        });
+
+        cases.add(new Case("Expr.alphaEquivalent") {
+            List<Expr> left, right;
+            int getOperations() { return 2 * exprs.size(); }
+            void setUp() {
+                left = copyAll(exprs);
+                right = copyAll(exprs);
+            }
+            void run() {
+                // each expression against a copy of itself and against its neighbor
+                for (int i = 0; i < left.size(); i++) {
+                    Expr e = left.get(i);
+                    if (e.alphaEquivalent(right.get(i)))
+                        sink++;
+                    if (e.alphaEquivalent(right.get((i + 1) % right.size())))
+                        sink++;
+                }
+            }
+        });
+
+        cases.add(new Case("Expr.replace") {
+            final Var unused = new Var("unused", Type.E, false);
+            int getOperations() { return 2 * exprs.size(); }
+            void run() {
+                // a variable that occurs in most expressions, and one that
+                // occurs in none, so most nodes are left unchanged
+                for (int i = 0; i < exprs.size(); i++) {
+                    Expr e = exprs.get(i);
+                    sink += System.identityHashCode(e.replace(Var.X, Var.Z));
+                    sink += System.identityHashCode(e.replace(unused, Var.X));
+                }
+            }
+        });
+
+        cases.add(new Case("Expr.replace (old, for reference)") {
+            final Var unused = new Var("unused", Type.E, false);
+            int getOperations() { return 2 * exprs.size(); }
+            void run() {
+                for (int i = 0; i < exprs.size(); i++) {
+                    Expr e = exprs.get(i);
+                    sink += System.identityHashCode(vectorReplace(e, Var.X, Var.Z));
+                    sink += System.identityHashCode(vectorReplace(e, unused, Var.X));
+                }
+            }
+        });
+
+        cases.add(new Case("Type.matches") {
+            int getOperations() { return types.size() * types.size(); }
+            void run() {
+                for (int i = 0; i < types.size(); i++) {
+                    Type t = types.get(i);
+                    for (int j = 0; j < types.size(); j++)
+                        if (t.matches(types.get(j)) != null)
+                            sink++;
+                }
+            }
+        });
+
+        cases.add(new Case("BracketedTreeParser.parse+getMeaning") {
+            int getOperations() { return trees.size(); }
+            void run() throws Exception {
+                for (int i = 0; i < trees.size(); i++) {
+                    TreeSource t = trees.get(i);
+                    Nonterminal root = BracketedTreeParser.parse(t.tree);
+                    root.guessLexicalEntries(t.lexicon);
+                    root.guessRules(t.rules, false);
+                    evaluateTree(root, t.context);
+                }
+            }
+        });
+
+        cases.add(new Case("parse+ParallelEvaluator.evaluate") {
+            int getOperations() { return trees.size(); }
+            void run() throws Exception {
+                for (int i = 0; i < trees.size(); i++) {
+                    TreeSource t = trees.get(i);
+                    Nonterminal root = BracketedTreeParser.parse(t.tree);
+                    root.guessLexicalEntries(t.lexicon);
+                    root.guessRules(t.rules, false);
+                    sink += new ParallelEvaluator(t.context).evaluate(root).size();
+                }
+            }
+        });
+
+        return cases;
+    }
+
+    /**
+     * Runs each benchmark and writes a table of results to out.
+     */
+    public void run(PrintStream out) throws Exception {
+        out.println("corpus: " + filesLoaded + " files (" + filesSkipped + " skipped), "
+                + exprStrings.size() + " expressions, " + reducible.size() + " reducible, "
+                + types.size() + " types, " + trees.size() + " trees");
+        out.println("warm-up iterations: " + warmupIterations + ", measured iterations: " + measuredIterations);
+        out.println();
+        out.println(pad("benchmark", 40) + pad("ops/iter", 10) + pad("mean us/op", 14) + "best us/op");
+
+        for (Iterator<Case> i = createCases().iterator(); i.hasNext(); ) {
+            Case c = i.next();
+            if (c.getOperations() == 0) {
+                out.println(pad(c.name, 40) + "(empty corpus)");
+                continue;
+            }
+
+            for (int k = 0; k < warmupIterations; k++) {
+                c.setUp();
+                c.run();
+            }
+
+            long total = 0, best = Long.MAX_VALUE;
+            for (int k = 0; k < measuredIterations; k++) {
+                c.setUp();
+                long start = System.nanoTime();
+                c.run();
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                if (elapsed < best)
+                    best = elapsed;
+            }
+
+            double ops = c.getOperations();
+            out.println(pad(c.name, 40) + pad(String.valueOf(c.getOperations()), 10)
+                    + pad(format(total / (double)measuredIterations / ops / 1000.0), 14)
+                    + format(best / ops / 1000.0));
+        }
+    }
+
+    private static String pad(String s, int width) {
+        StringBuffer b = new StringBuffer(s);
+        do {
+            b.append(' ');
+        } while (b.length() < width);
+        return b.toString();
+    }
+
+    private static String format(double d) {
+        return String.valueOf(Math.round(d * 1000.0) / 1000.0); // three decimal places
+    }
+
+    /**
+     * Command-line entry point: [--warmup N] [--iterations N] [path...].
+     * With no paths, the exercise directories under examples/ are used.
+     */
+    public static void main(String[] args) throws Exception {
+        Benchmark b = new Benchmark();
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--warmup") && i + 1 < args.length) {
+                b.setWarmupIterations(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--iterations") && i + 1 < args.length) {
+                b.setMeasuredIterations(Integer.parseInt(args[++i]));
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() == 0)
+            paths.addAll(Arrays.asList(DEFAULT_PATHS));
+
+        // Parts of the program print diagnostics as they go, which would
+        // both clutter the report and skew the timings.
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for (int i = 0; i < paths.size(); i++)
+                b.loadCorpus(new File(paths.get(i)));
+            b.run(out);
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
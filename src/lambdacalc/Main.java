@@ -84,6 +84,9 @@ public class Main {
      * The main entry point.  Show the main GUI window, or if the single 
      * command line argument <pre>--version</pre> is given, prints the
      * version number and mode (student edition, teacher edition) and exits.
+     * With <pre>--grade [--csv|--json] [--threads N] file-or-directory...</pre>,
+     * grades student work files headlessly (see BatchGrader). With
+     * <pre>--benchmark</pre>, times the core operations (see Benchmark).
      *
      * @param args the command line arguments
      */
@@ -123,6 +126,27 @@ public class Main {
             return;
         }
         
+        // grade student work files without the GUI (BatchGrader prints the
+        // usage if no files are given)
+        if (args.length >= 1 && args[0].equals("--grade")) {
+            String[] gradeArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, gradeArgs, 0, gradeArgs.length);
+            lambdacalc.exercises.BatchGrader.main(gradeArgs);
+            return;
+        }
+        
+        // time the core operations over the example exercise files
+        if (args.length >= 1 && args[0].equals("--benchmark")) {
+            String[] benchmarkArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, benchmarkArgs, 0, benchmarkArgs.length);
+            try {
+                Benchmark.main(benchmarkArgs);
+            } catch (Exception ex) {
+                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return;
+        }
+        
         // for debugging Polymorphism
         if (args.length == 2 && args[0].equals("--TypeChecker")) {
             try {
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ *
+ * This file is part of The Lambda Calculator.
+ *
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * BatchGrader.java
+ */
+
+package lambdacalc.exercises;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Grades student work files (.lbd) without the GUI. This is the headless
+ * counterpart of the teacher tool: every work file found in the given files
+ * and directories is loaded and scored on a fork-join pool, and one row per
+ * file is written to the output as CSV or as JSON (one object per line).
+ * Rows are written in sorted path order as soon as each file and all the
+ * files before it have been graded, so output streams while later files are
+ * still being loaded.
+ */
+public class BatchGrader {
+
+    /**
+     * The suffix of student work files. (This is the same as
+     * TrainingWindow.SERIALIZED_FILE_SUFFIX, but we don't want to touch the
+     * GUI classes when running headless.)
+     */
+    public static final String WORK_FILE_SUFFIX = ".lbd";
+
+    private static final String[] COLUMNS = {
+        "file", "title", "student", "correct", "exercises", "points", "total", "error"
+    };
+
+    private boolean json = false;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates a new BatchGrader that writes CSV using all available processors.
+     */
+    public BatchGrader() {
+    }
+
+    /**
+     * Sets whether rows are written as JSON objects (one per line) rather
+     * than as CSV.
+     */
+    public void setJSON(boolean json) {
+        this.json = json;
+    }
+
+    /**
+     * Sets the number of threads used to load and grade files.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The number of threads must be at least one.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * The score of a single work file, or the reason it could not be loaded.
+     */
+    public static class Result {
+        public final File file;
+        public final String title;
+        public final String studentName;
+        public final int numberCorrect;
+        public final int numberOfExercises;
+        public final java.math.BigDecimal pointsCorrect;
+        public final java.math.BigDecimal totalPointsAvailable;
+        public final String errorMessage; // null unless the file couldn't be loaded
+
+        Result(File file, ExerciseFile ex) {
+            this.file = file;
+            this.title = ex.getTitle();
+            this.studentName = ex.getStudentName();
+            this.numberCorrect = ex.getNumberCorrect();
+            this.numberOfExercises = ex.exercises().size();
+            this.pointsCorrect = ex.getPointsCorrect();
+            this.totalPointsAvailable = ex.getTotalPointsAvailable();
+            this.errorMessage = null;
+        }
+
+        Result(File file, String errorMessage) {
+            this.file = file;
+            this.title = null;
+            this.studentName = null;
+            this.numberCorrect = 0;
+            this.numberOfExercises = 0;
+            this.pointsCorrect = null;
+            this.totalPointsAvailable = null;
+            this.errorMessage = errorMessage;
+        }
+
+        Object[] getValues() {
+            return new Object[] {
+                file.getPath(), title, studentName,
+                errorMessage == null ? Integer.valueOf(numberCorrect) : null,
+                errorMessage == null ? Integer.valueOf(numberOfExercises) : null,
+                pointsCorrect, totalPointsAvailable, errorMessage
+            };
+        }
+    }
+
+    /**
+     * Loads and scores a single work file. Any problem reading the file is
+     * reported in the Result rather than thrown.
+     */
+    public static Result grade(File file) {
+        try {
+            return new Result(file, new ExerciseFile(file));
+        } catch (ExerciseFileVersionException e) {
+            return new Result(file, "The file was saved by an incompatible version of the Lambda Calculator.");
+        } catch (ExerciseFileFormatException e) {
+            return new Result(file, "The file is not a Lambda Calculator work file.");
+        } catch (IOException e) {
+            return new Result(file, e.getMessage() == null ? "Unknown read error." : e.getMessage());
+        } catch (RuntimeException e) {
+            return new Result(file, e.toString());
+        }
+    }
+
+    /**
+     * Collects the work files among the given paths, descending into
+     * directories, in sorted order.
+     */
+    public static List<File> findWorkFiles(File[] paths) {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < paths.length; i++)
+            findWorkFiles(paths[i], files, true);
+        return files;
+    }
+
+    private static void findWorkFiles(File path, List<File> files, boolean explicit) {
+        if (path.isDirectory()) {
+            File[] children = path.listFiles();
+            if (children == null)
+                return;
+            Arrays.sort(children);
+            for (int i = 0; i < children.length; i++)
+                findWorkFiles(children[i], files, false);
+        } else if (explicit || path.getName().endsWith(WORK_FILE_SUFFIX)) {
+            files.add(path);
+        }
+    }
+
+    /**
+     * Grades the work files among the given paths and writes a header and one
+     * row per file to out.
+     * @return the number of files that could not be loaded
+     */
+    public int run(File[] paths, PrintStream out) throws InterruptedException {
+        List<File> files = findWorkFiles(paths);
+
+        if (!json)
+            out.println(toCSV(COLUMNS));
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<ForkJoinTask<Result>>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                final File file = files.get(i);
+                tasks.add(pool.submit(new Callable<Result>() {
+                    public Result call() {
+                        return grade(file);
+                    }
+                }));
+            }
+
+            int failures = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                Result r;
+                try {
+                    r = tasks.get(i).get();
+                } catch (ExecutionException e) {
+                    r = new Result(files.get(i), e.getCause().toString());
+                }
+                if (r.errorMessage != null)
+                    failures++;
+                Object[] values = r.getValues();
+                out.println(json ? toJSON(values) : toCSV(values));
+            }
+            out.flush();
+            return failures;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String toCSV(Object[] values) {
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                b.append(',');
+            if (values[i] == null)
+                continue;
+            String v = values[i].toString();
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                b.append('"');
+                b.append(v.replaceAll("\"", "\"\""));
+                b.append('"');
+            } else {
+                b.append(v);
+            }
+        }
+        return b.toString();
+    }
+
+    private static String toJSON(Object[] values) {
+        StringBuffer b = new StringBuffer("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                b.append(", ");
+            appendJSONString(b, COLUMNS[i]);
+            b.append(": ");
+            Object v = values[i];
+            if (v == null)
+                b.append("null");
+            else if (v instanceof Number)
+                b.append(v.toString());
+            else
+                appendJSONString(b, v.toString());
+        }
+        b.append('}');
+        return b.toString();
+    }
+
+    private static void appendJSONString(StringBuffer b, String s) {
+        b.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': b.append("\\\""); break;
+                case '\\': b.append("\\\\"); break;
+                case '\n': b.append("\\n"); break;
+                case '\r': b.append("\\r"); break;
+                case '\t': b.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        b.append("\\u");
+                        for (int j = hex.length(); j < 4; j++)
+                            b.append('0');
+                        b.append(hex);
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+        b.append('"');
+    }
+
+    /**
+     * Command-line entry point: [--json] [--threads N] path...
+     * Exits with status 1 if any file could not be loaded.
+     */
+    public static void main(String[] args) {
+        BatchGrader grader = new BatchGrader();
+        List<File> paths = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--json")) {
+                grader.setJSON(true);
+            } else if (args[i].equals("--csv")) {
+                grader.setJSON(false);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                try {
+                    grader.setParallelism(Integer.parseInt(args[++i]));
+                } catch (IllegalArgumentException e) { // includes NumberFormatException
+                    System.err.println("Invalid number of threads: " + args[i]);
+                    System.exit(2);
+                }
+            } else {
+                paths.add(new File(args[i]));
+            }
+        }
+
+        if (paths.size() == 0) {
+            System.err.println("usage: --grade [--csv|--json] [--threads N] file-or-directory...");
+            System.exit(2);
+        }
+
+        int failures;
+        try {
+            failures = grader.run(paths.toArray(new File[0]), System.out);
+        } catch (InterruptedException e) {
+            failures = 1;
+        }
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -153,6 +153,18 @@ public abstract class Exercise {
         return getLastAnswer() != null;
     }
     
+    /**
+     * Does ahead of time the work that would otherwise be done when the
+     * exercise is first shown or answered, like working out its solution.
+     * This may be called on a background thread, but not while the exercise
+     * is being shown on another thread (see ExercisePrecomputer).
+     * The default implementation does nothing.
+     *
+     * @param file the file the exercise belongs to
+     */
+    public void precompute(ExerciseFile file) {
+    }
+    
     /**
      * Resets an exercise to its pristine unanswered state.
      */
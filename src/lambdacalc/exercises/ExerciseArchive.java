@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ *
+ * This file is part of The Lambda Calculator.
+ *
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExerciseArchive.java
+ */
+
+package lambdacalc.exercises;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import lambdacalc.logic.ExprInputStream;
+
+/**
+ * Random access to an exercise file saved in the archive layout of file
+ * format version 4. After the magic string and version number, such a file
+ * is a sequence of independently compressed blocks, one holding the title,
+ * student name, teacher comments, lexicon and rules, and one for each
+ * exercise. Exercises are small and repeat much of each other and of the
+ * lexicon (typing conventions, constants, tree labels), so their blocks are
+ * compressed with a preset dictionary: the end of the uncompressed header
+ * followed by the first exercise of each group, which is stored in a block
+ * of its own (compressed with the end of the header as its dictionary).
+ * Exercise blocks also start out with the expression tables of the header
+ * (see readHeader). A compressed index follows the blocks, and the file
+ * ends with the offset of the index:
+ * <pre>
+ *   int dictionaryOffset, int dictionaryLength,
+ *   int headerOffset, int headerLength, short groupCount,
+ *   for each group: UTF title, UTF directions, short exerciseCount,
+ *     for each exercise: int offset, int length, boolean done, UTF points,
+ *       UTF shortTitle, UTF exerciseText
+ *   int indexOffset
+ * </pre>
+ * Since the index records the title and text of each exercise, whether it
+ * is done and what it is worth, a file can be opened, listed and scored by
+ * reading just the index and the header block. The block of an exercise is
+ * read when the exercise is first accessed (see ExerciseGroup.getItem). The
+ * file isn't kept open in the meanwhile, so that it can be saved over.
+ */
+class ExerciseArchive {
+    
+    /**
+     * The file format version number of the archive layout.
+     */
+    static final int FORMAT_VERSION = 4;
+    
+    /**
+     * The largest useful preset dictionary, the size of the deflate window.
+     */
+    private static final int MAX_DICTIONARY_SIZE = 32768;
+    
+    private File file;
+    private long length, lastModified;
+    
+    private int dictionaryOffset, dictionaryLength, headerOffset, headerLength;
+    private byte[] header; // the uncompressed header block
+    private ExprInputStream headerInput; // the stream the header was read from, whose tables the exercise blocks start with
+    private byte[] dictionary; // read when the first exercise is loaded
+    
+    /**
+     * Opens the given file, which must be in the archive layout.
+     */
+    ExerciseArchive(File file) {
+        this.file = file;
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+    }
+    
+    /**
+     * Reads the index at the end of the file, up to the group count.
+     */
+    DataInputStream readIndex() throws IOException {
+        if (length < 4)
+            throw new IOException("Invalid data.");
+        int indexOffset = readBytes(length - 4, 4).getInt();
+        if (indexOffset < 0 || indexOffset > length - 4)
+            throw new IOException("Invalid data.");
+        byte[] index = inflate(indexOffset, (int)(length - 4 - indexOffset), null);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(index));
+        dictionaryOffset = input.readInt();
+        dictionaryLength = input.readInt();
+        headerOffset = input.readInt();
+        headerLength = input.readInt();
+        return input;
+    }
+    
+    /**
+     * Opens the header block for reading. readIndex must be called first,
+     * and the header must be read to the end before exercises are loaded.
+     * Expressions and types in the blocks of an archive are read in the
+     * encoding of format version 3. Each exercise block starts out with the
+     * tables as they are at the end of the header, so that the symbols,
+     * types and subtrees of the lexicon aren't repeated in every block.
+     */
+    ExprInputStream readHeader() throws IOException {
+        header = inflate(headerOffset, headerLength, null);
+        headerInput = new ExprInputStream(new ByteArrayInputStream(header));
+        return headerInput;
+    }
+    
+    /**
+     * Opens the block of an exercise for reading. readHeader must be
+     * called first.
+     */
+    ExprInputStream readExerciseBlock(int offset, int length) throws IOException {
+        byte[] dictionary;
+        synchronized (this) {
+            if (this.dictionary == null)
+                this.dictionary = makeDictionary(header, inflate(dictionaryOffset, dictionaryLength, makeDictionary(header, new byte[0])));
+            dictionary = this.dictionary;
+        }
+        return new ExprInputStream(new ByteArrayInputStream(inflate(offset, length, dictionary)), headerInput);
+    }
+    
+    private byte[] inflate(int offset, int length, byte[] dictionary) throws IOException {
+        if (offset < 0 || length < 0 || (long)offset + length > this.length)
+            throw new IOException("Invalid data.");
+        ByteBuffer block = readBytes(offset, length);
+        
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length * 4);
+        byte[] buffer = new byte[4096];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block.array());
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0) {
+                    if (inflater.needsDictionary() && dictionary != null)
+                        inflater.setDictionary(dictionary);
+                    else if (inflater.needsInput() || inflater.needsDictionary())
+                        throw new IOException("Invalid data.");
+                }
+                output.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid data.");
+        } finally {
+            inflater.end();
+        }
+        return output.toByteArray();
+    }
+    
+    private ByteBuffer readBytes(long position, int count) throws IOException {
+        if (file.length() != length || file.lastModified() != lastModified)
+            throw new IOException("The file " + file.getName() + " has been changed since it was opened.");
+        
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                    throw new EOFException();
+            }
+        } finally {
+            channel.close();
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Compresses block and appends it to file, using the given preset
+     * dictionary if it is not null.
+     */
+    static void writeBlock(DataOutputStream file, byte[] block, byte[] dictionary) throws IOException {
+        Deflater deflater = new Deflater();
+        try {
+            if (dictionary != null)
+                deflater.setDictionary(dictionary);
+            DeflaterOutputStream output = new DeflaterOutputStream(file, deflater);
+            output.write(block);
+            output.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Concatenates the serialized first exercise of each group, which is
+     * stored as the dictionary block.
+     */
+    static byte[] concatenate(byte[][] firstExercises) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < firstExercises.length; i++) {
+            if (firstExercises[i] != null)
+                output.write(firstExercises[i], 0, firstExercises[i].length);
+        }
+        return output.toByteArray();
+    }
+    
+    /**
+     * Makes the preset dictionary for the exercise blocks out of the
+     * uncompressed header and dictionary blocks, keeping the end of them
+     * if they are larger than the deflate window.
+     */
+    static byte[] makeDictionary(byte[] header, byte[] firstExercises) {
+        byte[] d = new byte[Math.min(header.length + firstExercises.length, MAX_DICTIONARY_SIZE)];
+        int fromHeader = d.length - Math.min(firstExercises.length, d.length);
+        System.arraycopy(header, header.length - fromHeader, d, 0, fromHeader);
+        System.arraycopy(firstExercises, firstExercises.length - (d.length - fromHeader), d, fromHeader, d.length - fromHeader);
+        return d;
+    }
+    
+    /**
+     * Stands in an ExerciseGroup for an exercise that hasn't been read
+     * from the archive yet.
+     */
+    class Entry {
+        final int offset, length;
+        final boolean done;
+        final java.math.BigDecimal points;
+        final String shortTitle, exerciseText;
+        
+        Entry(int offset, int length, boolean done, java.math.BigDecimal points, String shortTitle, String exerciseText) {
+            this.offset = offset;
+            this.length = length;
+            this.done = done;
+            this.points = points;
+            this.shortTitle = shortTitle;
+            this.exerciseText = exerciseText;
+        }
+        
+        /**
+         * Reads the exercise from the archive.
+         * @param index the index of the exercise in its group
+         * @throws UncheckedIOException if the exercise couldn't be read
+         */
+        Exercise load(int index) {
+            try {
+                DataInputStream input = readExerciseBlock(offset, length);
+                try {
+                    return ExerciseGroup.readItem(input, FORMAT_VERSION, index);
+                } finally {
+                    input.close();
+                }
+            } catch (ExerciseFileFormatException e) {
+                throw new UncheckedIOException(new IOException(e.getMessage(), e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -184,8 +184,7 @@ public class ExerciseFile {
         for (int i = 0; i < size(); i++) {
             ExerciseGroup g = getGroup(i);
             for (int j = 0; j < g.size(); j++) {
-                Exercise e = g.getItem(j);
-                if (!e.isDone())
+                if (!g.isItemDone(j))
                     return false;
             }
         }
@@ -212,12 +211,13 @@ public class ExerciseFile {
      * Returns the total number of exercises completed correctly.
      */
     public int getNumberCorrect() {
-        Iterator iter = exercises().iterator();
         int count = 0;
-        while (iter.hasNext()) {
-            Exercise e = (Exercise) iter.next();
-            if (e.isDone())
-                count++;
+        for (int i = 0; i < size(); i++) {
+            ExerciseGroup g = getGroup(i);
+            for (int j = 0; j < g.size(); j++) {
+                if (g.isItemDone(j))
+                    count++;
+            }
         }
         return count;
     }
@@ -227,11 +227,11 @@ public class ExerciseFile {
      * in this problem set (i.e. 100, if the points add up).
      */
     public java.math.BigDecimal getTotalPointsAvailable() {
-        Iterator iter = exercises().iterator();
         java.math.BigDecimal ret = java.math.BigDecimal.valueOf(0);
-        while (iter.hasNext()) {
-            Exercise e = (Exercise) iter.next();
-            ret = ret.add(e.getPoints());
+        for (int i = 0; i < size(); i++) {
+            ExerciseGroup g = getGroup(i);
+            for (int j = 0; j < g.size(); j++)
+                ret = ret.add(g.getItemPoints(j));
         }
         return ret;
     }
@@ -241,12 +241,13 @@ public class ExerciseFile {
      * in his correct answers.
      */
     public java.math.BigDecimal getPointsCorrect() {
-        Iterator iter = exercises().iterator();
         java.math.BigDecimal ret = java.math.BigDecimal.valueOf(0);
-        while (iter.hasNext()) {
-            Exercise e = (Exercise) iter.next();
-            if (e.isDone())
-                ret = ret.add(e.getPoints());
+        for (int i = 0; i < size(); i++) {
+            ExerciseGroup g = getGroup(i);
+            for (int j = 0; j < g.size(); j++) {
+                if (g.isItemDone(j))
+                    ret = ret.add(g.getItemPoints(j));
+            }
         }
         return ret;
     }
@@ -255,15 +256,65 @@ public class ExerciseFile {
      * Saves the exercises in seralized form to the given file.
      */
     public void saveTo(File target) throws IOException {
-        OutputStream stream = new FileOutputStream(target);
+        // Read any exercises that haven't been read yet from the file this
+        // was loaded from, in case that's the file we are about to overwrite.
+        exercises();
         
-        DataOutputStream output = new DataOutputStream(stream);
-        output.writeBytes("LAMBDA-UPENN"); // magic string
-        output.writeShort(2);        // file version format number
-        output.flush();
-        
-        output = new DataOutputStream( new java.util.zip.DeflaterOutputStream(stream));
-
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+        try {
+            output.writeBytes("LAMBDA-UPENN"); // magic string
+            output.writeShort(ExerciseArchive.FORMAT_VERSION); // file version format number
+            
+            // Since version 4, the file is an archive of separately compressed
+            // blocks with an index at the end (see ExerciseArchive).
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            ExprOutputStream headerOutput = new ExprOutputStream(buffer);
+            writeHeader(headerOutput);
+            headerOutput.flush();
+            byte[] header = buffer.toByteArray();
+            
+            byte[][][] items = new byte[size()][][];
+            byte[][] firstItems = new byte[size()][];
+            for (int i = 0; i < size(); i++) {
+                items[i] = getGroup(i).writeItems(headerOutput);
+                if (items[i].length > 0)
+                    firstItems[i] = items[i][0];
+            }
+            byte[] firstItemsBlock = ExerciseArchive.concatenate(firstItems);
+            
+            int dictionaryOffset = output.size();
+            ExerciseArchive.writeBlock(output, firstItemsBlock, ExerciseArchive.makeDictionary(header, new byte[0]));
+            int dictionaryLength = output.size() - dictionaryOffset;
+            
+            int headerOffset = output.size();
+            ExerciseArchive.writeBlock(output, header, null);
+            int headerLength = output.size() - headerOffset;
+            
+            byte[] dictionary = ExerciseArchive.makeDictionary(header, firstItemsBlock);
+            int[][] offsets = new int[size()][];
+            for (int i = 0; i < size(); i++)
+                offsets[i] = ExerciseGroup.writeBlocks(output, items[i], dictionary);
+            
+            buffer = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(buffer);
+            index.writeInt(dictionaryOffset);
+            index.writeInt(dictionaryLength);
+            index.writeInt(headerOffset);
+            index.writeInt(headerLength);
+            index.writeShort(size());
+            for (int i = 0; i < size(); i++)
+                getGroup(i).writeIndex(index, offsets[i]);
+            index.flush();
+            
+            int indexOffset = output.size();
+            ExerciseArchive.writeBlock(output, buffer.toByteArray(), null);
+            output.writeInt(indexOffset);
+        } finally {
+            output.close();
+        }
+    }
+    
+    private void writeHeader(DataOutputStream output) throws IOException {
         output.writeUTF(title);
         if (studentName == null) {
             output.writeByte(0);
@@ -281,45 +332,9 @@ public class ExerciseFile {
         
         lexicon.writeToStream(output);
         rules.writeToStream(output);
-
-        output.writeShort(groups.size());
-
-        for (int i = 0; i < size(); i++) {
-            ExerciseGroup g = getGroup(i);
-            g.writeToStream(output);
-        }
-        
-        output.close();
     }
     
-    /**
-     * Reads the serialized ExerciseFile data from the given file and initializes this
-     * instance with the serialized data.
-     */
-    public ExerciseFile(File source) throws IOException, ExerciseFileFormatException {
-
-
-        InputStream stream = new FileInputStream(source);
-        DataInputStream input = new DataInputStream(stream);
-        
-        if (input.readByte() != 'L') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'A') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'M') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'B') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'D') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'A') throw new ExerciseFileFormatException();
-        if (input.readByte() != '-') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'U') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'P') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'E') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'N') throw new ExerciseFileFormatException();
-        if (input.readByte() != 'N') throw new ExerciseFileFormatException();
-        
-        short formatVersion = input.readShort();
-        if (formatVersion != 2) throw new ExerciseFileVersionException();
-        
-        input = new DataInputStream(new java.util.zip.InflaterInputStream(input));
-
+    private void readHeader(DataInputStream input) throws IOException {
         title = input.readUTF();
         
         if (input.readByte() == 1) // otherwise the byte is zero and studentName is null
@@ -333,14 +348,76 @@ public class ExerciseFile {
         
         rules = new RuleList();
         rules.readFromStream(input);
- 
-        int nGroups = input.readShort();
+    }
+    
+    /**
+     * Reads the serialized ExerciseFile data from the given file and initializes this
+     * instance with the serialized data. Files saved in the archive layout
+     * (format version 4) are read lazily: only the index and the header
+     * are read here, and each exercise is read when it is first accessed.
+     */
+    public ExerciseFile(File source) throws IOException, ExerciseFileFormatException {
+
+
+        InputStream stream = new FileInputStream(source);
+        DataInputStream input = new DataInputStream(stream);
         
+        try {
+            if (input.readByte() != 'L') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'A') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'M') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'B') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'D') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'A') throw new ExerciseFileFormatException();
+            if (input.readByte() != '-') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'U') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'P') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'E') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'N') throw new ExerciseFileFormatException();
+            if (input.readByte() != 'N') throw new ExerciseFileFormatException();
+            
+            short formatVersion = input.readShort();
+            
+            if (formatVersion == ExerciseArchive.FORMAT_VERSION) {
+                input.close();
+                readArchive(new ExerciseArchive(source));
+                return;
+            }
+            
+            if (formatVersion == 2)
+                input = new DataInputStream(new java.util.zip.InflaterInputStream(input));
+            else if (formatVersion == 3)
+                input = new ExprInputStream(new java.util.zip.InflaterInputStream(input));
+            else
+                throw new ExerciseFileVersionException();
+            
+            readHeader(input);
+            
+            int nGroups = input.readShort();
+            
+            for (int i = 0; i < nGroups; i++) {
+                ExerciseGroup g = addGroup();
+                g.readFromStream(input, formatVersion);
+            }
+        } finally {
+            input.close();
+        }
+    }
+    
+    private void readArchive(ExerciseArchive archive) throws IOException {
+        DataInputStream index = archive.readIndex();
+        
+        DataInputStream header = archive.readHeader();
+        try {
+            readHeader(header);
+        } finally {
+            header.close();
+        }
+        
+        int nGroups = index.readShort();
         for (int i = 0; i < nGroups; i++) {
             ExerciseGroup g = addGroup();
-            g.readFromStream(input, formatVersion);
+            g.readIndex(index, archive);
         }
-        
-        input.close();
     }
 }
@@ -52,7 +52,6 @@ import java.io.*;
 import java.text.*;
 import java.util.regex.*;
 import lambdacalc.logic.*;
-import lambdacalc.gui.TrainingWindow;
 
 
 /**
@@ -131,9 +130,6 @@ public class ExerciseFileParser {
                 } else if (line.startsWith("variable of type ")) {
                     parseTypeLine("variable of type ".length(), true, line, typer, linectr);
                 }
-                // Exercise Files directly set the static field of the TrainingWindow class, bypassing
-                // the singleton instance
-                TrainingWindow.setCurrentTypingConventions(typer);
 
             } else if (line.startsWith("points per exercise ")) {
                 pointage = new java.math.BigDecimal(line.substring("points per exercise ".length()));
@@ -97,49 +97,76 @@ public class ExerciseGroup {
     /**
      * Adds an Exercise to the end of this group.
      */
-    public void addItem(Exercise item) {
+    public synchronized void addItem(Exercise item) {
         items.add(item);
     }
     
     /**
      * Returns the number of exercises in this group.
      */
-    public int size() {
+    public synchronized int size() {
         return items.size();
     }
     
     /**
-     * Gets the exercise at the given index in this group.
+     * Gets the exercise at the given index in this group. If the group was
+     * read from an archive, the exercise is read from the file the first
+     * time it is accessed.
+     * @throws java.io.UncheckedIOException if the exercise could not be read
      */
-    public Exercise getItem(int index) {
-      return (Exercise)items.get(index);
+    public synchronized Exercise getItem(int index) {
+        Object item = items.get(index);
+        if (item instanceof ExerciseArchive.Entry) {
+            item = ((ExerciseArchive.Entry)item).load(index);
+            items.set(index, item);
+        }
+        return (Exercise)item;
     }
     
     /**
-     * Serializes the group to a stream.
+     * Gets whether the exercise at the given index has been completed,
+     * without reading it from the file if it hasn't been accessed yet.
      */
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
-        output.writeShort(1); // just some versioning for future use
-        output.writeUTF(title);
-        output.writeUTF(directions);
-        output.writeShort(size());
-        for (int i = 0; i < size(); i++) {
-            Exercise e = getItem(i);
-            if (e instanceof TypeExercise)
-                output.writeShort(1);
-            else if (e instanceof LambdaConversionExercise)
-                output.writeShort(2);
-            else if (e instanceof TreeExercise)
-                output.writeShort(3);
-            else
-                throw new RuntimeException("Exercise type not recognized in ExerciseGroup::WriteToStream.");
-            e.writeToStream(output);
-            output.writeBoolean(e.isDone());
-            output.writeUTF(e.getPoints().toString());
-            output.writeBoolean(e.getInstructions() != null);
-            if (e.getInstructions() != null)
-                output.writeUTF(e.getInstructions());
-        }
+    public synchronized boolean isItemDone(int index) {
+        Object item = items.get(index);
+        if (item instanceof ExerciseArchive.Entry)
+            return ((ExerciseArchive.Entry)item).done;
+        return ((Exercise)item).isDone();
+    }
+    
+    /**
+     * Gets the points the exercise at the given index is worth, without
+     * reading it from the file if it hasn't been accessed yet.
+     */
+    public synchronized java.math.BigDecimal getItemPoints(int index) {
+        Object item = items.get(index);
+        if (item instanceof ExerciseArchive.Entry)
+            return ((ExerciseArchive.Entry)item).points;
+        return ((Exercise)item).getPoints();
+    }
+    
+    /**
+     * Gets the short title of the exercise at the given index (see
+     * Exercise.getShortTitle), without reading it from the file if it
+     * hasn't been accessed yet.
+     */
+    public synchronized String getItemShortTitle(int index) {
+        Object item = items.get(index);
+        if (item instanceof ExerciseArchive.Entry)
+            return ((ExerciseArchive.Entry)item).shortTitle;
+        return ((Exercise)item).getShortTitle();
+    }
+    
+    /**
+     * Gets the text of the exercise at the given index (see
+     * Exercise.getExerciseText), without reading it from the file if it
+     * hasn't been accessed yet.
+     */
+    public synchronized String getItemExerciseText(int index) {
+        Object item = items.get(index);
+        if (item instanceof ExerciseArchive.Entry)
+            return ((ExerciseArchive.Entry)item).exerciseText;
+        return ((Exercise)item).getExerciseText();
     }
     
     /**
@@ -151,30 +178,124 @@ public class ExerciseGroup {
         title = input.readUTF();
         directions = input.readUTF();
         int nEx = input.readShort();
+        for (int i = 0; i < nEx; i++)
+            items.add(readItem(input, fileFormatVersion, i));
+    }
+    
+    /**
+     * Serializes each exercise in the group separately, as it is stored
+     * in an archive (file format version 4).
+     * @param tables the stream the header of the archive was written to,
+     * whose tables each exercise starts out with
+     */
+    byte[][] writeItems(lambdacalc.logic.ExprOutputStream tables) throws java.io.IOException {
+        byte[][] data = new byte[size()][];
+        for (int i = 0; i < size(); i++) {
+            java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+            lambdacalc.logic.ExprOutputStream output = new lambdacalc.logic.ExprOutputStream(buffer, tables);
+            writeItem(output, getItem(i));
+            output.flush();
+            data[i] = buffer.toByteArray();
+        }
+        return data;
+    }
+    
+    /**
+     * Writes the exercises serialized by writeItems to an archive, each as
+     * a separate compressed block.
+     * @return the offsets in the file of the start of each block, followed by
+     * the offset of the end of the last block
+     */
+    static int[] writeBlocks(java.io.DataOutputStream file, byte[][] items, byte[] dictionary) throws java.io.IOException {
+        int[] offsets = new int[items.length + 1];
+        for (int i = 0; i < items.length; i++) {
+            offsets[i] = file.size();
+            ExerciseArchive.writeBlock(file, items[i], dictionary);
+        }
+        offsets[items.length] = file.size();
+        return offsets;
+    }
+    
+    /**
+     * Writes the group's entry in the index of an archive, which holds
+     * everything needed to list the group's exercises and score them without
+     * reading the exercises' blocks.
+     * @param offsets the value returned by writeBlocks
+     */
+    void writeIndex(java.io.DataOutputStream index, int[] offsets) throws java.io.IOException {
+        index.writeUTF(title);
+        index.writeUTF(directions);
+        index.writeShort(size());
+        for (int i = 0; i < size(); i++) {
+            index.writeInt(offsets[i]);
+            index.writeInt(offsets[i+1] - offsets[i]);
+            index.writeBoolean(isItemDone(i));
+            index.writeUTF(getItemPoints(i).toString());
+            index.writeUTF(getItemShortTitle(i));
+            index.writeUTF(getItemExerciseText(i));
+        }
+    }
+    
+    /**
+     * Initializes this instance from its entry in the index of an archive.
+     * The exercises themselves are read from the archive the first time
+     * they are accessed.
+     */
+    void readIndex(java.io.DataInputStream index, ExerciseArchive archive) throws java.io.IOException {
+        title = index.readUTF();
+        directions = index.readUTF();
+        int nEx = index.readShort();
         for (int i = 0; i < nEx; i++) {
-            int exType = input.readShort();
-            
-            Exercise ex;
-            if (exType == 1)
-                ex = new TypeExercise(input, fileFormatVersion, i);
-            else if (exType == 2)
-                ex = new LambdaConversionExercise(input, fileFormatVersion, i);
-            else if (exType == 3)
-                ex = new TreeExercise(input, fileFormatVersion, i);
-            else
-                throw new ExerciseFileFormatException();
-            
-            items.add(ex);
-            
-            if (input.readBoolean())
-                ex.setDone(true);
-            
-            ex.setPoints(new java.math.BigDecimal(input.readUTF()));
-            
-            if (input.readBoolean())
-                ex.setInstructions(input.readUTF());
-            else
-                ex.setInstructions(null);
+            int offset = index.readInt();
+            int length = index.readInt();
+            boolean done = index.readBoolean();
+            java.math.BigDecimal points = new java.math.BigDecimal(index.readUTF());
+            String shortTitle = index.readUTF();
+            String exerciseText = index.readUTF();
+            items.add(archive.new Entry(offset, length, done, points, shortTitle, exerciseText));
         }
     }
+    
+    static void writeItem(java.io.DataOutputStream output, Exercise e) throws java.io.IOException {
+        if (e instanceof TypeExercise)
+            output.writeShort(1);
+        else if (e instanceof LambdaConversionExercise)
+            output.writeShort(2);
+        else if (e instanceof TreeExercise)
+            output.writeShort(3);
+        else
+            throw new RuntimeException("Exercise type not recognized in ExerciseGroup::WriteToStream.");
+        e.writeToStream(output);
+        output.writeBoolean(e.isDone());
+        output.writeUTF(e.getPoints().toString());
+        output.writeBoolean(e.getInstructions() != null);
+        if (e.getInstructions() != null)
+            output.writeUTF(e.getInstructions());
+    }
+    
+    static Exercise readItem(java.io.DataInputStream input, int fileFormatVersion, int index) throws java.io.IOException, ExerciseFileFormatException {
+        int exType = input.readShort();
+        
+        Exercise ex;
+        if (exType == 1)
+            ex = new TypeExercise(input, fileFormatVersion, index);
+        else if (exType == 2)
+            ex = new LambdaConversionExercise(input, fileFormatVersion, index);
+        else if (exType == 3)
+            ex = new TreeExercise(input, fileFormatVersion, index);
+        else
+            throw new ExerciseFileFormatException();
+        
+        if (input.readBoolean())
+            ex.setDone(true);
+        
+        ex.setPoints(new java.math.BigDecimal(input.readUTF()));
+        
+        if (input.readBoolean())
+            ex.setInstructions(input.readUTF());
+        else
+            ex.setInstructions(null);
+        
+        return ex;
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExercisePrecomputer.java
+ */
+
+package lambdacalc.exercises;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Works out the solutions of the exercises in a file on background threads
+ * (see Exercise#precompute) while the student works on the exercise being
+ * shown, so that the file can be shown as soon as it has been read.
+ *
+ * The exercises are precomputed in file order starting after the one that
+ * is shown first. Before an exercise is shown, #awaitExercise must be called
+ * for it, so that it isn't used on two threads at once.
+ */
+public class ExercisePrecomputer {
+    
+    private final ExerciseFile file;
+    private final ExecutorService executor;
+    private final Future[][] futures; // by group and item; null once awaited
+    
+    /**
+     * Creates a precomputer for the exercises in the given file, using
+     * all but one of the available processors (and at least one).
+     */
+    public ExercisePrecomputer(ExerciseFile file) {
+        this(file, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+    
+    /**
+     * Creates a precomputer for the exercises in the given file, using
+     * the given number of background threads.
+     */
+    public ExercisePrecomputer(ExerciseFile file, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be at least one.");
+        
+        this.file = file;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Exercise precomputation");
+                t.setDaemon(true); // don't keep the program running
+                t.setPriority(Thread.MIN_PRIORITY); // the GUI comes first
+                return t;
+            }
+        });
+        
+        this.futures = new Future[file.size()][];
+        for (int g = 0; g < file.size(); g++)
+            futures[g] = new Future[file.getGroup(g).size()];
+    }
+    
+    /**
+     * Starts precomputing every exercise except the given one, which is
+     * about to be shown, beginning with the ones that follow it.
+     */
+    public void start(int firstGroup, int firstItem) {
+        for (int g = firstGroup; g < futures.length; g++)
+            for (int i = (g == firstGroup ? firstItem + 1 : 0); i < futures[g].length; i++)
+                submit(g, i);
+        for (int g = 0; g <= firstGroup && g < futures.length; g++)
+            for (int i = 0; i < (g == firstGroup ? firstItem : futures[g].length); i++)
+                submit(g, i);
+    }
+    
+    private void submit(final int group, final int item) {
+        futures[group][item] = executor.submit(new Runnable() {
+            public void run() {
+                file.getGroup(group).getItem(item).precompute(file);
+            }
+        });
+    }
+    
+    /**
+     * Makes sure that the given exercise isn't being precomputed, so that
+     * it can be shown. If its precomputation hasn't started yet, it is
+     * cancelled and the exercise does the work itself when it needs to. If
+     * it is underway, this waits for it to finish.
+     */
+    public void awaitExercise(int group, int item) {
+        if (group >= futures.length || item >= futures[group].length)
+            return;
+        Future f = futures[group][item];
+        if (f == null)
+            return;
+        futures[group][item] = null;
+        
+        if (f.cancel(false))
+            return;
+        try {
+            f.get();
+        } catch (ExecutionException e) {
+            // the exercise will run into the same problem when it is used
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Makes sure that no exercise is being precomputed, cancelling the
+     * precomputations that haven't started yet and waiting for the rest,
+     * and shuts down the background threads. This is called before another
+     * file is loaded in place of this one.
+     */
+    public void stop() {
+        for (int g = 0; g < futures.length; g++)
+            for (int i = 0; i < futures[g].length; i++)
+                awaitExercise(g, i);
+        executor.shutdown();
+    }
+}
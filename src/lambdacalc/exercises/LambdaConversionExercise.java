@@ -53,12 +53,19 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
     private Expr expr;
     private IdentifierTyper types;
     
-    private ArrayList steps = new ArrayList();
-    private ArrayList steptypes = new ArrayList();
+    private ArrayList steps; // null until computeSteps has been called
+    private ArrayList steptypes;
     
     private Expr lastAnswer;
     private int currentStep = 0;
     
+    /**
+     * The steps are interned here, and the user's answers are looked up in
+     * the table (but not added to it), so that an answer that is identical
+     * to a step is recognized without walking the expressions.
+     */
+    private ExprInterner interner = new ExprInterner();
+    
     /**
      * Whether student's answers are parsed with the singleLetterIdentifiers option set.
      */
@@ -70,7 +77,8 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
     // this is now decided on an exercise-by-exercise basis
     
     /**
-     * Initializes the exercise and works out beforehand what the student should do.
+     * Initializes the exercise. What the student should do is worked out
+     * when it is first needed, or beforehand by #precompute.
      * 
      * @param index if this exercise is part of an ExerciseGroup, the index is 
      * supposed to indicate where this exercise is located in the group
@@ -86,8 +94,11 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
         this.types = types;
         
         this.expr.getType(); // make sure it is well typed; will throw if not
-
-        initialize();
+        
+        // The nodes that meaning brackets refer to may change later on,
+        // so those are replaced right away.
+        if (MeaningBracketExpr.hasMeaningBrackets(expr))
+            computeSteps();
     }
     
     /**
@@ -119,12 +130,33 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
         }
     }
     
-    private void initialize() throws TypeEvaluationException {
+    /**
+     * Works out what the student should do, unless that has been done already.
+     * This is called before the steps are used, and may also be called ahead
+     * of time on a background thread (see #precompute), in which case
+     * callers on other threads wait here until it is done.
+     */
+    private void ensureSteps() {
+        try {
+            computeSteps();
+        } catch (TypeEvaluationException tee) {
+            // not reachable: the expression was type-checked when the exercise was created
+            throw new RuntimeException(tee);
+        }
+    }
+    
+    private synchronized void computeSteps() throws TypeEvaluationException {
+        if (steps != null)
+            return;
+        
+        ArrayList steps = new ArrayList();
+        ArrayList steptypes = new ArrayList();
         Expr e = expr;
         
         try {
             e = MeaningBracketExpr.replaceAllMeaningBrackets(expr);
             if (!e.equals(expr)) {
+                e = interner.intern(e);
                 steptypes.add(MEANINGBRACKETS);
                 steps.add(e);
             }
@@ -150,14 +182,25 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
                 e = lcr.result;
             }
 
+            e = interner.intern(e);
             steps.add(e);
         }
         
         if (e == expr) {
             steptypes.add(NOT_REDUCIBLE);
-            steps.add(e);
+            steps.add(interner.intern(e));
         }
-    }    
+        
+        this.steps = steps;
+        this.steptypes = steptypes;
+    }
+    
+    /**
+     * Works out the steps of the solution.
+     */
+    public void precompute(ExerciseFile file) {
+        ensureSteps();
+    }
     
     public String getExerciseText() {
         return expr.toString();
@@ -182,9 +225,21 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
     }
     
     public boolean isNotReducible() {
+        ensureSteps();
         return steptypes.get(0).equals(NOT_REDUCIBLE);
     }
 
+    /**
+     * Gets a new set of parser options for answers to this exercise.
+     */
+    public ExpressionParser.ParseOptions getParseOptions() {
+        ExpressionParser.ParseOptions exprParseOpts = new ExpressionParser.ParseOptions();
+        exprParseOpts.ASCII = false;
+        exprParseOpts.singleLetterIdentifiers = isParseSingleLetterIdentifiers();
+        exprParseOpts.typer = types;
+        return exprParseOpts;
+    }
+    
     /**
      * Parses an expression using the parser options of this exercise. Syntax errors
      * are left to be handled by the caller so it can position the text caret
@@ -195,11 +250,7 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
     
         Expr result;
         
-    
-        ExpressionParser.ParseOptions exprParseOpts = new ExpressionParser.ParseOptions();
-        exprParseOpts.ASCII = false;
-        exprParseOpts.singleLetterIdentifiers = isParseSingleLetterIdentifiers();
-        exprParseOpts.typer = types;
+        ExpressionParser.ParseOptions exprParseOpts = getParseOptions();
 
         try {
             result = ExpressionParser.parse(exprString, exprParseOpts);
@@ -235,6 +286,9 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
      * this exercise's parser settings, e.g. by using #parse(Expr) in this class.
      */
     public AnswerStatus checkAnswer(Expr userAnswer) {
+        
+        ensureSteps();
+        userAnswer = interner.lookup(userAnswer);
 
         // this is what the user was trying to simplify
         Expr prevStep = currentStep == 0 ? expr : (Expr)steps.get(currentStep-1);
@@ -661,9 +715,9 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
                 convs++;
         }
         
-        java.util.List subexprs = expr.getSubExpressions();
-        for (int i = 0; i < subexprs.size(); i++)
-            convs += getNumberOfLambdaConversions((Expr)subexprs.get(i));
+        int n = expr.getSubExpressionCount();
+        for (int i = 0; i < n; i++)
+            convs += getNumberOfLambdaConversions(expr.getSubExpression(i));
         
         return convs;
     }
@@ -703,7 +757,7 @@ public class LambdaConversionExercise extends Exercise implements HasIdentifierT
         setNotSoFast(input.readBoolean());
         
         try {
-            initialize();
+            this.expr.getType(); // the steps are worked out later (see computeSteps)
         } catch (Exception e) {
             System.err.println(e);
             throw new ExerciseFileFormatException();
@@ -25,7 +25,8 @@
 
 package lambdacalc.exercises;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
 
 import lambdacalc.logic.Expr;
 import lambdacalc.logic.IdentifierTyper;
@@ -44,6 +45,8 @@ public class TreeExercise extends Exercise implements HasIdentifierTyper {
     
     private boolean hasBeenStarted = false;
     
+    private ParallelEvaluator.Evaluation precomputed; // worked out by precompute but not yet stored in the tree, or null
+    
     // persists the state of the tree, as derived by God-mode
     public java.util.Map derivationDisplayState = new java.util.HashMap();
     
@@ -102,9 +105,37 @@ public class TreeExercise extends Exercise implements HasIdentifierTyper {
         return types;
     }
     
+    /**
+     * Gets the tree, first storing in it the meanings worked out by
+     * precompute, so this should be called on the thread that owns the
+     * tree, which in the GUI is the event dispatch thread.
+     */
     public Nonterminal getTree() {
+        ParallelEvaluator.Evaluation e;
+        synchronized (this) {
+            e = precomputed;
+            precomputed = null;
+        }
+        if (e != null)
+            e.publish();
         return treeroot;
     }
+    
+    /**
+     * Evaluates the meanings of the nodes of the tree that can be evaluated
+     * without the user's help, unless the user has already started on the
+     * tree. The meanings aren't stored in the tree here, since this is
+     * called on a background thread, but by the next call to getTree.
+     */
+    public void precompute(ExerciseFile file) {
+        if (hasBeenStarted)
+            return;
+        EvaluationContext context = new EvaluationContext(file.getRules(), types);
+        ParallelEvaluator.Evaluation e = new ParallelEvaluator(context).computeMeanings(treeroot);
+        synchronized (this) {
+            precomputed = e;
+        }
+    }
 
     public String toString() {
         return treeroot.toString();
@@ -139,7 +170,7 @@ public class TreeExercise extends Exercise implements HasIdentifierTyper {
                 output.append(", no simplification performed");
             } else {
                 output.append("\n");
-                Vector steps = nt.getUserMeaningSimplification();
+                List steps = nt.getUserMeaningSimplification();
                 for (int i = 0; i < steps.size(); i++)
                     output.append("\t\t" + steps.get(i) + "\n");
             }
@@ -201,7 +232,7 @@ public class TreeExercise extends Exercise implements HasIdentifierTyper {
                 output.writeByte(1);
                 output.writeInt(nt.getUserMeaningSimplification().size());
                 for (int i = 0; i < nt.getUserMeaningSimplification().size(); i++) {
-                    Expr e = (lambdacalc.logic.Expr)nt.getUserMeaningSimplification().get(i);
+                    Expr e = nt.getUserMeaningSimplification().get(i);
                     
                     // We can't serialize e directly because we know it may contain MeaningBracketExpr objects.
                     MeaningBracketExpr.writeExpr(e, treeroot, output);
@@ -289,8 +320,8 @@ public class TreeExercise extends Exercise implements HasIdentifierTyper {
             if (input.readByte() == 0) {
                 nt.setUserMeaningSimplification(null);
             } else {
-                Vector v = new Vector();
                 int n = input.readInt();
+                List<Expr> v = new ArrayList<Expr>(n);
                 for (int i = 0; i < n; i++) {
                     Expr e = MeaningBracketExpr.readExpr(treeroot, input);
                     v.add(e);
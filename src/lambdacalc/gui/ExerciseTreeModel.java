@@ -40,8 +40,8 @@ import lambdacalc.exercises.*;
  * This class implements a TreeModel over an exercise file for
  * the tree view in the main window.  It just forms a hierarchical
  * model over the file, with the file as root, ExerciseGroups as
- * children wrapped by ExerciseGroupWrapper, and Exercises within
- * the groups wrapped by ExerciseWrapper.  Wrappers are used
+ * children wrapped by ExerciseGroupWrapper, and the Exercises within
+ * the groups stood for by ExerciseWrapper.  Wrappers are used
  * to alter the toString() results for display in the tree.
  */
 public class ExerciseTreeModel implements TreeModel {
@@ -64,7 +64,7 @@ public class ExerciseTreeModel implements TreeModel {
         if (parent instanceof ExerciseFile) {
             return new ExerciseGroupWrapper( ((ExerciseFile)parent).getGroup(index)) ;
         } else if (parent instanceof ExerciseGroupWrapper) {
-            return new ExerciseWrapper( ((ExerciseGroupWrapper)parent).group.getItem(index) );
+            return new ExerciseWrapper( ((ExerciseGroupWrapper)parent).group, index );
         } else {
             return null;
         }
@@ -91,7 +91,7 @@ public class ExerciseTreeModel implements TreeModel {
     public int getIndexOfChild(Object parent, Object child) {
         if (parent == null || child == null) return -1;
         if (child instanceof ExerciseGroupWrapper) return ((ExerciseGroupWrapper)child).group.getIndex();
-        if (child instanceof ExerciseWrapper) return ((ExerciseWrapper)child).ex.getIndex();
+        if (child instanceof ExerciseWrapper) return ((ExerciseWrapper)child).index;
         throw new RuntimeException(child.getClass().getName());
     }
     
@@ -123,22 +123,26 @@ public class ExerciseTreeModel implements TreeModel {
         return s.substring(0, i) + "...";
     }
     
+    // Exercises are wrapped by their group and index rather than held
+    // directly, so that listing an exercise file doesn't read every exercise
+    // from it (see ExerciseGroup.getItem).
     public static class ExerciseWrapper {
-        public Exercise ex;
+        public ExerciseGroup group;
+        public int index;
         
-        public ExerciseWrapper (Exercise e) { ex = e; }
+        public ExerciseWrapper (ExerciseGroup g, int i) { group = g; index = i; }
         
         public String toString() {
                                // checkmark // empty ballot box
  //           return (ex.isDone() ? CHECKMARK : BALLOTBOX) + "  " + (ex.getIndex()+1) + ". " + ex.getExerciseText();    
-            return (ex.isDone() ? CHECKMARK : BALLOTBOX) 
+            return (group.isItemDone(index) ? CHECKMARK : BALLOTBOX) 
                     + "  " 
-                    + (ex.getIndex()+1) 
+                    + (index+1) 
                     + ". " 
-                    + ex.getShortTitle()
+                    + group.getItemShortTitle(index)
                     + ": "
 //                    + truncate(ex.getExerciseText(), 20);
-                    + ex.getExerciseText();
+                    + group.getItemExerciseText(index);
         }
     }
 }
@@ -33,24 +33,363 @@
 package lambdacalc.gui;
 
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;   
 import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.*;
 
 import lambdacalc.logic.*;
 
 /**
+ * A text field for entering lambda expressions. Special symbols can be typed
+ * with modifier keys or ASCII substitutes.
+ *
+ * When checking is turned on with setCheckingOptions, the text is parsed in
+ * the background a moment after the user stops typing. A syntax error is
+ * underlined from the position where the parser gave up, and the type of a
+ * well-formed expression is shown in gray at the right end of the field.
+ * Parsing never happens on the event dispatch thread.
  *
  * @author tauberer
  */
 public class LambdaEnabledTextField extends JTextField {
 
+     /**
+      * How long the user has to stop typing before the text is checked, in
+      * milliseconds.
+      */
+     private static final int CHECK_DELAY = 300;
+     
+     /**
+      * The number of recently checked texts whose results are kept, so that
+      * undoing an edit doesn't parse the old text again.
+      */
+     private static final int RECENT_CHECKS = 16;
+     
+     /**
+      * The single background thread that every field parses on, created when
+      * checking is first turned on.
+      */
+     private static ExecutorService checker;
+     
+     private static final Highlighter.HighlightPainter ERROR_PAINTER = new ErrorPainter();
+     
      private boolean isTempText = false;
+     
+     private ExpressionParser.ParseOptions checkingOptions; // null unless checking is turned on
+     private final Timer checkTimer;
+     private int checkGeneration = 0; // bumped whenever a check in progress becomes stale
+     private Future pendingCheck;
+     private ExpressionParser.ParseOptions pendingCheckOptions;
+     private CheckResult checkResult;
+     private Object errorHighlight;
+     private final Map recentChecks = new LinkedHashMap(RECENT_CHECKS, .75f, true) {
+         protected boolean removeEldestEntry(Map.Entry eldest) {
+             return size() > RECENT_CHECKS;
+         }
+     };
     
      public LambdaEnabledTextField() {
      	setFont(Util.getUnicodeFont(16));
+        
+        checkTimer = new Timer(CHECK_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startCheck();
+            }
+        });
+        checkTimer.setRepeats(false);
+        
+        getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+     }
+     
+     /**
+      * The outcome of checking the text of the field: either the parsed
+      * expression and, if it could be typed, its type, or an error message.
+      */
+     public static class CheckResult {
+         private final String text;
+         private final Expr expression;
+         private final Type type;
+         private final String error;
+         private final int errorPosition;
+         
+         CheckResult(String text, Expr expression, Type type, String error, int errorPosition) {
+             this.text = text;
+             this.expression = expression;
+             this.type = type;
+             this.error = error;
+             this.errorPosition = errorPosition;
+         }
+         
+         /**
+          * Gets the text that was checked.
+          */
+         public String getText() {
+             return text;
+         }
+         
+         /**
+          * Gets the parsed expression, or null if the text had a syntax error.
+          */
+         public Expr getExpression() {
+             return expression;
+         }
+         
+         /**
+          * Gets the type of the expression, or null if it has none.
+          */
+         public Type getType() {
+             return type;
+         }
+         
+         /**
+          * Gets the syntax or type error message, or null if there was no error.
+          */
+         public String getError() {
+             return error;
+         }
+         
+         /**
+          * Gets the position of a syntax error in the text, or -1 if there was
+          * no syntax error.
+          */
+         public int getErrorPosition() {
+             return errorPosition;
+         }
+     }
+     
+     /**
+      * Turns on checking of the text with the given parser options, or turns
+      * it off if options is null. The options' typing conventions are copied,
+      * so later changes to them don't affect the field.
+      */
+     public void setCheckingOptions(ExpressionParser.ParseOptions options) {
+         if (options != null)
+             options = new ExpressionParser.ParseOptions(options.singleLetterIdentifiers,
+                     options.ASCII, options.typer.cloneTyper());
+         checkingOptions = options;
+         recentChecks.clear();
+         textChanged();
+     }
+     
+     /**
+      * Gets the result of checking the current text, or null if checking is
+      * turned off or the text hasn't been checked yet. A "checkResult" property
+      * change is fired when this changes.
+      */
+     public CheckResult getCheckResult() {
+         return checkResult;
+     }
+     
+     private static synchronized ExecutorService getChecker() {
+         if (checker == null) {
+             checker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                 public Thread newThread(Runnable r) {
+                     Thread t = new Thread(r, "Expression checker");
+                     t.setDaemon(true);
+                     return t;
+                 }
+             });
+         }
+         return checker;
+     }
+     
+     /**
+      * Parses and types text. This is run on the checker thread.
+      */
+     static CheckResult check(String text, ExpressionParser.ParseOptions options) {
+         Expr expr;
+         try {
+             expr = ExpressionParser.parse(text, options);
+         } catch (SyntaxException e) {
+             return new CheckResult(text, null, null, e.getMessage(), e.getPosition());
+         }
+         try {
+             return new CheckResult(text, expr, expr.getType(), null, -1);
+         } catch (TypeEvaluationException e) {
+             return new CheckResult(text, expr, null, e.getMessage(), -1);
+         }
+     }
+     
+     // Called whenever the text changes: whatever was shown for the
+     // old text is cleared, any check still running for it is abandoned,
+     // and a new check is scheduled for when the user stops typing.
+     private void textChanged() {
+         checkGeneration++;
+         if (pendingCheck != null) {
+             pendingCheck.cancel(false);
+             pendingCheckOptions.cancel();
+             pendingCheck = null;
+             pendingCheckOptions = null;
+         }
+         
+         showCheckResult(null);
+         
+         if (checkingOptions != null && !isTempText)
+             checkTimer.restart();
+         else
+             checkTimer.stop();
+     }
+     
+     private void startCheck() {
+         if (checkingOptions == null || isTempText)
+             return;
+         
+         final String text = getText();
+         if (text.trim().length() == 0)
+             return;
+         
+         CheckResult cached = (CheckResult)recentChecks.get(text);
+         if (cached != null) {
+             showCheckResult(cached);
+             return;
+         }
+         
+         // Parsing fills in the options' explicitTypes map, so each check
+         // gets its own options object. The cloned typer is only read.
+         final ExpressionParser.ParseOptions options = new ExpressionParser.ParseOptions(
+                 checkingOptions.singleLetterIdentifiers, checkingOptions.ASCII, checkingOptions.typer);
+         final int generation = checkGeneration;
+         pendingCheckOptions = options;
+         pendingCheck = getChecker().submit(new Runnable() {
+             public void run() {
+                 final CheckResult result;
+                 try {
+                     result = check(text, options);
+                 } catch (CancellationException e) {
+                     return; // the text changed in the meanwhile
+                 }
+                 SwingUtilities.invokeLater(new Runnable() {
+                     public void run() {
+                         if (generation != checkGeneration)
+                             return;
+                         pendingCheck = null;
+                         pendingCheckOptions = null;
+                         recentChecks.put(text, result);
+                         showCheckResult(result);
+                     }
+                 });
+             }
+         });
+     }
+     
+     private void showCheckResult(CheckResult result) {
+         CheckResult old = checkResult;
+         if (old == null && result == null)
+             return;
+         checkResult = result;
+         
+         if (errorHighlight != null) {
+             getHighlighter().removeHighlight(errorHighlight);
+             errorHighlight = null;
+         }
+         
+         String tip = null;
+         if (result != null && result.getError() != null) {
+             tip = result.getError();
+             int length = getDocument().getLength();
+             int start = Math.max(0, Math.min(result.getErrorPosition(), length - 1));
+             if (result.getErrorPosition() >= 0 && length > 0) {
+                 try {
+                     errorHighlight = getHighlighter().addHighlight(start, length, ERROR_PAINTER);
+                 } catch (BadLocationException e) {
+                 }
+             }
+         } else if (result != null && result.getType() != null) {
+             tip = "Type: " + result.getType();
+         }
+         setToolTipText(tip);
+         
+         repaint();
+         firePropertyChange("checkResult", old, result);
+     }
+     
+     protected void paintComponent(Graphics g) {
+         super.paintComponent(g);
+         
+         if (checkResult == null || checkResult.getType() == null || isTempText)
+             return;
+         
+         // Draw the type right-aligned, but only if it fits after the text.
+         String type = checkResult.getType().toShortString();
+         FontMetrics fm = g.getFontMetrics(getFont());
+         Insets insets = getInsets();
+         int x = getWidth() - insets.right - fm.stringWidth(type) - 2;
+         try {
+             Rectangle end = positionBounds(this, getDocument().getLength());
+             if (end == null || end.x + fm.stringWidth("  ") > x)
+                 return;
+         } catch (BadLocationException e) {
+             return;
+         }
+         int y = insets.top + (getHeight() - insets.top - insets.bottom - fm.getHeight()) / 2 + fm.getAscent();
+         
+         Color color = UIManager.getColor("TextField.inactiveForeground");
+         g.setColor(color != null ? color : Color.gray);
+         g.setFont(getFont());
+         g.drawString(type, x, y);
+     }
+     
+     /**
+      * Gets the bounds of a position in the text of c, or null if c has no
+      * room to show it. This is what JTextComponent.modelToView does, but
+      * that is deprecated as of Java 9, and its replacement modelToView2D
+      * isn't available in Java 8, which releases are still built with.
+      */
+     private static Rectangle positionBounds(JTextComponent c, int pos) throws BadLocationException {
+         Insets insets = c.getInsets();
+         Rectangle alloc = new Rectangle(insets.left, insets.top,
+                 c.getWidth() - insets.left - insets.right,
+                 c.getHeight() - insets.top - insets.bottom);
+         if (alloc.width <= 0 || alloc.height <= 0)
+             return null;
+         Shape s = c.getUI().getRootView(c).modelToView(pos, alloc, Position.Bias.Forward);
+         return s == null ? null : s.getBounds();
+     }
+     
+     /**
+      * Draws a red zigzag under the text from a syntax error to the end.
+      */
+     private static class ErrorPainter implements Highlighter.HighlightPainter {
+         public void paint(Graphics g, int p0, int p1, Shape bounds, JTextComponent c) {
+             Rectangle r0, r1;
+             try {
+                 r0 = positionBounds(c, p0);
+                 r1 = positionBounds(c, p1);
+             } catch (BadLocationException e) {
+                 return;
+             }
+             if (r0 == null || r1 == null)
+                 return;
+             
+             int x1 = Math.max(r1.x, r0.x + 6);
+             int y = r0.y + r0.height - 1;
+             g.setColor(Color.red);
+             boolean up = false;
+             for (int x = r0.x; x < x1; x += 2, up = !up)
+                 g.drawLine(x, up ? y - 2 : y, x + 2, up ? y : y - 2);
+         }
      }
      
      public boolean isTempText() {
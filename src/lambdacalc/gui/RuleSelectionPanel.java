@@ -286,6 +286,7 @@ implements PropertyChangeListener, SelectionListener {
         }
 
         node.setCompositionRule(forValue(value));
+        teWidget.forgetDenotations();
 //<<<<<<< .mine
 //        try {
 //            // freebie: we replace all meaning brackets
@@ -510,6 +510,10 @@ public class ScratchPadWindow extends javax.swing.JFrame {
             this.currentProblemString = line;
             previousEx=ex;
             ex=enteredEx;
+            if (ex instanceof LambdaConversionExercise)
+                txtUserAnswer.setCheckingOptions(((LambdaConversionExercise) ex).getParseOptions());
+            else
+                txtUserAnswer.setCheckingOptions(null);
             tellGUIProblemEntered();
             
         } catch (SyntaxException s) {
@@ -593,6 +597,7 @@ public class ScratchPadWindow extends javax.swing.JFrame {
         switchOn(txtEnterYourOwnProblem);
         jButtonEnterProblem.setEnabled(true);
         jButtonCheckAnswer.setEnabled(false);
+        txtUserAnswer.setCheckingOptions(null);
         txtUserAnswer.setText("");
         switchOff(txtUserAnswer);
         setRadioButtonsEnabled(true);
@@ -639,9 +639,9 @@ public class TeacherToolWindow extends javax.swing.JFrame {
                         text += "\n";
                     }
                     
-                    groupPointsTotal = groupPointsTotal.add(ex.getPoints());
-                    if (ex.isDone())
-                        groupPointsCorrect = groupPointsCorrect.add(ex.getPoints());
+                    groupPointsTotal = groupPointsTotal.add(g.getItemPoints(j));
+                    if (g.isItemDone(j))
+                        groupPointsCorrect = groupPointsCorrect.add(g.getItemPoints(j));
                 }
                 
                 text += "\n";
@@ -665,6 +665,9 @@ public class TeacherToolWindow extends javax.swing.JFrame {
         } catch (IOException e) {
             String text = "The file " + file.getPath() + " could not be opened: " + e.toString();
             textArea.setText(text);
+        } catch (UncheckedIOException e) { // thrown by getItem if an exercise can't be read
+            String text = "The file " + file.getPath() + " could not be opened: " + e.getCause().toString();
+            textArea.setText(text);
         }
     }
     
@@ -715,7 +718,7 @@ public class TeacherToolWindow extends javax.swing.JFrame {
                 text += "\n";
                 
                 for (int j = 0; j < group.size(); j++) {
-                    Exercise ex = group.getItem(j);
+                    String exerciseText = group.getItemExerciseText(j);
                     
                     text += "   ";
                     
@@ -726,10 +729,7 @@ public class TeacherToolWindow extends javax.swing.JFrame {
                         if (exf == null || !exf.getTitle().equals(alist.get(a)))
                             continue;
                         
-                        ExerciseGroup gg = exf.getGroup(g);
-                        Exercise ee = gg.getItem(j);
-                        
-                        if (ee.isDone())
+                        if (exf.getGroup(g).isItemDone(j))
                             correct++;
                         else
                             incorrect++;
@@ -739,7 +739,7 @@ public class TeacherToolWindow extends javax.swing.JFrame {
                     text += "/";
                     text += incorrect + " wrong";
                     text += ": ";
-                    text += ex.getExerciseText();
+                    text += exerciseText;
                     text += "\n";
                 }
                 
@@ -42,6 +42,7 @@ import java.nio.file.Path;
 
 import lambdacalc.lf.BareIndex;
 import lambdacalc.lf.DummyTerminal;
+import lambdacalc.lf.EvaluationContext;
 import lambdacalc.lf.LFNode;
 import lambdacalc.lf.LexicalTerminal;
 import lambdacalc.lf.Nonterminal;
@@ -70,6 +71,7 @@ public class TrainingWindow extends JFrame {
 
     private File currentFile; // this is null if no file has been loaded yet
     private static ExerciseFile currentExFile; // this is null if no file has been loaded yet
+    private ExercisePrecomputer precomputer; // works out the exercises of currentExFile in the background, or null
     
     // will be overridden by any exercise file that specifies type conventions
     public static IdentifierTyper currentTypingConventions = IdentifierTyper.createDefault();
@@ -225,8 +227,8 @@ public class TrainingWindow extends JFrame {
                 
                 
                 //  display the entire node history at once
-                java.util.Vector steps = nt.getUserMeaningSimplification();
-                // steps: a vector of Expr objects
+                java.util.List steps = nt.getUserMeaningSimplification();
+                // steps: a list of Expr objects
                 if (steps != null) {
                     for (java.util.Iterator i = steps.iterator(); i.hasNext(); ) {
                         Expr next = (Expr) i.next();
@@ -372,6 +374,10 @@ public class TrainingWindow extends JFrame {
     
     // called by TrainingWindow constructor
     private void clearAllControls() {
+        if (precomputer != null) {
+            precomputer.stop();
+            precomputer = null;
+        }
         hasUserSaved = false;
         hasUnsavedWork = false;
         usersWorkFile = null;
@@ -397,6 +403,7 @@ public class TrainingWindow extends JFrame {
         txtUserAnswer.setEnabled(false);
         btnCheckAnswer.setEnabled(false);
 
+        txtUserAnswer.setCheckingOptions(null);
         txtUserAnswer.setText("");
         txtFeedback.setText("");
 
@@ -459,6 +466,15 @@ public class TrainingWindow extends JFrame {
 		this.currentExFile = parse(f);
                 
             }
+            updateEvaluationContext();
+            
+            // Work out the solutions of all but the first exercise, which
+            // is about to be shown, while the user works.
+            if (precomputer != null)
+                precomputer.stop();
+            precomputer = new ExercisePrecomputer(currentExFile);
+            precomputer.start(0, 0);
+            
             menuItemSaveAs.setEnabled(true);
             menuItemSave.setEnabled(false);
             this.previousGroup = null; //so that at the beginning of a new exercise we don't say "You have started a new group"
@@ -557,7 +573,17 @@ public class TrainingWindow extends JFrame {
     // btnNextActionPerformed()
     // btnPrevActionPerformed()
     private void showExercise() {
-        ex = getCurrentExercise();
+        try {
+            ex = getCurrentExercise();
+        } catch (UncheckedIOException e) { // thrown by getItem if the exercise can't be read
+            e.printStackTrace();
+            Util.displayErrorMessage
+                    (this, "There was an error reading the exercise from the file: " + (e.getCause().getMessage() == null ? "Unknown read error." : e.getCause().getMessage()),
+                    "Error loading exercise");
+            return;
+        }
+        if (precomputer != null)
+            precomputer.awaitExercise(currentGroup, currentEx);
                 
         // Show the directions for this exercise. If there are both
         // group-level directions and exercise-level instructions,
@@ -578,11 +604,14 @@ public class TrainingWindow extends JFrame {
         
         if (ex instanceof TypeExercise) { 
             btnTransfer.setEnabled(false);
+            txtUserAnswer.setCheckingOptions(null);
             switchViewTo(TYPES_AND_CONVERSIONS);
         } else if (ex instanceof LambdaConversionExercise) {
+            txtUserAnswer.setCheckingOptions(((LambdaConversionExercise)ex).getParseOptions());
             switchViewTo(TYPES_AND_CONVERSIONS);
         } else if (ex instanceof TreeExercise) {
             btnTransfer.setEnabled(false);
+            txtUserAnswer.setCheckingOptions(null);
             switchViewTo(TREES);
             treeDisplay.initialize((TreeExercise)ex);
             lexiconList.initialize(getCurrentExFile(), ex, treeDisplay);
@@ -612,7 +641,7 @@ public class TrainingWindow extends JFrame {
                     (new TreePath
                     (new Object[] { getCurrentExFile(), 
                                     new ExerciseTreeModel.ExerciseGroupWrapper(getCurrentGroup()), 
-                                    new ExerciseTreeModel.ExerciseWrapper(ex) } ));
+                                    new ExerciseTreeModel.ExerciseWrapper(getCurrentGroup(), ex.getIndex()) } ));
             jTreeExerciseFile.scrollPathToVisible(jTreeExerciseFile.getSelectionPath());
         } finally {
             updatingTree = false;
@@ -1809,7 +1838,7 @@ public class TrainingWindow extends JFrame {
             if (path.getPathCount() < 3)
                 currentEx = 0;
             else
-                currentEx = ((ExerciseTreeModel.ExerciseWrapper)path.getPathComponent(2)).ex.getIndex();
+                currentEx = ((ExerciseTreeModel.ExerciseWrapper)path.getPathComponent(2)).index;
             showExercise();
         }
     }//GEN-LAST:event_onExerciseTreeValueChanged
@@ -1837,6 +1866,16 @@ public class TrainingWindow extends JFrame {
     // This is set by any exercise that specifies types
     public static void setCurrentTypingConventions(IdentifierTyper typer) {
         currentTypingConventions = typer;
+        updateEvaluationContext();
+    }
+
+    // Trees are evaluated with the rules and lexicon of the current file
+    // and the typing conventions of the current exercise.
+    private static void updateEvaluationContext() {
+        if (currentExFile == null)
+            return;
+        EvaluationContext.setDefault(new EvaluationContext(
+                currentExFile.getRules(), currentTypingConventions));
     }
 
     public static IdentifierTyper getCurrentTypingConventions() {
@@ -64,6 +64,7 @@ public class TreeExerciseWidget extends JPanel {
     Map lfToMeaningLabel = new HashMap(); // propositional content label (for nonterminals only if we're using dropdowns for terminals)
     Map lfToMeaningState; // state of the propositional label, or null if node is not evaluated yet
     Map lfToParent = new HashMap(); // parent LFNode
+    MeaningBracketResolver meaningBrackets; // remembers the denotations of the nodes in lftree
     
     JTextArea errorLabel = new JTextArea(" "); // label containing error messages
     // we initialize it with a whitespace to make sure it takes the vertical place it needs later
@@ -113,12 +114,31 @@ public class TreeExerciseWidget extends JPanel {
      * to also keep in sync the exprs vector here and the one in the Nonterminal
      * this is for (if it's for a nonterminal), so when we save and load the
      * nonterminals from .lbd files, we save the simplification states.
+     *
+     * In God mode, the lambda conversion steps are not all worked out up
+     * front. exprs only holds the steps the user has gone through, and the
+     * step after those is worked out in the background as soon as the user
+     * reaches the last step in exprs. Of the steps gone through, only those
+     * next to the one shown are kept in full (see StepList); the others are
+     * worked out again if the user steps back to them. Use the methods below
+     * rather than exprs.size() and curexpr++ to find out whether there are
+     * more steps and to move through them.
+     *
+     * The background step works on the last step in exprs while the event
+     * dispatch thread shows it, and consecutive steps share subexpressions,
+     * so both threads read the same Expr nodes, and fill in the values
+     * cached on them, without locking. That is safe only because Expr keeps
+     * each cached value in a single field that is complete whenever it is
+     * set (see the caches at the top of Expr).
      */
 
     private class MeaningState {
-        public Vector exprs = new Vector(); // of Expr objects, simplification steps
+        public java.util.List<Expr> exprs = new ArrayList<Expr>(); // simplification steps
         public int curexpr = 0; // step currently shown on screen
         public String evaluationError; // error message if evaluation failed
+        private boolean moreSteps = false; // whether steps after the last one in exprs may remain to be worked out
+        private java.util.concurrent.Future<Expr.LambdaConversionResult> nextStep; // the step after the last one in exprs, being worked out, or null
+        private StepList window; // exprs, when it drops steps away from curexpr (God mode only)
         
         public MeaningState(String error) {
             evaluationError = error;
@@ -130,7 +150,7 @@ public class TreeExerciseWidget extends JPanel {
             exprs.add(m);
             
             try {
-                Expr m2 = MeaningBracketExpr.replaceAllMeaningBrackets(m);
+                Expr m2 = meaningBrackets.resolve(m);
                 if (!m.equals(m2)){
                     exprs.add(m2);
                 }
@@ -150,29 +170,249 @@ public class TreeExerciseWidget extends JPanel {
             if (!lambdacalc.Main.GOD_MODE) {
                 return;
             }
-            while (true) {
-                try {
-                    Expr.LambdaConversionResult r = m.performLambdaConversion();
-                    if (r == null) {
-                      break;
-                    }
-                    m = r.result;
-                    exprs.add(m);
-                } catch (TypeEvaluationException tee) {
-                    evaluationError = tee.getMessage();
-                    return;
-                }
-            }
+            window = new StepList(exprs);
+            exprs = window;
+            moreSteps = (evaluationError == null);
+            prefetchNextStep();
         }
         
-        public MeaningState(Vector steps) {
+        public MeaningState(java.util.List<Expr> steps) {
             exprs = steps;
             curexpr = exprs.size() - 1;
+            // In God mode, the steps that were saved may stop short
+            // of the fully simplified expression.
+            moreSteps = lambdacalc.Main.GOD_MODE;
         }
         
         public Expr getCurrentExpression() {
-            return (Expr)this.exprs.get(this.curexpr);
+            return this.exprs.get(this.curexpr);
+        }
+        
+        /**
+         * Returns whether the step shown is the last one. This doesn't wait
+         * for the next step to be worked out: while it is still being worked
+         * out in the background, the step shown is taken not to be the last.
+         * Use this for the state of the buttons, and isAtLastStep(true)
+         * when acting on the answer.
+         */
+        public boolean isAtLastStep() {
+            return isAtLastStep(false);
+        }
+        
+        /**
+         * Returns whether the step shown is the last one, waiting for the
+         * next step to be worked out if wait is true.
+         */
+        public boolean isAtLastStep(boolean wait) {
+            if (curexpr < exprs.size() - 1)
+                return false;
+            if (!moreSteps)
+                return true;
+            prefetchNextStep();
+            if (!wait && !nextStep.isDone())
+                return false;
+            return !computeNextStep();
+        }
+        
+        /**
+         * Returns whether there is a step after the one shown, waiting
+         * for it to be worked out if need be.
+         */
+        private boolean hasNextStep() {
+            return !isAtLastStep(true);
+        }
+        
+        public void moveToNextStep() {
+            if (hasNextStep())
+                curexpr++;
+            moved();
+        }
+        
+        public void moveToLastStep() {
+            while (hasNextStep())
+                curexpr++;
+            moved();
+        }
+        
+        public void moveToPreviousStep() {
+            if (curexpr > 0)
+                curexpr--;
+            moved();
+        }
+        
+        private void moved() {
+            if (window != null)
+                window.keepNear(curexpr);
+            prefetchNextStep();
+        }
+        
+        /**
+         * Replaces the steps after the one shown with the given step, which
+         * the user worked out, and shows it.
+         */
+        public void replaceNextSteps(Expr step) {
+            exprs.subList(curexpr + 1, exprs.size()).clear();
+            if (window != null)
+                window.endConversions();
+            exprs.add(step);
+            curexpr++;
+            moreSteps = false;
+            nextStep = null;
+        }
+        
+        /**
+         * Starts working out the step after the last one in exprs in the
+         * background, if the user has reached the last one.
+         */
+        private void prefetchNextStep() {
+            if (!moreSteps || nextStep != null || curexpr < exprs.size() - 1)
+                return;
+            final Expr last = exprs.get(exprs.size() - 1);
+            nextStep = getStepComputer().submit(new java.util.concurrent.Callable<Expr.LambdaConversionResult>() {
+                public Expr.LambdaConversionResult call() throws TypeEvaluationException {
+                    return last.performLambdaConversion();
+                }
+            });
+        }
+        
+        /**
+         * Appends the step after the last one in exprs, waiting for it to
+         * be worked out if it is being worked out in the background.
+         * @return false if there are no more steps
+         */
+        private boolean computeNextStep() {
+            if (!moreSteps)
+                return false;
+            
+            Expr last = exprs.get(exprs.size() - 1);
+            Expr.LambdaConversionResult r;
+            try {
+                if (nextStep != null) {
+                    try {
+                        r = nextStep.get();
+                    } catch (java.util.concurrent.ExecutionException e) {
+                        if (!(e.getCause() instanceof TypeEvaluationException))
+                            throw new RuntimeException(e.getCause());
+                        throw (TypeEvaluationException)e.getCause();
+                    } catch (InterruptedException e) {
+                        r = last.performLambdaConversion();
+                    }
+                    nextStep = null;
+                } else {
+                    r = last.performLambdaConversion();
+                }
+            } catch (TypeEvaluationException tee) {
+                evaluationError = tee.getMessage();
+                moreSteps = false;
+                return false;
+            }
+            
+            if (r == null) {
+                moreSteps = false;
+                return false;
+            }
+            exprs.add(r.result);
+            return true;
+        }
+    }
+    
+    /**
+     * The simplification steps of a node in God mode. Each step from the
+     * first one added after startConversions is the lambda conversion of
+     * the step before it, until endConversions is called. keepNear drops
+     * those steps, other than the last, that are far from the step shown,
+     * and get works them out again from the nearest step kept before them.
+     * Consecutive steps share the subexpressions that the conversion didn't
+     * touch, so what a kept step costs is mostly the part it changed.
+     */
+    private static class StepList extends java.util.AbstractList<Expr> {
+        private final ArrayList<Expr> steps; // null for dropped steps
+        private final int firstConversion;
+        private int endOfConversions = Integer.MAX_VALUE;
+        
+        /**
+         * Creates a list holding the given steps, which are kept, and in
+         * which the steps added afterwards are lambda conversions.
+         */
+        StepList(java.util.List<Expr> steps) {
+            this.steps = new ArrayList<Expr>(steps);
+            firstConversion = steps.size();
+        }
+        
+        public int size() {
+            return steps.size();
+        }
+        
+        public Expr get(int index) {
+            Expr step = steps.get(index);
+            if (step != null)
+                return step;
+            
+            int from = index - 1;
+            while (steps.get(from) == null)
+                from--;
+            Expr e = steps.get(from);
+            try {
+                for (int i = from + 1; i <= index; i++)
+                    e = e.performLambdaConversion().result;
+            } catch (TypeEvaluationException tee) {
+                // these steps were worked out once before without an error
+                throw new RuntimeException(tee);
+            }
+            steps.set(index, e);
+            return e;
+        }
+        
+        public Expr set(int index, Expr element) {
+            return steps.set(index, element);
+        }
+        
+        public void add(int index, Expr element) {
+            steps.add(index, element);
+        }
+        
+        public Expr remove(int index) {
+            return steps.remove(index);
+        }
+        
+        /**
+         * Marks the steps added from now on as not being lambda conversions
+         * of the steps before them, so that they are always kept.
+         */
+        void endConversions() {
+            endOfConversions = Math.min(endOfConversions, steps.size());
+        }
+        
+        /**
+         * Drops the steps that can be worked out again and are more than
+         * one step away from the given one. The last step is always kept.
+         */
+        void keepNear(int index) {
+            int end = Math.min(endOfConversions, steps.size() - 1);
+            for (int i = firstConversion; i < end; i++) {
+                if (Math.abs(i - index) > 1)
+                    steps.set(i, null);
+            }
+        }
+    }
+    
+    private static java.util.concurrent.ExecutorService stepComputer;
+    
+    /**
+     * Gets the thread that works out simplification steps ahead of the
+     * user in God mode.
+     */
+    private static synchronized java.util.concurrent.ExecutorService getStepComputer() {
+        if (stepComputer == null) {
+            stepComputer = java.util.concurrent.Executors.newSingleThreadExecutor(new java.util.concurrent.ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Simplification steps");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
         }
+        return stepComputer;
     }
     
     public interface SelectionListener {
@@ -267,6 +507,10 @@ public class TreeExerciseWidget extends JPanel {
             node.removePropertyChangeListener(nodeListener);
         }
         
+        if (meaningBrackets != null)
+            meaningBrackets.dispose();
+        meaningBrackets = null;
+        
         lftree = null;
         selectedNode = null;
         
@@ -281,12 +525,23 @@ public class TreeExerciseWidget extends JPanel {
         updateButtonEnabledState();
     }
     
+    /**
+     * Forgets the denotations that meaning brackets in the tree resolved to.
+     * This must be called when a node's composition rule or meaning is
+     * changed, since Nonterminals don't fire property change events for those.
+     */
+    void forgetDenotations() {
+        if (meaningBrackets != null)
+            meaningBrackets.clear();
+    }
+    
     public void initialize(TreeExercise ex) {
         clear();
         
         exercise = ex;
         lftree = ex.getTree();
         lfToMeaningState = ex.derivationDisplayState;
+        meaningBrackets = new MeaningBracketResolver(lftree);
         
         buildTree(canvas.getRoot(), lftree);
         
@@ -375,6 +630,11 @@ public class TreeExerciseWidget extends JPanel {
     }
     
     private void onUserChangedNodeMeaning(LFNode node) {
+        // The meanings and composition rules reset below don't fire
+        // property change events, so the denotations that the meaning
+        // brackets resolved to must be forgotten here.
+        forgetDenotations();
+        
         // If the node was a terminal, its lexical value
         // may have changed, so we have to reset its
         // meaning state to the beginning.
@@ -712,7 +972,7 @@ public class TreeExerciseWidget extends JPanel {
                     moveTo(child);
                     return;
                 }
-                if (ms.curexpr < ms.exprs.size()-1) {
+                if (!ms.isAtLastStep(true)) {
                     // Child not simplified: move to the child.
                     moveTo(child);
                     return;
@@ -735,6 +995,15 @@ public class TreeExerciseWidget extends JPanel {
         
         LFNode node = selectedNode;
         
+        // In God mode the user doesn't choose composition rules, so we can
+        // evaluate the whole subtree at once up front, in parallel. The
+        // meanings are stored in the nodes and picked up as we go below,
+        // and the values of their meaning brackets are remembered by
+        // meaningBrackets, so that MeaningState doesn't work them out again.
+        if (lambdacalc.Main.GOD_MODE && node instanceof Nonterminal
+                && !((Nonterminal)node).hasMeaning())
+            new ParallelEvaluator(EvaluationContext.getDefault()).evaluate(node, meaningBrackets);
+        
         while (true) {
             moveTo(node);
             
@@ -751,7 +1020,7 @@ public class TreeExerciseWidget extends JPanel {
         
             // Move the simplification state to the last step.
             MeaningState ms = (MeaningState)lfToMeaningState.get(selectedNode);
-            ms.curexpr = ms.exprs.size()-1;
+            ms.moveToLastStep();
             updateNode(selectedNode);
             
             // Try again to move to the node we want to be at...
@@ -792,14 +1061,14 @@ public class TreeExerciseWidget extends JPanel {
             canvas.invalidate();
         } else if (nodeHasError(selectedNode)) {
             return false; // can't go further
-        } else if (!isNodeAtFinalSimplificationState(selectedNode)) {
+        } else if (!isNodeAtFinalSimplificationState(selectedNode, !testOnly)) {
             // node is evaluated but not fully simplified
             if (testOnly) {
               return true;
             }
             // Advance the reduction by one step.
             MeaningState ms = (MeaningState)lfToMeaningState.get(selectedNode);
-            ms.curexpr++;
+            ms.moveToNextStep();
             updateNode(selectedNode);
             canvas.invalidate();
         } else { // node is fully evaluated
@@ -840,7 +1109,7 @@ public class TreeExerciseWidget extends JPanel {
             // Back up to previous reduction step.
             MeaningState ms = (MeaningState)lfToMeaningState.get(selectedNode);
             if (ms.curexpr > 0) {
-                ms.curexpr--;
+                ms.moveToPreviousStep();
                 updateNode(selectedNode);
                 canvas.invalidate();
             } else {
@@ -866,7 +1135,7 @@ public class TreeExerciseWidget extends JPanel {
         if (!testOnly && !ensureChildrenEvaluated())
             return false;
         
-        if (!isNodeAtFinalSimplificationState(selectedNode)) {
+        if (!isNodeAtFinalSimplificationState(selectedNode, !testOnly)) {
             if (testOnly) {
               return !nodeHasError(selectedNode);
             }
@@ -883,8 +1152,8 @@ public class TreeExerciseWidget extends JPanel {
         
             // Skip ahead to fully reduced form.
             MeaningState ms = (MeaningState)lfToMeaningState.get(selectedNode);
-            if (ms.curexpr < ms.exprs.size()-1) {
-                ms.curexpr = ms.exprs.size()-1;
+            if (!ms.isAtLastStep()) {
+                ms.moveToLastStep();
                 updateNode(selectedNode);
                 canvas.invalidate();
             }
@@ -973,6 +1242,10 @@ public class TreeExerciseWidget extends JPanel {
     }
         
     public boolean isNodeAtFinalSimplificationState(LFNode node) {
+        return isNodeAtFinalSimplificationState(node, false);
+    }
+    
+    private boolean isNodeAtFinalSimplificationState(LFNode node, boolean wait) {
         if (!isNodeEvaluated(node)) {
             return false;
         }
@@ -982,7 +1255,7 @@ public class TreeExerciseWidget extends JPanel {
           return false;
         }
         
-        return ms.curexpr == ms.exprs.size() - 1;
+        return ms.isAtLastStep(wait);
     }
     
     public boolean isNodeFullyEvaluated(LFNode node) {
@@ -994,7 +1267,7 @@ public class TreeExerciseWidget extends JPanel {
         
         if (lambdacalc.Main.GOD_MODE) {
             // Has user simplified to the last step?
-            return ms.curexpr == ms.exprs.size() - 1;
+            return ms.isAtLastStep();
         } else {
             // Has user provided an expression that can no longer be simplified?
             // If a type evaluation error occurs, we'll just take that to mean
@@ -1003,7 +1276,7 @@ public class TreeExerciseWidget extends JPanel {
             // performLambdaConversion returns null when expression can't be 
             // simplified.
             
-            Expr cur_state = (Expr)ms.exprs.get(ms.exprs.size()-1);
+            Expr cur_state = ms.exprs.get(ms.exprs.size()-1);
             
             if (MeaningBracketExpr.hasMeaningBrackets(cur_state))
                 return false;
@@ -1047,7 +1320,7 @@ public class TreeExerciseWidget extends JPanel {
             // skip the meaning brackets state?
             MeaningState ms = (MeaningState)lfToMeaningState.get(node);
             if (ms != null && ms.evaluationError == null) {
-                ms.curexpr = ms.exprs.size() - 1;
+                ms.moveToLastStep();
                 updateNode(node);
                 canvas.invalidate();
             }
@@ -1075,14 +1348,9 @@ public class TreeExerciseWidget extends JPanel {
         // truncate the list of pre-computed simplification
         // steps and discard "future" steps that haven't
         // been gotten to yet (only because the user may have taken a step
-        // back by un-simplifying)
-        ms.exprs.setSize(ms.curexpr + 1);
-
-        // append the user's simplification to the end
-        ms.exprs.add(parsedMeaning);
-
-        // and then advance the cursor
-        ms.curexpr++;
+        // back by un-simplifying), append the user's simplification to
+        // the end, and then advance the cursor
+        ms.replaceNextSteps(parsedMeaning);
 
         updateNode(selectedNode);
         
@@ -1110,11 +1378,12 @@ public class TreeExerciseWidget extends JPanel {
             }
             // Parent must be non-branching. Go ahead and evaluate it.
             parent.setCompositionRule(NonBranchingRule.INSTANCE);
+            forgetDenotations();
             evaluateNode(parent);
             MeaningState ms = (MeaningState)lfToMeaningState.get(parent);
             if (ms != null && ms.evaluationError == null) {
                 // Skip the first reduction step (bracket removal)
-                ms.curexpr = ms.exprs.size() - 1;
+                ms.moveToLastStep();
             }
             updateNode(parent);
             // Move up to parent, and repeat...
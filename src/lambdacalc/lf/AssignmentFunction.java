@@ -33,6 +33,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import lambdacalc.logic.Expr;
+import lambdacalc.logic.ExprTransformer;
 import lambdacalc.logic.GApp;
 import lambdacalc.logic.Type;
 import lambdacalc.logic.TypeEvaluationException;
@@ -60,8 +61,20 @@ public class AssignmentFunction {
         map = new HashMap(copyFrom.getUnderlyingMap());
     }
 
+    /**
+     * Replaces each g(n) in e with the variable that this function assigns
+     * to n and the type of the g(n), in a single walk over e. Only the GApp
+     * nodes are looked up; the map is keyed on their index and type.
+     */
     public Expr applyTo(Expr e) {
-        return e.replaceAll(map);
+        if (map.isEmpty())
+            return e;
+        return new ExprTransformer() {
+            protected Expr transformBefore(Expr expr) {
+                Expr inner = expr.stripOutermostParens();
+                return (inner instanceof GApp) ? (Expr)map.get(inner) : null;
+            }
+        }.transform(e);
     }
 
     public Collection keySet() {
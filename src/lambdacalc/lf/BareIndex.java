@@ -88,7 +88,7 @@ public class BareIndex extends Terminal {
         return false;
     }
     
-    public Expr getMeaning(AssignmentFunction g) 
+    public Expr getMeaning(EvaluationContext context, AssignmentFunction g) 
     throws MeaningEvaluationException {
         throw new MeaningEvaluationException("The bare index \"" + toShortString() + "\" has no denotation.");
     }
@@ -75,16 +75,17 @@ public class BracketedTreeParser {
         return false;
     }    
 
-    // Stores the types of traces, so that abstraction indices don't need
-    // to be explicitly typed
-    public static HashMap traceTypes = new HashMap();
-
     public static Nonterminal parse(String tree) throws SyntaxException {
         // A quick and dirty recursive cfg parser.
         
+        // Stores the types of the traces in this tree, so that abstraction
+        // indices don't need to be explicitly typed. (This is local to each
+        // call so that trees can be parsed on several threads at once.)
+        HashMap traceTypes = new HashMap();
+        
         // A stack of the nonterminal nodes from the root down to (but not
         // including) the nonterminal node currently being processed.
-        Stack stack = new Stack();
+        ArrayDeque stack = new ArrayDeque();
         
         // The nonterminal node currently being processed. null if we have not
         // yet encountered the root node.
@@ -175,7 +176,7 @@ public class BracketedTreeParser {
                             }
                         }
                         // post-process the tree
-                        typeBareIndices(curnode);
+                        typeBareIndices(curnode, traceTypes);
                         scrubDummies(curnode);
                         return curnode;
                     }
@@ -265,7 +266,7 @@ public class BracketedTreeParser {
                     case ' ':
                     case ']':
                     case '[':
-                        finishTerminal(curnode, curterminal);
+                        finishTerminal(curnode, curterminal, traceTypes);
                         parseMode = 0;
                         curterminal = null;
                         //type = null;
@@ -287,7 +288,7 @@ public class BracketedTreeParser {
                         } catch (lambdacalc.logic.SyntaxException ex) {
                             throw new SyntaxException("The lambda expression being assigned to '" + curterminal.getLabel() + "' is invalid: " + ex.getMessage(), i);
                         }
-                        finishTerminal(curnode, curterminal);
+                        finishTerminal(curnode, curterminal, traceTypes);
                         i = semi; // resume from next position (i is incremented at end of iteration)
                         parseMode = 0; // reading of terminal label is complete
                         //type = null;
@@ -364,7 +365,7 @@ public class BracketedTreeParser {
                         parseMode = 0;
                         i--;
                     } else {
-                        finishTerminal(curnode, curterminal);
+                        finishTerminal(curnode, curterminal, traceTypes);
                         parseMode = 0;
                         curterminal = null;
                         //type = null;
@@ -396,7 +397,7 @@ public class BracketedTreeParser {
         }
     }
     
-    private static Terminal finishTerminal(Nonterminal parent, Terminal child) {   
+    private static Terminal finishTerminal(Nonterminal parent, Terminal child, HashMap traceTypes) {   
         unescapeLabel(child);
         if (child.getLabel() != null && child.hasIndex()) {
             
@@ -458,7 +459,7 @@ public class BracketedTreeParser {
     }
 
     // use the types of traces to infer the types of co-indexed abstraction indices
-    private static void typeBareIndices(Nonterminal node) {
+    private static void typeBareIndices(Nonterminal node, HashMap traceTypes) {
         List kids = node.getChildren();
         for (int i = 0; i < kids.size(); i++) {
             LFNode kid = (LFNode)kids.get(i);
@@ -468,7 +469,7 @@ public class BracketedTreeParser {
                 ((BareIndex)kid).setType(bIType);
             }
             else if ("Nonterminal".equals(kid.getDisplayName()))
-                typeBareIndices((Nonterminal)kid);
+                typeBareIndices((Nonterminal)kid, traceTypes);
         }
     } 
 
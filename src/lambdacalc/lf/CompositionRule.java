@@ -39,27 +39,69 @@ public abstract class CompositionRule {
         return name;
     }
        
+    /**
+     * Returns whether this composition rule is applicable
+     * to the given nonterminal node in the default evaluation context.
+     */
+    public final boolean isApplicableTo(Nonterminal node) {
+        return isApplicableTo(node, EvaluationContext.getDefault());
+    }
+    
     /**
      * Returns whether this composition rule is applicable
      * to the given nonterminal node. If it cannot be determined
      * whether the rule is applicable, for instance because any
      * children cannot be evaluated, then false is returned.
      */
-    public abstract boolean isApplicableTo(Nonterminal node);
+    public abstract boolean isApplicableTo(Nonterminal node, EvaluationContext context);
+    
+    /**
+     * Returns how the types of the two children of node line up for this
+     * rule, given the children's meanings. The alignment is computed by
+     * alignTypes and kept in the node for as long as the children's meanings
+     * are the same objects.
+     */
+    final TypeAlignment getTypeAlignment(Nonterminal node, Expr leftMeaning, Expr rightMeaning) {
+        TypeAlignment alignment = node.getTypeAlignment(this, leftMeaning, rightMeaning);
+        if (alignment == null) {
+            alignment = alignTypes(leftMeaning, rightMeaning);
+            node.setTypeAlignment(this, leftMeaning, rightMeaning, alignment);
+        }
+        return alignment;
+    }
+    
+    /**
+     * Works out how the types of the meanings of the two children of a
+     * nonterminal line up for this rule. Rules that don't call
+     * getTypeAlignment return TypeAlignment.NOT_APPLICABLE.
+     */
+    abstract TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning);
+    
+    /**
+     * Applies this rule to a nonterminal using an empty assignment function
+     * in the default evaluation context.
+     *
+     * @param onlyIfApplicable see other method of the same name as this one.
+     */
+    public final Expr applyTo(Nonterminal node, boolean onlyIfApplicable) throws MeaningEvaluationException {
+        return applyTo(node, EvaluationContext.getDefault(), new AssignmentFunction(), onlyIfApplicable);
+    }
     
     /**
-     * Applies this rule to a nonterminal using an empty assignment function.
-     * Overriding implementations of this method should not alter the given node.
+     * Applies this rule to a nonterminal using the given assignment function
+     * in the default evaluation context.
      *
      * @param onlyIfApplicable see other method of the same name as this one.
      */
-    public Expr applyTo(Nonterminal node, boolean onlyIfApplicable) throws MeaningEvaluationException {
-        return applyTo(node, new AssignmentFunction(), onlyIfApplicable);
+    public final Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
+        return applyTo(node, EvaluationContext.getDefault(), g, onlyIfApplicable);
     }
     
     /**
      * Applies this rule to a nonterminal using the given assignment function.
      * Implementations of this method should not alter the given node.
+     * The context is passed on to the MeaningBracketExprs in the result, so
+     * that the children are evaluated in the same context.
      *
      * @param onlyIfApplicable if this parameter is true, calls isApplicableTo and throws a 
      * MeaningEvaluationException if that method returns false. If the parameter
@@ -72,7 +114,7 @@ public abstract class CompositionRule {
      *
      *
      */
-    public abstract Expr applyTo(Nonterminal node, 
+    public abstract Expr applyTo(Nonterminal node, EvaluationContext context,
             AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException;
             
     public static void writeToStream(CompositionRule r, java.io.DataOutputStream output) throws java.io.IOException {
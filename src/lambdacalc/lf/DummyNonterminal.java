@@ -34,7 +34,7 @@ public class DummyNonterminal extends Nonterminal {
         return false;
     }
     
-    public Expr getMeaning(AssignmentFunction g)
+    public Expr getMeaning(EvaluationContext context, AssignmentFunction g)
         throws MeaningEvaluationException {
         throw new MeaningEvaluationException("\"" + toShortString() +"\" does not have a denotation.");
     }
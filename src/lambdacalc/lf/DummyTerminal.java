@@ -50,7 +50,7 @@ public class DummyTerminal extends Terminal {
         return false;
     }
     
-    public Expr getMeaning(AssignmentFunction g)
+    public Expr getMeaning(EvaluationContext context, AssignmentFunction g)
         throws MeaningEvaluationException {
         throw new MeaningEvaluationException("\"" + toShortString() +"\" does not have a denotation.");
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * EvaluationContext.java
+ */
+
+package lambdacalc.lf;
+
+import java.util.Map;
+import lambdacalc.logic.Expr;
+import lambdacalc.logic.IdentifierTyper;
+
+/**
+ * The things that evaluating the meaning of a tree depends on besides the
+ * tree itself: the composition rules that may be chosen for nonterminals
+ * (in God mode) and the typing conventions used to choose variables. (The
+ * lexicon isn't part of it: lexical entries are guessed into the tree's
+ * terminals before its meaning is evaluated.) A context is passed down
+ * through LFNode.getMeaning and the CompositionRule methods, and is held
+ * onto by the MeaningBracketExprs they create, so trees from different
+ * exercise files can be evaluated at the same time on different threads.
+ *
+ * The mutable, static default context is still an implicit input of every
+ * method that doesn't take a context: LFNode.getMeaning() and
+ * getMeaning(AssignmentFunction), LFNode.guessRules, the CompositionRule
+ * isApplicableTo and applyTo overloads without a context (including those
+ * of FunctionApplicationRule, IntensionalFunctionApplicationRule and
+ * FunctionCompositionRule), and MeaningBracketExprs created without a
+ * context. The GUI sets the default to the context of the exercise being
+ * shown. Other callers, such as those evaluating trees on background
+ * threads, must pass a context explicitly: if they leave one out they
+ * silently get whatever the default is, which unless the GUI has changed
+ * it is RuleList.HEIM_KRATZER and the default typing conventions.
+ */
+public class EvaluationContext {
+    
+    private static volatile EvaluationContext defaultContext
+            = new EvaluationContext(RuleList.HEIM_KRATZER, IdentifierTyper.createDefault());
+    
+    private final RuleList rules;
+    private final IdentifierTyper typingConventions;
+    private final Map evaluatedMeanings; // from Nonterminals and Traces to meanings not yet stored in them, or null
+    
+    /**
+     * Creates a new evaluation context. None of the arguments may be
+     * modified while meanings are being evaluated in the context.
+     */
+    public EvaluationContext(RuleList rules, IdentifierTyper typingConventions) {
+        this(rules, typingConventions, null);
+    }
+    
+    private EvaluationContext(RuleList rules, IdentifierTyper typingConventions, Map evaluatedMeanings) {
+        if (rules == null || typingConventions == null)
+            throw new IllegalArgumentException();
+        this.rules = rules;
+        this.typingConventions = typingConventions;
+        this.evaluatedMeanings = evaluatedMeanings;
+    }
+    
+    /**
+     * Gets the composition rules that may be guessed for nonterminals.
+     */
+    public RuleList getRules() {
+        return rules;
+    }
+    
+    /**
+     * Gets the typing conventions used to choose variables when
+     * composition rules introduce lambdas.
+     */
+    public IdentifierTyper getTypingConventions() {
+        return typingConventions;
+    }
+    
+    /**
+     * Returns a context like this one but with the given composition rules.
+     */
+    public EvaluationContext withRules(RuleList rules) {
+        return new EvaluationContext(rules, typingConventions, evaluatedMeanings);
+    }
+    
+    /**
+     * Returns a context like this one in which the meanings of Nonterminals
+     * and Traces are first looked up in the given map. ParallelEvaluator uses
+     * this to let a node's composition rule see the meanings of its children
+     * before they are stored in the children. The map may be filled in, and
+     * cleared, after this is called.
+     */
+    EvaluationContext withEvaluatedMeanings(Map evaluatedMeanings) {
+        return new EvaluationContext(rules, typingConventions, evaluatedMeanings);
+    }
+    
+    /**
+     * Gets the meaning that has been evaluated for the node in this context
+     * but not yet stored in the node, or null.
+     */
+    Expr getEvaluatedMeaning(LFNode node) {
+        if (evaluatedMeanings == null)
+            return null;
+        return (Expr)evaluatedMeanings.get(node);
+    }
+    
+    /**
+     * Gets the context used by the methods that don't take a context.
+     */
+    public static EvaluationContext getDefault() {
+        return defaultContext;
+    }
+    
+    /**
+     * Sets the context used by the methods that don't take a context.
+     */
+    public static void setDefault(EvaluationContext context) {
+        if (context == null)
+            throw new IllegalArgumentException();
+        defaultContext = context;
+    }
+}
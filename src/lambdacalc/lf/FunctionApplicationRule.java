@@ -48,7 +48,7 @@ public class FunctionApplicationRule extends CompositionRule {
         super("Function Application");
     }
     
-    public boolean isApplicableTo(Nonterminal node) {
+    public boolean isApplicableTo(Nonterminal node, EvaluationContext context) {
         if (node.size() != 2)
             return false;
         
@@ -56,13 +56,10 @@ public class FunctionApplicationRule extends CompositionRule {
         LFNode right = node.getChild(1);
         
         try {
-            Expr leftMeaning = left.getMeaning();
-            Expr rightMeaning = right.getMeaning();
+            Expr leftMeaning = left.getMeaning(context, null);
+            Expr rightMeaning = right.getMeaning(context, null);
 
-            if (isFunctionOf(leftMeaning, rightMeaning))
-                return true;
-            if (isFunctionOf(rightMeaning, leftMeaning))
-                return true;
+            return getTypeAlignment(node, leftMeaning, rightMeaning).applicable;
         } catch (Exception e) {
         }
 
@@ -72,18 +69,18 @@ public class FunctionApplicationRule extends CompositionRule {
     public Expr applyTo(Nonterminal node, boolean onlyIfApplicable, boolean 
             defaultApplyLeftToRight) 
     throws MeaningEvaluationException {
-        return this.applyTo(node, new AssignmentFunction(), onlyIfApplicable, 
+        return this.applyTo(node, EvaluationContext.getDefault(), new AssignmentFunction(), onlyIfApplicable, 
                 defaultApplyLeftToRight);
     }     
 
     
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) 
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable) 
     throws MeaningEvaluationException {
-        return this.applyTo(node, g, onlyIfApplicable, true);
+        return this.applyTo(node, context, g, onlyIfApplicable, true);
     }     
     
     //the defaultApplyLeftToRight parameter is ignored if onlyIfApplicable is true
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable,
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable,
             boolean defaultApplyLeftToRight) 
     throws MeaningEvaluationException {
         if (node.size() != 2)
@@ -104,37 +101,24 @@ public class FunctionApplicationRule extends CompositionRule {
                     "undefined on such a node.");
         
         Expr leftMeaning, rightMeaning;
-        HashMap<Type,Type> typeMatches = new HashMap<>();
         try {
-            leftMeaning = left.getMeaning();
-            rightMeaning = right.getMeaning();
+            leftMeaning = left.getMeaning(context, null);
+            rightMeaning = right.getMeaning(context, null);
         } catch (MeaningEvaluationException mee) {
             if (onlyIfApplicable)
                throw mee;
             else if (defaultApplyLeftToRight)
-                return apply(left, right, g);
+                return apply(left, right, context, g);
             else
-                return apply(right, left, g);
+                return apply(right, left, context, g);
         }
 
-        if (isFunctionOf(leftMeaning, rightMeaning)) {
-            try {
-                CompositeType lt = (CompositeType)leftMeaning.getType();
-                typeMatches = ((lt.getLeft()).matches(rightMeaning.getType())).getMatches(lt.getLeft());
-//                typeMatches = Expr.alignTypes(lt.getLeft(),rightMeaning.getType());
-            } catch (TypeEvaluationException ex) {
-                throw new MeaningEvaluationException(ex.getMessage());
-            }
-            return apply(left, right, g, typeMatches);
-        } else if (isFunctionOf(rightMeaning, leftMeaning)) {
-            try {
-                CompositeType rt = (CompositeType)rightMeaning.getType();
-                typeMatches = ((rt.getLeft()).matches(leftMeaning.getType())).getMatches(rt.getLeft());
-//                typeMatches = Expr.alignTypes(rt.getLeft(),rightMeaning.getType());                               
-            } catch (TypeEvaluationException ex) {
-                throw new MeaningEvaluationException(ex.getMessage());
-            }
-            return apply(right, left, g, typeMatches); 
+        TypeAlignment alignment = getTypeAlignment(node, leftMeaning, rightMeaning);
+        if (alignment.applicable) {
+            if (alignment.leftIsFunction)
+                return apply(left, right, context, g, alignment.typeMatches);
+            else
+                return apply(right, left, context, g, alignment.typeMatches); 
         }
 
         if (onlyIfApplicable) {
@@ -143,47 +127,59 @@ public class FunctionApplicationRule extends CompositionRule {
                 " are not of compatible types for function application.");
         } else {
             if (defaultApplyLeftToRight)
-                return apply(left, right, g);
+                return apply(left, right, context, g);
             else
-                return apply(right, left, g);
+                return apply(right, left, context, g);
         }
     }
     
-    private boolean isFunctionOf(Expr left, Expr right) {
-        // Return true iff left is a composite type <X,Y>
-        // and right is of type X.
+    TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning) {
         try {
-            Type l = left.getType();
-            Type r = right.getType();
-            if (l instanceof CompositeType) {
-                CompositeType t = (CompositeType)l;
-                if (t.getLeft().matches(r) != null) {
-                    return true;
-                }
-//                if (t.getLeft().equals(r)) {
-//                    // Call to alignTypes ensures that an error is thrown if the same VarType
-//                    // is matched to multiple constant types
-//                    HashMap<Type,Type> typeMatches = Expr.alignTypes(t.getLeft(),r);
-//                    return true;
-//                }
-                else if (t.getLeft() instanceof ProductType){
-                    ProductType pt = (ProductType)t.getLeft();
-                    if (Arrays.asList(pt.getSubTypes()).contains(r)) {
-                        return true;
-                    }
+            Type l = leftMeaning.getType();
+            Type r = rightMeaning.getType();
+            TypeAlignment alignment = alignFunction(l, r, true);
+            if (alignment == null)
+                alignment = alignFunction(r, l, false);
+            if (alignment != null)
+                return alignment;
+        } catch (TypeEvaluationException ex) {
+        }
+        return TypeAlignment.NOT_APPLICABLE;
+    }
+    
+    // If fun is a composite type <X,Y> and arg is of type X, returns how
+    // they line up: the matches of the type variables in X against arg, or
+    // null matches if arg is one of the types of a product type X. Otherwise
+    // returns null. The domain is matched against arg just once.
+    private TypeAlignment alignFunction(Type fun, Type arg, boolean leftIsFunction) {
+        if (fun instanceof CompositeType) {
+            Type domain = ((CompositeType)fun).getLeft();
+            MatchPair matches = domain.matches(arg);
+            if (matches != null) {
+                return new TypeAlignment(true, leftIsFunction, matches.getMatches(domain), null);
+            }
+//            if (domain.equals(arg)) {
+//                // Call to alignTypes ensures that an error is thrown if the same VarType
+//                // is matched to multiple constant types
+//                HashMap<Type,Type> typeMatches = Expr.alignTypes(domain,arg);
+//                return true;
+//            }
+            else if (domain instanceof ProductType){
+                ProductType pt = (ProductType)domain;
+                if (Arrays.asList(pt.getSubTypes()).contains(arg)) {
+                    return new TypeAlignment(true, leftIsFunction, null, null);
                 }
             }
-        } catch (TypeEvaluationException ex) {
-        } 
-        return false;
+        }
+        return null;
     }
     
-    private Expr apply(LFNode fun, LFNode app, AssignmentFunction g) {
-        return new FunApp(new MeaningBracketExpr(fun, g), new MeaningBracketExpr(app, g));
+    private Expr apply(LFNode fun, LFNode app, EvaluationContext context, AssignmentFunction g) {
+        return new FunApp(new MeaningBracketExpr(fun, context, g), new MeaningBracketExpr(app, context, g));
     }
     
-    private Expr apply(LFNode fun, LFNode app, AssignmentFunction g, HashMap<Type,Type> alignments) {
-        FunApp fa = new FunApp(new MeaningBracketExpr(fun, g), new MeaningBracketExpr(app, g));
+    private Expr apply(LFNode fun, LFNode app, EvaluationContext context, AssignmentFunction g, HashMap<Type,Type> alignments) {
+        FunApp fa = new FunApp(new MeaningBracketExpr(fun, context, g), new MeaningBracketExpr(app, context, g));
         if (!alignments.isEmpty()) {
             Map updates = new HashMap();
             fa = (FunApp) fa.createAlphatypicalVariant(alignments, fa.getAllVars(), updates);
@@ -27,7 +27,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import lambdacalc.gui.TrainingWindow;
 import lambdacalc.logic.And;
 import lambdacalc.logic.AtomicType;
 import lambdacalc.logic.Binder;
@@ -52,13 +51,13 @@ public class FunctionCompositionRule extends CompositionRule {
         super("Function Composition");
     }
     
-    public boolean isApplicableTo(Nonterminal node) {
+    public boolean isApplicableTo(Nonterminal node, EvaluationContext context) {
         if (node.size() != 2)
             return false;
         
         try {
-            Type ltype = node.getLeftChild().getMeaning().getType();
-            Type rtype = node.getRightChild().getMeaning().getType();
+            Type ltype = node.getLeftChild().getMeaning(context, null).getType();
+            Type rtype = node.getRightChild().getMeaning(context, null).getType();
             
             CompositeType lt = (CompositeType)ltype;
             Type ltR = lt.getRight();
@@ -82,21 +81,21 @@ public class FunctionCompositionRule extends CompositionRule {
     public Expr applyTo(Nonterminal node, boolean onlyIfApplicable, boolean 
             defaultApplyLeftToRight) 
     throws MeaningEvaluationException {
-        return this.applyTo(node, new AssignmentFunction(), onlyIfApplicable, 
+        return this.applyTo(node, EvaluationContext.getDefault(), new AssignmentFunction(), onlyIfApplicable, 
                 defaultApplyLeftToRight);
     }     
 
     
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) 
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable) 
     throws MeaningEvaluationException {
-        return this.applyTo(node, g, onlyIfApplicable, true);
+        return this.applyTo(node, context, g, onlyIfApplicable, true);
     }     
     
     //the defaultApplyLeftToRight parameter is ignored if onlyIfApplicable is true
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable,
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable,
             boolean defaultApplyLeftToRight) 
     throws MeaningEvaluationException {
-        if (!this.isApplicableTo(node)) {
+        if (!this.isApplicableTo(node, context)) {
             throw new MeaningEvaluationException
                     ("The function composition rule is only " +
                     "applicable on a nonterminal that has exactly " +
@@ -105,8 +104,8 @@ public class FunctionCompositionRule extends CompositionRule {
           
         LFNode left = node.getChild(0);
         LFNode right = node.getChild(1);
-        Expr leftMeaning = left.getMeaning();
-        Expr rightMeaning = right.getMeaning();   
+        Expr leftMeaning = left.getMeaning(context, null);
+        Expr rightMeaning = right.getMeaning(context, null);   
         
 //        HashMap<Type,Type> typeMatches = new HashMap<>();
         MatchPair typeMatches;
@@ -122,7 +121,7 @@ public class FunctionCompositionRule extends CompositionRule {
             } catch (TypeEvaluationException ex) {
                 throw new MeaningEvaluationException(ex.getMessage());
             }
-            return apply(left, right, g, typeMatches);
+            return apply(left, right, context, g, typeMatches);
         } else if (isFCFunctionOf(rightMeaning, leftMeaning)) {
             try {
                 // lt: <'c,'a>, rt: <'a,'b>
@@ -133,7 +132,7 @@ public class FunctionCompositionRule extends CompositionRule {
             } catch (TypeEvaluationException ex) {
                 throw new MeaningEvaluationException(ex.getMessage());
             }
-            return apply(right, left, g, typeMatches);
+            return apply(right, left, context, g, typeMatches);
         } else {
             throw new MeaningEvaluationException("The children of the nonterminal "
                     + "are not of compatible types for function composition.");
@@ -162,9 +161,9 @@ public class FunctionCompositionRule extends CompositionRule {
     }    
     
     
-    private Expr apply(LFNode fun, LFNode app, AssignmentFunction g, MatchPair alignments) throws MeaningEvaluationException {
-        Expr leftMeaning = fun.getMeaning();
-        Expr rightMeaning = app.getMeaning();
+    private Expr apply(LFNode fun, LFNode app, EvaluationContext context, AssignmentFunction g, MatchPair alignments) throws MeaningEvaluationException {
+        Expr leftMeaning = fun.getMeaning(context, null);
+        Expr rightMeaning = app.getMeaning(context, null);
 //        HashMap<Type,Type> typeMatches = new HashMap<Type,Type>();
         Type ArgType = Type.E;
 
@@ -176,15 +175,15 @@ public class FunctionCompositionRule extends CompositionRule {
             CompositeType rt = (CompositeType)rightMeaning.getType();
             
             // ArgType: 'c
-            ArgType = ((CompositeType)(alignments.getAlignedType(rt))).getLeft();   
+            ArgType = ((CompositeType)(alignments.getAlignedRightType(rt))).getLeft();   
             } catch (TypeEvaluationException ex) {
             throw new MeaningEvaluationException(ex.getMessage());
         }
             
-        MeaningBracketExpr leftM = new MeaningBracketExpr(fun, g);
-        MeaningBracketExpr rightM = new MeaningBracketExpr(app, g);
+        MeaningBracketExpr leftM = new MeaningBracketExpr(fun, context, g);
+        MeaningBracketExpr rightM = new MeaningBracketExpr(app, context, g);
 
-        IdentifierTyper typingConventions = TrainingWindow.getCurrentTypingConventions();
+        IdentifierTyper typingConventions = context.getTypingConventions();
 
         Var VARIABLE = typingConventions.getVarForType(ArgType, false);
         
@@ -205,4 +204,8 @@ public class FunctionCompositionRule extends CompositionRule {
         
         return result; 
     }
+    
+    TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning) {
+        return TypeAlignment.NOT_APPLICABLE; // doesn't use getTypeAlignment
+    }
 }
\ No newline at end of file
@@ -24,7 +24,6 @@ package lambdacalc.lf;
 
 import java.util.HashMap;
 import java.util.Map;
-import lambdacalc.gui.TrainingWindow;
 import lambdacalc.logic.Type;
 import lambdacalc.logic.CompositeType;
 import lambdacalc.logic.ConstType;
@@ -44,7 +43,7 @@ public class IntensionalFunctionApplicationRule extends CompositionRule {
         super("Intensional Function Application");
     }
     
-    public boolean isApplicableTo(Nonterminal node) {
+    public boolean isApplicableTo(Nonterminal node, EvaluationContext context) {
         if (node.size() != 2)
             return false;
         
@@ -52,13 +51,10 @@ public class IntensionalFunctionApplicationRule extends CompositionRule {
         LFNode right = node.getChild(1);
         
         try {
-            Expr leftMeaning = left.getMeaning();
-            Expr rightMeaning = right.getMeaning();
+            Expr leftMeaning = left.getMeaning(context, null);
+            Expr rightMeaning = right.getMeaning(context, null);
 
-            if (isIntensionalFunctionOf(leftMeaning, rightMeaning))
-                return true;
-            if (isIntensionalFunctionOf(rightMeaning, leftMeaning))
-                return true;
+            return getTypeAlignment(node, leftMeaning, rightMeaning).applicable;
         } catch (Exception e) {
         }
 
@@ -68,18 +64,18 @@ public class IntensionalFunctionApplicationRule extends CompositionRule {
     public Expr applyTo(Nonterminal node, boolean onlyIfApplicable, boolean 
             defaultApplyLeftToRight) 
     throws MeaningEvaluationException {
-        return this.applyTo(node, new AssignmentFunction(), onlyIfApplicable, 
+        return this.applyTo(node, EvaluationContext.getDefault(), new AssignmentFunction(), onlyIfApplicable, 
                 defaultApplyLeftToRight);
     }     
 
     
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) 
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable) 
     throws MeaningEvaluationException {
-        return this.applyTo(node, g, onlyIfApplicable, true);
+        return this.applyTo(node, context, g, onlyIfApplicable, true);
     }     
     
     //the defaultApplyLeftToRight parameter is ignored if onlyIfApplicable is true
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable,
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable,
             boolean defaultApplyLeftToRight) 
     throws MeaningEvaluationException {
         if (node.size() != 2)
@@ -102,39 +98,26 @@ public class IntensionalFunctionApplicationRule extends CompositionRule {
         }
         
         Expr leftMeaning, rightMeaning;
-        HashMap<Type,Type> typeMatches = new HashMap<>();
         try {
-            leftMeaning = left.getMeaning();
-            rightMeaning = right.getMeaning();
+            leftMeaning = left.getMeaning(context, null);
+            rightMeaning = right.getMeaning(context, null);
         } catch (MeaningEvaluationException mee) {
            if (onlyIfApplicable) {
                throw mee;
            } else if (defaultApplyLeftToRight) {
-               return apply(left, right, g);
+               return apply(left, right, context, g);
             } else {
-               return apply(right, left, g);
+               return apply(right, left, context, g);
             }
         }
 
-        if (isIntensionalFunctionOf(leftMeaning, rightMeaning)) {
-            try {
-                CompositeType lt = (CompositeType)leftMeaning.getType();
-                CompositeType rt = new CompositeType(Type.S, rightMeaning.getType());
-                typeMatches = ((lt.getLeft()).matches(rt)).getMatches(lt.getLeft());
-//                typeMatches = Expr.alignTypes(lt.getLeft(), rt);
-            } catch (TypeEvaluationException ex) {
-                throw new MeaningEvaluationException(ex.getMessage());
-            }
-            return apply(left, right, g, typeMatches);
-        } else if (isIntensionalFunctionOf(rightMeaning, leftMeaning)) {
-            try {
-                CompositeType rt = (CompositeType)rightMeaning.getType();
-                CompositeType lt = new CompositeType(Type.S, leftMeaning.getType());
-                typeMatches = ((rt.getLeft()).matches(lt)).getMatches(rt.getLeft());
-            } catch (TypeEvaluationException ex) {
-                throw new MeaningEvaluationException(ex.getMessage());
+        TypeAlignment alignment = getTypeAlignment(node, leftMeaning, rightMeaning);
+        if (alignment.applicable) {
+            if (alignment.leftIsFunction) {
+                return apply(left, right, context, g, alignment.typeMatches);
+            } else {
+                return apply(right, left, context, g, alignment.typeMatches);
             }
-            return apply(right, left, g, typeMatches);
         }
 
         if (onlyIfApplicable) {
@@ -143,46 +126,56 @@ public class IntensionalFunctionApplicationRule extends CompositionRule {
                     "application.");
         } else {
             if (defaultApplyLeftToRight) {
-                return apply(left, right, g);
+                return apply(left, right, context, g);
             } else {
-                return apply(right, left, g);
+                return apply(right, left, context, g);
             }
         }
     }
     
-    private boolean isIntensionalFunctionOf(Expr left, Expr right) {
-        // Return true iff left is a composite type <<s,X>,Y>
-        // and right is of type X.
-
+    TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning) {
         try {
-            Type l = left.getType();
-            Type r = right.getType();
-            if (l instanceof CompositeType) {
-                CompositeType t = (CompositeType)l; // t = <<s,X>,Y>
-                Type tl = t.getLeft();
-                if (tl instanceof CompositeType) {
-                    CompositeType t2 = (CompositeType)tl; // t2 = <s,X>
-                    Type t2l = t2.getLeft(); // t2l = s
-                    Type t2r = t2.getRight(); // t2r = X
-                    if (t2l instanceof ConstType && t2l.equals(Type.S)
-                            && t2r.matches(r) != null) {
-                        return true;
-                    }
+            Type l = leftMeaning.getType();
+            Type r = rightMeaning.getType();
+            TypeAlignment alignment = alignIntensionalFunction(l, r, true);
+            if (alignment == null)
+                alignment = alignIntensionalFunction(r, l, false);
+            if (alignment != null)
+                return alignment;
+        } catch (TypeEvaluationException ex) {
+        }
+        return TypeAlignment.NOT_APPLICABLE;
+    }
+    
+    private TypeAlignment alignIntensionalFunction(Type l, Type r, boolean leftIsFunction) {
+        // If l is a composite type <<s,X>,Y> and r is of type X, return
+        // the matches of the type variables in the domain <s,X> against
+        // the intension <s,r> of the argument type, matching them just once.
+
+        if (l instanceof CompositeType) {
+            CompositeType t = (CompositeType)l; // t = <<s,X>,Y>
+            Type tl = t.getLeft();
+            if (tl instanceof CompositeType) {
+                CompositeType t2 = (CompositeType)tl; // t2 = <s,X>
+                Type t2l = t2.getLeft(); // t2l = s
+                if (t2l instanceof ConstType && t2l.equals(Type.S)) {
+                    MatchPair matches = tl.matches(CompositeType.get(Type.S, r));
+                    if (matches != null)
+                        return new TypeAlignment(true, leftIsFunction, matches.getMatches(tl), null);
                 }
             }
-        } catch (TypeEvaluationException ex) {
         }
-        return false;
+        return null;
     }
 
     
-    private Expr apply(LFNode fun, LFNode app, AssignmentFunction g) {
-        return new FunApp(new MeaningBracketExpr(fun, g), new MeaningBracketExpr(app, g));
+    private Expr apply(LFNode fun, LFNode app, EvaluationContext context, AssignmentFunction g) {
+        return new FunApp(new MeaningBracketExpr(fun, context, g), new MeaningBracketExpr(app, context, g));
     }
     
-    private Expr apply(LFNode fun, LFNode app, AssignmentFunction g, HashMap<Type,Type> alignments) {
+    private Expr apply(LFNode fun, LFNode app, EvaluationContext context, AssignmentFunction g, HashMap<Type,Type> alignments) {
 
-        IdentifierTyper typingConventions = TrainingWindow.getCurrentTypingConventions();
+        IdentifierTyper typingConventions = context.getTypingConventions();
 
         // Choose a default variable for binding the world --
         // first using the current typing conventions, and failing that, just
@@ -240,9 +233,9 @@ public class IntensionalFunctionApplicationRule extends CompositionRule {
 //
 //        return new Lambda(var, new MeaningBracketExpr(body, g2, topDown), true);
         
-        Expr app2 = new Lambda(var, new MeaningBracketExpr(app, g), true);
+        Expr app2 = new Lambda(var, new MeaningBracketExpr(app, context, g), true);
 
-        FunApp fa = new FunApp(new MeaningBracketExpr(fun, g), app2);
+        FunApp fa = new FunApp(new MeaningBracketExpr(fun, context, g), app2);
         if (!alignments.isEmpty()) {
             Map updates = new HashMap();
             fa = (FunApp) fa.createAlphatypicalVariant(alignments, fa.getAllVars(), updates);
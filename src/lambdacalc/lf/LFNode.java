@@ -95,10 +95,21 @@ public abstract class LFNode {
     /**
      * This returns the bottom-up derived meaning of a node, as long as the
      * node isMeaningful, has a nonterminal composition rule assigned, the
-     * rule is applicable, etc.
+     * rule is applicable, etc., in the default evaluation context.
      */
     public final Expr getMeaning() throws MeaningEvaluationException {
-        return getMeaning(null);
+        return getMeaning(EvaluationContext.getDefault(), null);
+    }
+    
+    /**
+     * This returns the meaning of a node given an assignment function,
+     * in the default evaluation context.
+     *
+     * @param g an assignment function, or null
+     */
+    public final Expr getMeaning(AssignmentFunction g) 
+    throws MeaningEvaluationException {
+        return getMeaning(EvaluationContext.getDefault(), g);
     }
     
     /**
@@ -108,10 +119,11 @@ public abstract class LFNode {
      * use a variable in the range of the assignment function or else it may
      * accidentally bind a replaced instance of g(n).
      *
+     * @param context the rules, typing conventions and lexicon in effect
      * @param g an assignment function, or null to not associate GApp instances
      * with an assignment function (as when doing bottom-up derivations).
      */
-    public abstract Expr getMeaning(AssignmentFunction g) 
+    public abstract Expr getMeaning(EvaluationContext context, AssignmentFunction g) 
     throws MeaningEvaluationException;
 
     /**
@@ -205,7 +217,21 @@ public abstract class LFNode {
         return text.replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll(">", "&gt;");
     }
    
-    public abstract void guessRules(RuleList rules, boolean nonBranchingOnly);
+    /**
+     * Sets composition rules of nonterminals in the tree where they haven't been 
+     * set yet and are uniquely determined, choosing among the given rules and
+     * otherwise using the default evaluation context.
+     */
+    public final void guessRules(RuleList rules, boolean nonBranchingOnly) {
+        guessRules(EvaluationContext.getDefault().withRules(rules), nonBranchingOnly);
+    }
+    
+    /**
+     * Sets composition rules of nonterminals in the tree where they haven't been 
+     * set yet and are uniquely determined, choosing among the rules of the
+     * given context.
+     */
+    public abstract void guessRules(EvaluationContext context, boolean nonBranchingOnly);
     
     public abstract void guessLexicalEntries(Lexicon lexicon);
 
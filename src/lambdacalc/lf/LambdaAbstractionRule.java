@@ -30,7 +30,6 @@ package lambdacalc.lf;
 
 import java.util.HashSet;
 import java.util.Set;
-import lambdacalc.gui.TrainingWindow;
 import lambdacalc.logic.Expr;
 import lambdacalc.logic.IdentifierTyper;
 import lambdacalc.logic.Lambda;
@@ -54,7 +53,7 @@ public class LambdaAbstractionRule extends CompositionRule {
     /**
      * As a side effect, determines index and body.
      */
-    public boolean isApplicableTo(Nonterminal node) {
+    public boolean isApplicableTo(Nonterminal node, EvaluationContext context) {
         
         if (node.size() != 2) return false;
 
@@ -67,9 +66,9 @@ public class LambdaAbstractionRule extends CompositionRule {
     
     //We ignore the parameter onlyIfApplicable because there is just no way to "apply" this
     //rule in non-applicable cases.
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
      
-        if (!this.isApplicableTo(node)) {
+        if (!this.isApplicableTo(node, context)) {
             throw new MeaningEvaluationException
                     ("The predicate abstraction rule is only " +
                     "applicable on a nonterminal that has exactly " +
@@ -96,7 +95,7 @@ public class LambdaAbstractionRule extends CompositionRule {
 
         type = index.getType();
         
-        IdentifierTyper typingConventions = TrainingWindow.getCurrentTypingConventions();
+        IdentifierTyper typingConventions = context.getTypingConventions();
 
         // Choose a default variable --
         // first using the current typing conventions and the type of the bare index,
@@ -123,7 +122,7 @@ public class LambdaAbstractionRule extends CompositionRule {
             // Choose a variable that is not in use in the simplified inner expression.
             // See MeaningBracketExpr.evaluate().
             try {
-                Expr bodyMeaning = body.getMeaning();
+                Expr bodyMeaning = body.getMeaning(context, null);
                 try { bodyMeaning = 
                         MeaningBracketExpr.
                         replaceAllMeaningBrackets(bodyMeaning).simplifyFully(); 
@@ -164,7 +163,11 @@ public class LambdaAbstractionRule extends CompositionRule {
         // below (bottom-up).
         boolean topDown = (g != null);
         
-        return new Lambda(var, new MeaningBracketExpr(body, g2, topDown), true);
+        return new Lambda(var, new MeaningBracketExpr(body, context, g2, topDown), true);
+    }
+    
+    TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning) {
+        return TypeAlignment.NOT_APPLICABLE; // applicability depends on the index child, not on types
     }
 }
 
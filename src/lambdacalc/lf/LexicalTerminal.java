@@ -44,7 +44,7 @@ public class LexicalTerminal extends Terminal {
         return true;
     }
     
-    public Expr getMeaning(AssignmentFunction g) throws MeaningEvaluationException {
+    public Expr getMeaning(EvaluationContext context, AssignmentFunction g) throws MeaningEvaluationException {
         if (this.meaning == null) throw new TerminalLacksMeaningException(this);
         
         if (g == null) return this.meaning;
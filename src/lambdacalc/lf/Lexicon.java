@@ -41,11 +41,19 @@ public class Lexicon {
     // Implement are two IdentifierTypers consistent?
     //   and unify them
 
-    private Vector entries = new Vector(); // lexical entries for words
+    private ArrayList entries = new ArrayList(); // lexical entries for words
+    
+    // Indexes into entries, kept consistent by add, replace and remove.
+    // Each maps a key to the List of entries with that orthographic form or
+    // meaning, in the same order as in entries.
+    private HashMap entriesByOrthoForm = new HashMap();
+    private HashMap entriesByMeaning = new HashMap();
         
-    public Vector getEntries() {
-        // TODO: Return a read-only wrapper so entries can't be modified?
-        return entries;
+    /**
+     * Returns a read-only view of the lexical entries, as Entry objects.
+     */
+    public List getEntries() {
+        return Collections.unmodifiableList(entries);
     }
 
     public void addLexicalEntry(String orthoForm, Expr meaning) {
@@ -55,46 +63,102 @@ public class Lexicon {
     public void addLexicalEntry(String[] orthoForms, Expr meaning) {
         if (orthoForms.length == 0)
             throw new IllegalArgumentException("orthoForms must have length at least once");
-        Entry entry = new Entry(orthoForms, meaning);
-        entries.add(entry);
+        add(new Entry(orthoForms, meaning));
     }
     
+    /**
+     * Returns the meanings of the entries with the given orthographic form,
+     * or the meanings of all entries if orthoForm is null.
+     */
     public Expr[] getMeanings(String orthoForm) {
-        Vector exprs = new Vector();
-        for (int i = 0; i < entries.size(); i++) {
-            Entry entry = (Entry)entries.get(i);
-            for (int j = 0; j < entry.orthoForms.length; j++) {
-                if (orthoForm == null || orthoForm.equals(entry.orthoForms[j])) {
-                    exprs.add(entry.meaning);
-                    break;
-                }
-            }
-        }
-        return (Expr[])exprs.toArray(new Expr[0]);
+        List matches = orthoForm == null ? entries : (List)entriesByOrthoForm.get(orthoForm);
+        if (matches == null)
+            return new Expr[0];
+        Expr[] exprs = new Expr[matches.size()];
+        for (int i = 0; i < exprs.length; i++)
+            exprs[i] = ((Entry)matches.get(i)).meaning;
+        return exprs;
     }
     
     public void removeEntry(String orthoForm, Expr meaning) {
-        for (int i = 0; i < entries.size(); i++) {
-            Entry entry = (Entry)entries.get(i);
-            if (!entry.meaning.equals(meaning))
-                continue;
+        List matches = (List)entriesByMeaning.get(meaning);
+        if (matches == null)
+            return;
+        
+        // Copy the matches since they are updated as we go.
+        Entry[] candidates = (Entry[])matches.toArray(new Entry[0]);
+        for (int i = 0; i < candidates.length; i++) {
+            Entry entry = candidates[i];
             
-            Vector newOrthoForms = new Vector();
+            List newOrthoForms = new ArrayList(entry.orthoForms.length);
             for (int j = 0; j < entry.orthoForms.length; j++)
                 if (!entry.orthoForms[j].equals(orthoForm)) 
                     newOrthoForms.add(entry.orthoForms[j]);
             
             if (newOrthoForms.size() == 0) {
                 // remove this lexical entry
-                entries.removeElementAt(i);
-                i--; // resume at this index again next iteration
+                remove(entry);
             } else if (newOrthoForms.size() != entry.orthoForms.length) {
                 // update the list of orthoforms for this entry
-                entries.set(i, new Entry((String[])newOrthoForms.toArray(new String[0]), entry.meaning));
+                replace(entry, new Entry((String[])newOrthoForms.toArray(new String[0]), entry.meaning));
             }
         }
     }
-
+    
+    private void add(Entry entry) {
+        entries.add(entry);
+        Set forms = new HashSet(Arrays.asList(entry.orthoForms));
+        for (Iterator i = forms.iterator(); i.hasNext(); )
+            index(entriesByOrthoForm, i.next()).add(entry);
+        index(entriesByMeaning, entry.meaning).add(entry);
+    }
+    
+    private void remove(Entry entry) {
+        entries.remove(entry);
+        Set forms = new HashSet(Arrays.asList(entry.orthoForms));
+        for (Iterator i = forms.iterator(); i.hasNext(); )
+            unindex(entriesByOrthoForm, i.next(), entry);
+        unindex(entriesByMeaning, entry.meaning, entry);
+    }
+    
+    // Puts newEntry in the place of oldEntry, which has the same meaning.
+    private void replace(Entry oldEntry, Entry newEntry) {
+        entries.set(entries.indexOf(oldEntry), newEntry);
+        List byMeaning = (List)entriesByMeaning.get(oldEntry.meaning);
+        byMeaning.set(byMeaning.indexOf(oldEntry), newEntry);
+        
+        // newEntry's forms are a subset of oldEntry's, so it keeps its place
+        // in the lists of the forms it still has.
+        Set newForms = new HashSet(Arrays.asList(newEntry.orthoForms));
+        Set oldForms = new HashSet(Arrays.asList(oldEntry.orthoForms));
+        for (Iterator i = oldForms.iterator(); i.hasNext(); ) {
+            Object form = i.next();
+            if (newForms.contains(form)) {
+                List byForm = (List)entriesByOrthoForm.get(form);
+                byForm.set(byForm.indexOf(oldEntry), newEntry);
+            } else {
+                unindex(entriesByOrthoForm, form, oldEntry);
+            }
+        }
+    }
+    
+    private static List index(Map map, Object key) {
+        List list = (List)map.get(key);
+        if (list == null) {
+            list = new ArrayList(1);
+            map.put(key, list);
+        }
+        return list;
+    }
+    
+    // Entries don't override equals, so they are removed by identity.
+    private static void unindex(Map map, Object key, Entry entry) {
+        List list = (List)map.get(key);
+        list.remove(entry);
+        if (list.isEmpty())
+            map.remove(key);
+    }
+    
     public class Entry {
         public final String[] orthoForms;
         public final Expr meaning;
@@ -129,7 +193,7 @@ public class Lexicon {
                 orthoForms[j] = input.readUTF();
             Expr meaning = Expr.readFromStream(input);
             
-            entries.add(new Entry(orthoForms, meaning));
+            add(new Entry(orthoForms, meaning));
         }
     }
 }
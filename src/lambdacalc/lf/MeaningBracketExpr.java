@@ -43,11 +43,17 @@ public class MeaningBracketExpr extends Expr {
     public static final char RIGHT_BRACKET = '\uu301b'; //Unicode right white square bracket
     
     private LFNode node;
+    private EvaluationContext context; // null to use the default context
     private AssignmentFunction g;
     private boolean topDown;
     
-    public MeaningBracketExpr(LFNode node, AssignmentFunction g, boolean topDown) {
+    /**
+     * @param context the context to evaluate the node in, or null to use
+     * the default context at the time the node is evaluated
+     */
+    public MeaningBracketExpr(LFNode node, EvaluationContext context, AssignmentFunction g, boolean topDown) {
         this.node = node;
+        this.context = context;
         this.g = g;
         this.topDown = topDown;
         if (g == null)
@@ -55,14 +61,28 @@ public class MeaningBracketExpr extends Expr {
     }
 
     /**
+     * @param context the context to evaluate the node in, or null to use
+     * the default context at the time the node is evaluated
      * @param g may be null
      */
-    public MeaningBracketExpr(LFNode node, AssignmentFunction g) {
+    public MeaningBracketExpr(LFNode node, EvaluationContext context, AssignmentFunction g) {
         this.node = node;
+        this.context = context;
         this.g = g;
         this.topDown = (g != null);
     }
 
+    public MeaningBracketExpr(LFNode node, AssignmentFunction g, boolean topDown) {
+        this(node, null, g, topDown);
+    }
+
+    /**
+     * @param g may be null
+     */
+    public MeaningBracketExpr(LFNode node, AssignmentFunction g) {
+        this(node, null, g);
+    }
+
     public int getOperatorPrecedence() {
         return 1;
     }
@@ -75,6 +95,21 @@ public class MeaningBracketExpr extends Expr {
         return g;
     }
     
+    /**
+     * Returns whether the node is evaluated top-down, i.e. with the
+     * assignment function passed down to it, rather than bottom-up.
+     */
+    boolean isTopDown() {
+        return topDown;
+    }
+    
+    /**
+     * Gets the context the node is evaluated in.
+     */
+    public EvaluationContext getContext() {
+        return context != null ? context : EvaluationContext.getDefault();
+    }
+    
     protected String toString(int mode) {
         String label = node.getLabel();
         if (label != null) {
@@ -131,7 +166,12 @@ public class MeaningBracketExpr extends Expr {
         return label;
     }
 
-    public Type getType() throws TypeEvaluationException {
+    protected boolean hasStableType() {
+        // the type depends on the current denotation of the node
+        return false;
+    }
+    
+    protected Type computeType() throws TypeEvaluationException {
         try {
             return evaluate().getType();
         } catch (MeaningEvaluationException mee) {
@@ -144,6 +184,14 @@ public class MeaningBracketExpr extends Expr {
      * with all meaning brackets removed.
      */
     public Expr evaluate() throws TypeEvaluationException, MeaningEvaluationException {
+        return evaluate(new MeaningBracketResolver());
+    }
+    
+    /**
+     * Evaluates this expression, replacing the meaning brackets in the
+     * denotation of the node with the given resolver.
+     */
+    Expr evaluate(MeaningBracketResolver resolver) throws TypeEvaluationException, MeaningEvaluationException {
         // When we evaluate this node, whether or not we can pass the assignment
         // function down is determined by whether this node was created for
         // top-down or bottom-up evaluation.
@@ -154,8 +202,8 @@ public class MeaningBracketExpr extends Expr {
             // g down because the subnodes must choose variables that don't
             // conflict with the ones we've chosen higher up.
             
-            Expr e = node.getMeaning(g); // with args is the top-down method
-            e = replaceAllMeaningBrackets(e);
+            Expr e = node.getMeaning(getContext(), g); // with g is the top-down method
+            e = resolver.resolve(e);
             return e;
             
         } else {
@@ -167,9 +215,9 @@ public class MeaningBracketExpr extends Expr {
             // function.
             // See LambdaAbstractionRule.applyTo(...).
             
-            Expr e = node.getMeaning(); // no args is the bottom-up method
+            Expr e = node.getMeaning(getContext(), null); // without g is the bottom-up method
             
-            e = replaceAllMeaningBrackets(e);
+            e = resolver.resolve(e);
             
             e = e.simplifyFully();
             
@@ -190,29 +238,22 @@ public class MeaningBracketExpr extends Expr {
         return objs.size() > 0;
     }
     
+    /**
+     * Replaces each meaning bracket in expr with its value. Use a
+     * MeaningBracketResolver directly to reuse the values across calls.
+     */
     public static Expr replaceAllMeaningBrackets(Expr expr) 
     throws TypeEvaluationException, MeaningEvaluationException {
-        // First get a list of all MeaningBracketExpr objects in expr.
-        ArrayList objs = new ArrayList();
-        findMeaningBrackets(expr, objs);
-        
-        // Then for each replace it with its evaluated value.
-        for (Iterator i = objs.iterator(); i.hasNext(); ) {
-            MeaningBracketExpr mbe = (MeaningBracketExpr)i.next();
-            Expr value = mbe.evaluate();
-            expr = expr.replace(mbe, value);
-        }
-        
-        return expr;
+        return new MeaningBracketResolver().resolve(expr);
     }
     
     private static void findMeaningBrackets(Expr expr, ArrayList objs) {
         if (expr instanceof MeaningBracketExpr) {
             objs.add(expr);
         } else {
-            List subexprs = expr.getSubExpressions();
-            for (Iterator i = subexprs.iterator(); i.hasNext(); )
-                findMeaningBrackets((Expr)i.next(), objs);
+            int n = expr.getSubExpressionCount();
+            for (int i = 0; i < n; i++)
+                findMeaningBrackets(expr.getSubExpression(i), objs);
         }
     }
     
@@ -312,10 +353,21 @@ public class MeaningBracketExpr extends Expr {
         }
     }
     
-    public int hashCode() {
+    protected int computeHashCode() {
         return node.hashCode();
     }
     
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        builder.add(getClass());
+        builder.add(node);
+        builder.markInexact();
+    }
+    
+    protected boolean nodeDataEquals(Expr other) {
+        MeaningBracketExpr m = (MeaningBracketExpr)other;
+        return node == m.node && context == m.context && g == m.g && topDown == m.topDown;
+    }
+    
     protected Set getVars(boolean unboundOnly) {
         return new HashSet();
     }
@@ -332,9 +384,17 @@ public class MeaningBracketExpr extends Expr {
         return new ArrayList();
     }
     
+    public int getSubExpressionCount() {
+        return 0;
+    }
+    
+    public Expr getSubExpression(int index) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    
     public Expr createFromSubExpressions(List subExpressions)
      throws IllegalArgumentException {
-        return new MeaningBracketExpr(node, g);
+        return new MeaningBracketExpr(node, context, g);
     }
     
     
@@ -353,7 +413,7 @@ public class MeaningBracketExpr extends Expr {
         return this;
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         throw new java.io.IOException("This class cannot be serialized.");
     }
    
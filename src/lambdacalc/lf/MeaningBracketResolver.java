@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * MeaningBracketResolver.java
+ */
+
+package lambdacalc.lf;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lambdacalc.logic.Expr;
+import lambdacalc.logic.ExprTransformer;
+import lambdacalc.logic.TypeEvaluationException;
+
+/**
+ * Replaces the meaning brackets in expressions with the denotations of the
+ * nodes they refer to, remembering each denotation it works out so that
+ * brackets referring to the same node, with the same assignment function
+ * and evaluation method, are only evaluated once.
+ *
+ * A resolver created without a tree assumes that nothing about the trees
+ * it sees changes while it is in use, and is meant to be thrown away
+ * afterwards. A resolver created for a tree listens to the nodes of the
+ * tree and forgets what it has remembered whenever one of them changes;
+ * call dispose when it is no longer needed so that it stops listening.
+ *
+ * Resolvers may be used from several threads at once, as ParallelEvaluator
+ * does.
+ */
+public class MeaningBracketResolver implements PropertyChangeListener {
+    
+    private final Map denotations = new ConcurrentHashMap(); // from Keys to Exprs
+    private final List watchedNodes = new ArrayList();
+    private final Map watchedNodeSet = new IdentityHashMap();
+    
+    /**
+     * Creates a resolver for use while the trees it sees don't change.
+     */
+    public MeaningBracketResolver() {
+    }
+    
+    /**
+     * Creates a resolver that forgets the denotations it has remembered
+     * whenever a node in the tree rooted at root changes.
+     */
+    public MeaningBracketResolver(LFNode root) {
+        watch(root);
+    }
+    
+    /**
+     * Returns expr with each meaning bracket in it replaced by its value.
+     * The brackets are all evaluated first, and then expr is rebuilt once.
+     */
+    public Expr resolve(Expr expr) throws TypeEvaluationException, MeaningEvaluationException {
+        final Map values = new IdentityHashMap();
+        findValues(expr, values);
+        if (values.isEmpty())
+            return expr;
+        
+        return new ExprTransformer() {
+            protected Expr transformBefore(Expr expr) {
+                Expr inner = expr.stripOutermostParens();
+                return (inner instanceof MeaningBracketExpr) ? (Expr)values.get(inner) : null;
+            }
+        }.transform(expr);
+    }
+    
+    private void findValues(Expr expr, Map values) throws TypeEvaluationException, MeaningEvaluationException {
+        if (expr instanceof MeaningBracketExpr) {
+            if (!values.containsKey(expr))
+                values.put(expr, evaluate((MeaningBracketExpr)expr));
+        } else {
+            int n = expr.getSubExpressionCount();
+            for (int i = 0; i < n; i++)
+                findValues(expr.getSubExpression(i), values);
+        }
+    }
+    
+    /**
+     * Returns the value of a meaning bracket, i.e. the denotation of its
+     * node with all meaning brackets removed. See MeaningBracketExpr.evaluate.
+     */
+    public Expr evaluate(MeaningBracketExpr expr) throws TypeEvaluationException, MeaningEvaluationException {
+        Key key = new Key(expr);
+        Expr value = (Expr)denotations.get(key);
+        if (value == null) {
+            value = expr.evaluate(this);
+            denotations.put(key, value);
+        }
+        return value;
+    }
+    
+    /**
+     * Forgets all of the denotations that have been remembered.
+     */
+    public void clear() {
+        denotations.clear();
+    }
+    
+    /**
+     * Stops listening to the tree this resolver was created for,
+     * and forgets all of the denotations that have been remembered.
+     */
+    public synchronized void dispose() {
+        for (int i = 0; i < watchedNodes.size(); i++)
+            ((LFNode)watchedNodes.get(i)).removePropertyChangeListener(this);
+        watchedNodes.clear();
+        watchedNodeSet.clear();
+        clear();
+    }
+    
+    private synchronized void watch(LFNode node) {
+        if (!watchedNodeSet.containsKey(node)) {
+            watchedNodeSet.put(node, node);
+            watchedNodes.add(node);
+            node.addPropertyChangeListener(this);
+        }
+        List children = node.getChildren();
+        for (int i = 0; i < children.size(); i++)
+            watch((LFNode)children.get(i));
+    }
+    
+    public void propertyChange(PropertyChangeEvent e) {
+        clear();
+        if (e.getPropertyName().equals("children"))
+            watch((LFNode)e.getSource());
+    }
+    
+    /**
+     * Identifies the denotation a meaning bracket stands for: its node,
+     * evaluation context and assignment function (all by identity) and
+     * whether it is evaluated top-down.
+     */
+    private static class Key {
+        private final LFNode node;
+        private final EvaluationContext context;
+        private final AssignmentFunction g;
+        private final boolean topDown;
+        
+        Key(MeaningBracketExpr expr) {
+            node = expr.getNode();
+            context = expr.getContext();
+            g = expr.getAssignmentFunction();
+            topDown = expr.isTopDown();
+        }
+        
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key k = (Key)obj;
+            return node == k.node && context == k.context && g == k.g && topDown == k.topDown;
+        }
+        
+        public int hashCode() {
+            return System.identityHashCode(node) ^ System.identityHashCode(context)
+                ^ System.identityHashCode(g) ^ (topDown ? 1 : 0);
+        }
+    }
+}
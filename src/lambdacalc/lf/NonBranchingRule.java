@@ -43,7 +43,7 @@ public class NonBranchingRule extends CompositionRule {
         super("Non-Branching Node");
     }
     
-    public boolean isApplicableTo(Nonterminal node) {
+    public boolean isApplicableTo(Nonterminal node, EvaluationContext context) {
         if (node instanceof DummyNonterminal) {
             return true;
         }
@@ -57,8 +57,8 @@ public class NonBranchingRule extends CompositionRule {
         return nChildren == 1;
     }
     
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
-        if (!isApplicableTo(node))
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
+        if (!isApplicableTo(node, context))
             throw new MeaningEvaluationException
                     ("The non-branching node rule is not " +
                     "applicable on a nonterminal that does not have exactly " +
@@ -68,10 +68,14 @@ public class NonBranchingRule extends CompositionRule {
         for (int i = 0; i < node.size(); i++) {
             if (!(node.getChild(i) instanceof DummyTerminal ||
                   node.getChild(i) instanceof DummyNonterminal)) {
-                return new MeaningBracketExpr(node.getChild(i), g);
+                return new MeaningBracketExpr(node.getChild(i), context, g);
             }
         }
         // All nodes were dummy terminals; return the first
-        return new MeaningBracketExpr(node.getChild(0), g);
+        return new MeaningBracketExpr(node.getChild(0), context, g);
+    }
+    
+    TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning) {
+        return TypeAlignment.NOT_APPLICABLE; // not a binary rule
     }
 }
@@ -21,9 +21,11 @@
 
 package lambdacalc.lf;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
-import java.util.Vector;
 import javax.swing.JOptionPane;
 import lambdacalc.gui.TrainingWindow;
 import lambdacalc.logic.Expr;
@@ -32,14 +34,19 @@ import lambdacalc.logic.TypeEvaluationException;
 
 public class Nonterminal extends LFNode {
     
-    private Vector children = new Vector();
+    private ArrayList children = new ArrayList(2);
     
     private CompositionRule compositor;
-    private Vector userProvidedMeaningSimplification; //of Expr objects
+    private List<Expr> userProvidedMeaningSimplification;
     
     protected Type type = null;
     protected Expr meaning = null;
     
+    // The type alignments composition rules worked out for the meanings
+    // the children had when they were computed. See getTypeAlignment.
+    private Expr alignedLeftMeaning, alignedRightMeaning;
+    private Map typeAlignments;
+    
   /**
    *
    * @return
@@ -91,13 +98,11 @@ public class Nonterminal extends LFNode {
 //        changes.firePropertyChange("compositionRule", oldRule, compositor);
     }
     
-    //returns vector of Expr objects
-    public Vector getUserMeaningSimplification() {
+    public List<Expr> getUserMeaningSimplification() {
         return userProvidedMeaningSimplification;
     }
     
-    //simplificationSteps: vector of Expr objects
-    public void setUserMeaningSimplification(Vector simplificationSteps) {
+    public void setUserMeaningSimplification(List<Expr> simplificationSteps) {
         userProvidedMeaningSimplification = simplificationSteps;
     }
     
@@ -112,16 +117,39 @@ public class Nonterminal extends LFNode {
     }
     
     @Override
-    public Expr getMeaning(AssignmentFunction g)
+    public Expr getMeaning(EvaluationContext context, AssignmentFunction g)
         throws MeaningEvaluationException {
         
         if (this.meaning != null) {
             return this.meaning;
         }
+        Expr m = context.getEvaluatedMeaning(this);
+        if (m != null) {
+            return m;
+        }
+        
+        m = evaluate(context, g);
+        setMeaning(m);
+        try {
+            setType(m.getType());
+        } catch (TypeEvaluationException ex) {
+            //ex.printStackTrace();
+        }
+        return m;
+    }
+    
+    /**
+     * Applies this node's composition rule, guessing it first if necessary,
+     * but doesn't store the resulting meaning in this node. The meanings of
+     * the children are evaluated (and stored) as needed.
+     */
+    Expr evaluate(EvaluationContext context, AssignmentFunction g)
+        throws MeaningEvaluationException {
+        
         if (lambdacalc.Main.GOD_MODE) {
             // Guess a composition rule, and if we don't find any, tell the user none seem to apply.
-            if (compositor == null || !compositor.isApplicableTo(this))
-                guessCompositionRule(TrainingWindow.getCurrentExFile().getRules());
+            if (compositor == null || !compositor.isApplicableTo(this, context))
+                guessCompositionRule(context);
             if (compositor == null) {
                 throw new NonterminalLacksCompositionRuleException(this,
                         "I do not know how to combine the children of the " + getLabel() + " node." +
@@ -130,7 +158,7 @@ public class Nonterminal extends LFNode {
             } 
         } else {
             if (compositor == null) { 
-                if (NonBranchingRule.INSTANCE.isApplicableTo(this))
+                if (NonBranchingRule.INSTANCE.isApplicableTo(this, context))
                     // We are always allowed to guess the non-branching rule, even when not in
                     // God mode.
                     compositor = NonBranchingRule.INSTANCE;
@@ -142,14 +170,25 @@ public class Nonterminal extends LFNode {
             }
         }
         
-        Expr m = compositor.applyTo(this, g, true);
-        setMeaning(m);
-        try {
-            setType(m.getType());
-        } catch (TypeEvaluationException ex) {
-            //ex.printStackTrace();
+        return compositor.applyTo(this, context, g, true);
+    }
+    
+    /**
+     * Returns true if evaluating this node would ask the user to choose
+     * among several applicable composition rules, which happens only in
+     * God mode. The children must already have been evaluated.
+     */
+    boolean needsUserToChooseRule(EvaluationContext context) {
+        if (!lambdacalc.Main.GOD_MODE)
+            return false;
+        if (compositor != null && compositor.isApplicableTo(this, context))
+            return false;
+        int num_rules = 0;
+        for (Object rule : context.getRules()) {
+            if (((CompositionRule) rule).isApplicableTo(this, context))
+                num_rules++;
         }
-        return m;
+        return num_rules > 1;
     }
     
     public void setType(Type type) {
@@ -166,6 +205,30 @@ public class Nonterminal extends LFNode {
         return meaning != null;
     }
     
+    /**
+     * Returns the TypeAlignment that rule stored for this node when the
+     * meanings of its children were leftMeaning and rightMeaning (the very
+     * same objects), or null if there is none.
+     */
+    synchronized TypeAlignment getTypeAlignment(CompositionRule rule, Expr leftMeaning, Expr rightMeaning) {
+        if (typeAlignments == null || leftMeaning != alignedLeftMeaning || rightMeaning != alignedRightMeaning)
+            return null;
+        return (TypeAlignment)typeAlignments.get(rule);
+    }
+    
+    /**
+     * Stores the TypeAlignment that rule computed for the given meanings of
+     * the children. Alignments stored for other meanings are dropped.
+     */
+    synchronized void setTypeAlignment(CompositionRule rule, Expr leftMeaning, Expr rightMeaning, TypeAlignment alignment) {
+        if (typeAlignments == null || leftMeaning != alignedLeftMeaning || rightMeaning != alignedRightMeaning) {
+            typeAlignments = new HashMap();
+            alignedLeftMeaning = leftMeaning;
+            alignedRightMeaning = rightMeaning;
+        }
+        typeAlignments.put(rule, alignment);
+    }
+    
     /**
      * Returns a map of properties. Keys are Strings and values are Objects.
      * Each entry represents a property-value pair. Properties include orthographic
@@ -186,20 +249,20 @@ public class Nonterminal extends LFNode {
      * sets the composition rule of this nonterminal if it hasn't been
      * set yet and if it's uniquely determined.
      *
-     * @param rules the rules
+     * @param context the context, whose rules are the rules to choose from
      * @param nonBranchingOnly
      */
     @Override
-    public void guessRules(RuleList rules, boolean nonBranchingOnly) {
+    public void guessRules(EvaluationContext context, boolean nonBranchingOnly) {
         for (int i = 0; i < children.size(); i++)
-            getChild(i).guessRules(rules, nonBranchingOnly);
+            getChild(i).guessRules(context, nonBranchingOnly);
         
         if (compositor != null)
             return;
         
         if (nonBranchingOnly && this.isBranching()) return;
         
-        guessCompositionRule(rules);
+        guessCompositionRule(context);
     }
     
     /**
@@ -215,13 +278,13 @@ public class Nonterminal extends LFNode {
     
     
     // Changed 7/16/2020 by AA: Now compatible with > 2 possible rules
-    private void guessCompositionRule(RuleList rules) {
+    private void guessCompositionRule(EvaluationContext context) {
       RuleList applicable_rules = new RuleList();
       
-      for (Object rule1 : rules) {
+      for (Object rule1 : context.getRules()) {
         CompositionRule rule = (CompositionRule) rule1;
-        if (rule.isApplicableTo(this)) {
-            applicable_rules.addElement(rule1);
+        if (rule.isApplicableTo(this, context)) {
+            applicable_rules.add(rule1);
         }
       }
       int num_rules = applicable_rules.size();
@@ -230,7 +293,7 @@ public class Nonterminal extends LFNode {
           compositor = null;
         // Given a single compatible rule, set the compositor as that rule.
       } else if (num_rules == 1) {
-          compositor = (CompositionRule) applicable_rules.firstElement();
+          compositor = (CompositionRule) applicable_rules.get(0);
       } else {
         if (!lambdacalc.Main.GOD_MODE) {
             // Given multiple compatible rule, return null. We don't actually
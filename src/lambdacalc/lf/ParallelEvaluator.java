@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ParallelEvaluator.java
+ */
+
+package lambdacalc.lf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import lambdacalc.logic.Expr;
+import lambdacalc.logic.Type;
+import lambdacalc.logic.TypeEvaluationException;
+
+/**
+ * Evaluates the meanings of all of the nonterminals in a tree, evaluating
+ * sister subtrees at the same time on a fork-join pool.
+ *
+ * While the pool is working, the meanings are kept aside rather than stored
+ * in the nodes, so that nothing observable about the tree changes. Storing
+ * them is a separate step, Evaluation.publish, which must be taken on the
+ * thread that owns the tree (in the GUI, the event dispatch thread), since
+ * it may fire property change events. evaluate does both steps, so it must
+ * be called on that thread too. computeMeanings does only the first, so it
+ * may be called on another thread, as long as nothing changes the tree
+ * until the evaluation is published.
+ *
+ * If a MeaningBracketResolver is given, the value of a meaning bracket for
+ * each node is also worked out on the pool and remembered by the resolver,
+ * so that the brackets in the nodes' meanings can be resolved afterwards
+ * without evaluating them again.
+ *
+ * Nodes are evaluated bottom-up, i.e. without an assignment function. In God
+ * mode, a node for which several composition rules apply is skipped, along
+ * with its ancestors, since evaluating it would ask the user which rule to
+ * use. getMeaning can be called on those nodes afterwards as usual.
+ */
+public class ParallelEvaluator {
+    
+    private final EvaluationContext context;
+    private final ForkJoinPool pool;
+    
+    /**
+     * Creates an evaluator that evaluates trees in the given context on the
+     * common fork-join pool.
+     */
+    public ParallelEvaluator(EvaluationContext context) {
+        this(context, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Creates an evaluator that evaluates trees in the given context on the
+     * given pool.
+     */
+    public ParallelEvaluator(EvaluationContext context, ForkJoinPool pool) {
+        if (context == null || pool == null)
+            throw new IllegalArgumentException();
+        this.context = context;
+        this.pool = pool;
+    }
+    
+    /**
+     * The outcome of evaluating a single nonterminal.
+     */
+    public static class Result {
+        public final Nonterminal node;
+        public final Expr meaning; // null if evaluation failed
+        public final Type type; // null if the meaning's type couldn't be determined
+        public final Expr simplifiedMeaning; // null if there was no resolver or evaluation or simplification failed
+        public final Exception error; // null unless evaluation or simplification failed
+        
+        Result(Nonterminal node, Expr meaning, Type type, Expr simplifiedMeaning, Exception error) {
+            this.node = node;
+            this.meaning = meaning;
+            this.type = type;
+            this.simplifiedMeaning = simplifiedMeaning;
+            this.error = error;
+        }
+    }
+    
+    /**
+     * The meanings worked out by computeMeanings, which have not yet been
+     * stored in the tree.
+     */
+    public static class Evaluation {
+        private final List results;
+        private final Map evaluated; // the meanings in results, and those of traces, by node
+        private final Map traces; // from Traces to the meanings to store in them
+        private boolean published = false;
+        
+        Evaluation(List results, Map evaluated, Map traces) {
+            this.results = results;
+            this.evaluated = evaluated;
+            this.traces = traces;
+        }
+        
+        /**
+         * Gets the outcome for each nonterminal, children before their
+         * parents.
+         */
+        public List getResults() {
+            return results;
+        }
+        
+        /**
+         * Stores the meanings and types in the nodes, unless that has
+         * been done already. This must be called on the thread that owns
+         * the tree.
+         */
+        public void publish() {
+            if (published)
+                return;
+            published = true;
+            
+            for (Iterator i = traces.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry e = (Map.Entry)i.next();
+                Trace t = (Trace)e.getKey();
+                if (!t.hasMeaning())
+                    t.setMeaning((Expr)e.getValue());
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Result r = (Result)results.get(i);
+                if (r.meaning == null || r.node.hasMeaning())
+                    continue;
+                r.node.setMeaning(r.meaning);
+                if (r.type != null)
+                    r.node.setType(r.type);
+            }
+            
+            // The meanings' brackets hold onto the context the map belongs
+            // to, and now find the meanings in the nodes instead.
+            evaluated.clear();
+        }
+    }
+    
+    /**
+     * Evaluates every meaningful nonterminal in the tree rooted at root and
+     * stores the results in the nodes.
+     * @return a list of Result objects, children before their parents
+     */
+    public List evaluate(LFNode root) {
+        return evaluate(root, null);
+    }
+    
+    /**
+     * Evaluates every meaningful nonterminal in the tree rooted at root,
+     * working out the value of a meaning bracket for each with resolver if
+     * it is not null, and stores the meanings in the nodes.
+     * @return a list of Result objects, children before their parents
+     */
+    public List evaluate(LFNode root, MeaningBracketResolver resolver) {
+        // Traces store their meanings, and fire property change events, the
+        // first time they are evaluated. Doing that here first means that
+        // publishing fires no events, which would make a resolver for the
+        // tree forget the values just worked out.
+        evaluateTerminals(root);
+        
+        Evaluation evaluation = computeMeanings(root, resolver);
+        evaluation.publish();
+        return evaluation.getResults();
+    }
+    
+    /**
+     * Evaluates every meaningful nonterminal in the tree rooted at root
+     * without storing the meanings in the tree, and without simplifying
+     * them. The tree must not be changed until the evaluation is published.
+     */
+    public Evaluation computeMeanings(LFNode root) {
+        return computeMeanings(root, null);
+    }
+    
+    private Evaluation computeMeanings(LFNode root, MeaningBracketResolver resolver) {
+        Map evaluated = new ConcurrentHashMap();
+        Map traces = new HashMap();
+        findTraceMeanings(root, traces);
+        evaluated.putAll(traces);
+        
+        List results = new ArrayList();
+        if (!(root instanceof Nonterminal))
+            return new Evaluation(results, evaluated, traces);
+        
+        NodeTask task = new NodeTask((Nonterminal)root, context.withEvaluatedMeanings(evaluated), evaluated, resolver);
+        if (pool.getParallelism() > 1) {
+            pool.invoke(task);
+        } else {
+            // Handing the work to a single worker thread would only add
+            // overhead, so evaluate the nodes one by one on this thread.
+            task.setForking(false);
+            task.invoke();
+        }
+        task.collectResults(results);
+        return new Evaluation(results, evaluated, traces);
+    }
+    
+    private void evaluateTerminals(LFNode node) {
+        if (node instanceof Terminal) {
+            try {
+                node.getMeaning(context, null);
+            } catch (MeaningEvaluationException e) {
+                // the error will come up again when the parent is evaluated
+            }
+        }
+        List children = node.getChildren();
+        for (int i = 0; i < children.size(); i++)
+            evaluateTerminals((LFNode)children.get(i));
+    }
+    
+    // Works out the meanings of the traces that don't have one yet, which
+    // are looked up in the evaluation's map instead of being stored.
+    private void findTraceMeanings(LFNode node, Map traces) {
+        if (node instanceof Trace && !((Trace)node).hasMeaning())
+            traces.put(node, ((Trace)node).createMeaning(null));
+        List children = node.getChildren();
+        for (int i = 0; i < children.size(); i++)
+            findTraceMeanings((LFNode)children.get(i), traces);
+    }
+    
+    /**
+     * Evaluates a nonterminal after evaluating its nonterminal children,
+     * all but the last of them in forked tasks unless forking is turned off.
+     */
+    private static class NodeTask extends RecursiveTask {
+        private final Nonterminal node;
+        private final EvaluationContext context;
+        private final Map evaluated;
+        private final MeaningBracketResolver resolver; // shared by all the tasks, so each node is simplified once, or null
+        private final List childTasks = new ArrayList();
+        private boolean forking = true;
+        private boolean skipped = false;
+        
+        NodeTask(Nonterminal node, EvaluationContext context, Map evaluated, MeaningBracketResolver resolver) {
+            this.node = node;
+            this.context = context;
+            this.evaluated = evaluated;
+            this.resolver = resolver;
+            for (int i = 0; i < node.size(); i++) {
+                if (node.getChild(i) instanceof Nonterminal)
+                    childTasks.add(new NodeTask((Nonterminal)node.getChild(i), context, evaluated, resolver));
+            }
+        }
+        
+        void setForking(boolean forking) {
+            this.forking = forking;
+            for (int i = 0; i < childTasks.size(); i++)
+                ((NodeTask)childTasks.get(i)).setForking(forking);
+        }
+        
+        protected Object compute() {
+            if (forking) {
+                for (int i = 0; i < childTasks.size() - 1; i++)
+                    ((NodeTask)childTasks.get(i)).fork();
+                if (childTasks.size() > 0)
+                    ((NodeTask)childTasks.get(childTasks.size() - 1)).invoke();
+                for (int i = 0; i < childTasks.size() - 1; i++)
+                    ((NodeTask)childTasks.get(i)).join();
+            } else {
+                for (int i = 0; i < childTasks.size(); i++)
+                    ((NodeTask)childTasks.get(i)).invoke();
+            }
+            
+            for (int i = 0; i < childTasks.size(); i++) {
+                if (((NodeTask)childTasks.get(i)).skipped) {
+                    skipped = true;
+                    return null;
+                }
+            }
+            
+            if (!node.isMeaningful())
+                return null;
+            
+            Expr meaning;
+            try {
+                if (node.hasMeaning()) {
+                    meaning = node.getMeaning(context, null);
+                } else if (node.needsUserToChooseRule(context)) {
+                    skipped = true;
+                    return null;
+                } else {
+                    meaning = node.evaluate(context, null);
+                    evaluated.put(node, meaning);
+                }
+            } catch (MeaningEvaluationException e) {
+                return new Result(node, null, null, null, e);
+            }
+            
+            Type type = null;
+            try {
+                type = meaning.getType();
+            } catch (TypeEvaluationException e) {
+                // leave the type unknown, as getMeaning does
+            }
+            
+            if (resolver == null)
+                return new Result(node, meaning, type, null, null);
+            
+            try {
+                // This is the value of a bottom-up meaning bracket for the
+                // node, so when the parent's brackets are resolved they
+                // find it already worked out.
+                Expr simplified = resolver.evaluate(new MeaningBracketExpr(node, context, null));
+                return new Result(node, meaning, type, simplified, null);
+            } catch (TypeEvaluationException e) {
+                return new Result(node, meaning, type, null, e);
+            } catch (MeaningEvaluationException e) {
+                return new Result(node, meaning, type, null, e);
+            }
+        }
+        
+        void collectResults(List results) {
+            for (int i = 0; i < childTasks.size(); i++)
+                ((NodeTask)childTasks.get(i)).collectResults(results);
+            Object r = getRawResult();
+            if (r != null)
+                results.add(r);
+        }
+    }
+}
@@ -30,7 +30,6 @@ package lambdacalc.lf;
 
 import java.util.HashMap;
 import java.util.Map;
-import lambdacalc.gui.TrainingWindow;
 import lambdacalc.logic.And;
 import lambdacalc.logic.CompositeType;
 import lambdacalc.logic.ConstType;
@@ -52,9 +51,6 @@ public class PredicateModificationRule extends CompositionRule {
     public static final PredicateModificationRule INSTANCE 
             = new PredicateModificationRule();
     
-//    public static final Var VARIABLE = Var.Z;
-    public static Var VARIABLE = null;
-    
 //    private static final ExpressionParser.ParseOptions options
 //            = new ExpressionParser.ParseOptions
 //            (true, // single letter identifier mode is on
@@ -69,41 +65,52 @@ public class PredicateModificationRule extends CompositionRule {
         super("Predicate Modification");
     }
     
-    public boolean isApplicableTo(Nonterminal node) {
+    public boolean isApplicableTo(Nonterminal node, EvaluationContext context) {
+        if (node.size() != 2)
+            return false;
+        try {
+            Expr leftMeaning = node.getLeftChild().getMeaning(context, null);
+            Expr rightMeaning = node.getRightChild().getMeaning(context, null);
+            return getTypeAlignment(node, leftMeaning, rightMeaning).applicable;
+                
+        // If either child could not be evaluated (or was not composite),
+        // then we just return false.
+        } catch (Exception e) {
+            return false;
+        }            
+    }
+    
+    TypeAlignment alignTypes(Expr leftMeaning, Expr rightMeaning) {
         try {
-            Type ltype = node.getLeftChild().getMeaning().getType();
-            Type rtype = node.getRightChild().getMeaning().getType();
+            Type ltype = leftMeaning.getType();
+            Type rtype = rightMeaning.getType();
 //            boolean l = ltype.equals(Type.ET);
 //            boolean r = rtype.equals(Type.ET);
-            boolean correctSize = node.size() == 2;
-            boolean correctTypes = false;
             if (ltype instanceof CompositeType) {
-                CompositeType lt = (CompositeType)ltype;
+                CompositeType lt = (CompositeType)ltype; // <'a,t>
                 Type ltR = lt.getRight();
                 if (ltR instanceof ConstType && ltR.equals(Type.T)) {
                     if (rtype instanceof CompositeType) {
-                        CompositeType rt = (CompositeType)rtype;
+                        CompositeType rt = (CompositeType)rtype; // <e,t>
                         Type rtR = rt.getRight();
                         if (rtR instanceof ConstType && rtR.equals(Type.T)) {
-                            if (ltype.matches(rtype) != null) {
-                                correctTypes = true;
+                            MatchPair typeMatches = lt.matches(rt);
+                            if (typeMatches != null) {
+                                Type commonArgType = ((CompositeType)typeMatches.getAlignedType(lt)).getLeft(); // e
+                                return new TypeAlignment(true, false, null, commonArgType);
                             }
                         }
                     }
                 }
             }
-            return (correctSize && correctTypes);
-                
-        // If either child could not be evaluated (or was not composite),
-        // then we just return false.
-        } catch (Exception e) {
-            return false;
-        }            
+        } catch (TypeEvaluationException ex) {
+        }
+        return TypeAlignment.NOT_APPLICABLE;
     }
     
-    public Expr applyTo(Nonterminal node, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
+    public Expr applyTo(Nonterminal node, EvaluationContext context, AssignmentFunction g, boolean onlyIfApplicable) throws MeaningEvaluationException {
 
-        if (!this.isApplicableTo(node)) {
+        if (!this.isApplicableTo(node, context)) {
             throw new MeaningEvaluationException
                     ("The predicate modification rule is only " +
                     "applicable on a nonterminal that has exactly " +
@@ -115,29 +122,18 @@ public class PredicateModificationRule extends CompositionRule {
         
         LFNode left = node.getLeftChild();
         LFNode right = node.getRightChild();
-        Expr leftMeaning = left.getMeaning();
-        Expr rightMeaning = right.getMeaning();
-//        HashMap<Type,Type> typeMatches = new HashMap<Type,Type>();
-        Type commonArgType = Type.E;
-
-        try {
-            CompositeType lt = (CompositeType)leftMeaning.getType(); // <'a,t>
-            CompositeType rt = (CompositeType)rightMeaning.getType(); // <e,t>
-            
-            MatchPair typeMatches = lt.matches(rt);
-            commonArgType = ((CompositeType)typeMatches.getAlignedType(lt)).getLeft(); // e
-//            typeMatches = Expr.alignTypes(lt,rt);
-//            commonArgType = ((CompositeType)Expr.getAlignedType(lt, typeMatches)).getLeft();
-        } catch (TypeEvaluationException ex) {
-            throw new MeaningEvaluationException(ex.getMessage());
-        }
+        Expr leftMeaning = left.getMeaning(context, null);
+        Expr rightMeaning = right.getMeaning(context, null);
+        Type commonArgType = getTypeAlignment(node, leftMeaning, rightMeaning).commonArgType;
+//        typeMatches = Expr.alignTypes(lt,rt);
+//        commonArgType = ((CompositeType)Expr.getAlignedType(lt, typeMatches)).getLeft();
         
-        MeaningBracketExpr leftM = new MeaningBracketExpr(left, g);
-        MeaningBracketExpr rightM = new MeaningBracketExpr(right, g);
+        MeaningBracketExpr leftM = new MeaningBracketExpr(left, context, g);
+        MeaningBracketExpr rightM = new MeaningBracketExpr(right, context, g);
 
 //        System.out.println("commonArgType: " + commonArgType);
 //        VARIABLE = new Var("z", commonArgType, true);
-        IdentifierTyper typingConventions = TrainingWindow.getCurrentTypingConventions();
+        IdentifierTyper typingConventions = context.getTypingConventions();
 
         Var VARIABLE = typingConventions.getVarForType(commonArgType, false);
         
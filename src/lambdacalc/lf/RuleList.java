@@ -34,7 +34,7 @@ import java.util.*;
  *
  * @author champoll
  */
-public class RuleList extends Vector {
+public class RuleList extends ArrayList {
     
     public static final RuleList HEIM_KRATZER 
             = new RuleList(new CompositionRule[] {
@@ -28,8 +28,8 @@
 
 package lambdacalc.lf;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 import lambdacalc.logic.Expr;
 import lambdacalc.logic.Type;
 
@@ -61,13 +61,13 @@ public abstract class Terminal extends LFNode {
     /**
      * Nothing to do on a Terminal.
      *
-     * @param rules this parameter is ignored 
-     * (maybe later it can be used for type-shifting rules)
+     * @param context this parameter is ignored 
+     * (maybe later its rules can be used for type-shifting rules)
      */
-    public void guessRules(RuleList rules, boolean nonBranchingOnly) {
+    public void guessRules(EvaluationContext context, boolean nonBranchingOnly) {
     
     }    
-    List children = new Vector(0);
+    List children = new ArrayList(0);
     public List getChildren() {
         return children;
     }
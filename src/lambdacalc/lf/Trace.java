@@ -69,19 +69,28 @@ public class Trace extends Terminal {
         return this.getLabel().equals(SYMBOL);
     }
     
-    public Expr getMeaning(AssignmentFunction g) throws MeaningEvaluationException {
+    public Expr getMeaning(EvaluationContext context, AssignmentFunction g) throws MeaningEvaluationException {
         if (this.meaning != null) return this.meaning;
-        Expr m;
-        if (g == null) {
-            m = new GApp(this.getIndex(),this.getType());
-            setMeaning(m);
-            return m;
-        }
-        else {
-            m = (Expr)g.get(getIndex(), getType());
-            setMeaning(m);
-            return m;
-        }
+        Expr m = context.getEvaluatedMeaning(this);
+        if (m != null) return m;
+        m = createMeaning(g);
+        setMeaning(m);
+        return m;
+    }
+    
+    /**
+     * Returns the meaning this trace gets when it is first evaluated with
+     * the given assignment function, which may be null, without storing it.
+     */
+    Expr createMeaning(AssignmentFunction g) {
+        if (g == null)
+            return new GApp(this.getIndex(),this.getType());
+        else
+            return (Expr)g.get(getIndex(), getType());
+    }
+    
+    public boolean hasMeaning() {
+        return this.meaning != null;
     }
     
     public void setMeaning(Expr meaning) {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * TypeAlignment.java
+ */
+
+package lambdacalc.lf;
+
+import java.util.HashMap;
+import lambdacalc.logic.Type;
+
+/**
+ * What a binary composition rule worked out about the types of the two
+ * children of a nonterminal: whether the rule applies, which child is the
+ * function, and how the children's types line up. A rule computes this once
+ * for a given pair of child meanings and the node keeps it (see
+ * CompositionRule.getTypeAlignment), so that guessing the rule and then
+ * applying it share a single type match.
+ */
+class TypeAlignment {
+    static final TypeAlignment NOT_APPLICABLE = new TypeAlignment(false, false, null, null);
+    
+    /**
+     * Whether the rule applies to the children.
+     */
+    final boolean applicable;
+    
+    /**
+     * Whether the left child is the function, for function application rules.
+     */
+    final boolean leftIsFunction;
+    
+    /**
+     * The type variables of the function's argument type mapped to the types
+     * they are matched with, for function application rules.
+     */
+    final HashMap<Type,Type> typeMatches;
+    
+    /**
+     * The type of the argument the children's meanings have in common, for
+     * predicate modification.
+     */
+    final Type commonArgType;
+    
+    TypeAlignment(boolean applicable, boolean leftIsFunction, HashMap<Type,Type> typeMatches, Type commonArgType) {
+        this.applicable = applicable;
+        this.leftIsFunction = leftIsFunction;
+        this.typeMatches = typeMatches;
+        this.commonArgType = commonArgType;
+    }
+}
@@ -25,24 +25,24 @@
 
 package lambdacalc.logic;
 
-import java.util.Vector;
+import java.util.List;
 
 /**
  * This subclass of SyntaxException is thrown by the ExpressionParser
  * when it is given an ambiguous string to parse.
  */
 public class AmbiguousStringException extends SyntaxException {
-    private Vector alternatives;
+    private List alternatives;
 
     /**
      * Constructs an instance with the given message and a set
      * of possible resolutions of the ambiguity.
      * @param message the message explaining the ambiguity
-     * @param alternatives a Vector of suggested alternatives
+     * @param alternatives a List of suggested alternatives
      * to the input that would resolve the ambiguity. The elements
-     * in the Vector must be strings.
+     * in the List must be strings.
      */
-   public AmbiguousStringException(String message, Vector alternatives) {
+   public AmbiguousStringException(String message, List alternatives) {
         super(message
             + (alternatives != null && alternatives.size() > 0 ?
                   ":\n " + stringify(alternatives) : "")
@@ -50,7 +50,7 @@ public class AmbiguousStringException extends SyntaxException {
         this.alternatives = alternatives;
     }
     
-    private static String stringify(Vector alternatives) {
+    private static String stringify(List alternatives) {
         String ambiguity = "";
         for (int i = 0; i < alternatives.size(); i++) {
             if (i > 0) ambiguity += ",\n ";
@@ -52,11 +52,11 @@ public class ArgList extends NAry {
 
     protected String getCloseSymbol() { return ")"; }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         Type[] t = new Type[getArity()];
         for (int i = 0; i < t.length; i++)
             t[i] = getElements()[i].getType();
-        return new ProductType(t);
+        return ProductType.get(t);
     }
 
     public Expr createFromSubExpressions(Expr[] subExpressions)
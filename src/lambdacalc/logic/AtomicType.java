@@ -61,22 +61,11 @@ public abstract class AtomicType extends Type {
         return toString();
     }
     
-    protected boolean equals(Type t) {
-        if (t instanceof AtomicType) {
-            AtomicType at = (AtomicType) t;
-            return (this.getSymbol() == at.getSymbol());
-        } else { 
-            return false;
-        }
-    }
-    
-    public abstract MatchPair matches(Type t);
-	    
     public int hashCode() {
         return String.valueOf(symbol).hashCode(); // better way of doing this?
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF("AtomicType");
         output.writeShort(0); // data format version
         output.writeChar(symbol);
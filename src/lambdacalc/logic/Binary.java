@@ -27,12 +27,12 @@
 
 package lambdacalc.logic;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 
 /**
  * Abstract base class of the binary connectives, including
@@ -100,8 +100,8 @@ public abstract class Binary extends Expr {
 
     protected Set getVars(boolean unboundOnly) {
         HashSet ret = new HashSet();
-        ret.addAll(getLeft().getVars(unboundOnly));
-        ret.addAll(getRight().getVars(unboundOnly));
+        ret.addAll(getLeft().getCachedVars(unboundOnly));
+        ret.addAll(getRight().getCachedVars(unboundOnly));
         return ret;
     }
     
@@ -111,6 +111,17 @@ public abstract class Binary extends Expr {
      * left and right.
      */
     protected abstract Binary create(Expr left, Expr right);
+    
+    /**
+     * Returns this expression if left and right are the very same
+     * subexpressions that it has, or else a new one made with create,
+     * so that rewriting an expression shares its unchanged subtrees.
+     */
+    protected final Binary recreate(Expr left, Expr right) {
+        if (left == getLeft() && right == getRight())
+            return this;
+        return create(left, right);
+    }
 
     
     /**
@@ -118,12 +129,24 @@ public abstract class Binary extends Expr {
      * @return a list
      */
     public List getSubExpressions() {
-        Vector result = new Vector(2);
+        ArrayList result = new ArrayList(2);
         result.add(this.getLeft());
         result.add(this.getRight());
         return result;
     }
     
+    public int getSubExpressionCount() {
+        return 2;
+    }
+    
+    public Expr getSubExpression(int index) {
+        switch (index) {
+            case 0: return this.getLeft();
+            case 1: return this.getRight();
+            default: throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+    
     /**
      * Creates a new binary expression using all the subexpressions given.
      *
@@ -140,12 +163,12 @@ public abstract class Binary extends Expr {
     }
     
     protected Expr createAlphabeticalVariant(Set bindersToChange, Set variablesInUse, Map updates) {
-        return create(getLeft().createAlphabeticalVariant(bindersToChange, variablesInUse, updates),
+        return recreate(getLeft().createAlphabeticalVariant(bindersToChange, variablesInUse, updates),
                 getRight().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
     }
     
     public Expr createAlphatypicalVariant(HashMap<Type,Type> alignments, Set variablesInUse, Map updates) {
-        return create(getLeft().createAlphatypicalVariant(alignments, variablesInUse, updates),
+        return recreate(getLeft().createAlphatypicalVariant(alignments, variablesInUse, updates),
                 getRight().createAlphatypicalVariant(alignments, variablesInUse, updates));
     }
     
@@ -165,11 +188,11 @@ public abstract class Binary extends Expr {
 
     protected Expr performLambdaConversion2(Var var, Expr replacement, Set binders, Set accidentalBinders) throws TypeEvaluationException {
         // We're in the scope of a lambda conversion. Just recurse.
-        return create(getLeft().performLambdaConversion2(var, replacement, binders, accidentalBinders),
+        return recreate(getLeft().performLambdaConversion2(var, replacement, binders, accidentalBinders),
                 getRight().performLambdaConversion2(var, replacement, binders, accidentalBinders));
     }
 
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF(getClass().getName());
         output.writeShort(0); // data format version
         left.writeToStream(output);
@@ -31,6 +31,7 @@
 
 package lambdacalc.logic;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -39,7 +40,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 
 /**
  * Abstract base class of the binders, including the propositional binders 
@@ -86,10 +86,23 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
     }
     
     
-    public int hashCode() {
-        return this.getVariable().hashCode() ^ super.hashCode();
+    protected int computeHashCode() {
+        return this.getVariable().hashCode() ^ super.computeHashCode();
     }    
     
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        // the bound variable itself is left out; occurrences of it
+        // become de Bruijn indexes
+        builder.add(getClass());
+        builder.pushBinder(getVariable());
+        getInnerExpr().buildCanonicalForm(builder);
+        builder.popBinder();
+    }
+    
+    protected boolean nodeDataEquals(Expr other) {
+        return hasPeriod == ((Binder)other).hasPeriod;
+    }
+    
     private boolean equals(Binder b, boolean useMaps, Map thisMap, Map otherMap, boolean collapseAllVars, Map freeVarMap, boolean matching) {
         if (useMaps) {
             thisMap = (thisMap == null) ? new HashMap() : new HashMap(thisMap);
@@ -132,18 +145,41 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
      */
     protected abstract Binder create(Identifier variable, Expr innerExpr);
     
+    /**
+     * Returns this binder if variable and innerExpr are the very same
+     * ones that it has, or else a new one made with create, so that
+     * rewriting an expression shares its unchanged subtrees.
+     */
+    protected final Binder recreate(Identifier variable, Expr innerExpr) {
+        if (variable == getVariable() && innerExpr == getInnerExpr())
+            return this;
+        return create(variable, innerExpr);
+    }
+    
     /**
      * Returns a List of all the subexpressions of this binder,
      * that is, the variable and the inner expression.
      * @return a list
      */
     public List getSubExpressions() {
-        Vector result = new Vector(2);
+        ArrayList result = new ArrayList(2);
         result.add(this.getVariable());
         result.add(this.getInnerExpr());
         return result;
     }
     
+    public int getSubExpressionCount() {
+        return 2;
+    }
+    
+    public Expr getSubExpression(int index) {
+        switch (index) {
+            case 0: return this.getVariable();
+            case 1: return this.getInnerExpr();
+            default: throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+    
     /**
      * Creates a new Binder  using all the subexpressions given, taking the
      * value of the hasPeriod argument from this instance
@@ -183,7 +219,7 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
     }
     
     protected Set getVars(boolean unboundOnly) {
-        Set ret = getInnerExpr().getVars(unboundOnly);
+        Set ret = new HashSet(getInnerExpr().getCachedVars(unboundOnly));
         if (unboundOnly)
             ret.remove(getVariable());
         else
@@ -222,7 +258,7 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
         Set binders2 = new HashSet(binders);
         binders2.add(this);
         
-        return create(getVariable(), getInnerExpr().performLambdaConversion2(var, replacement, binders2, accidentalBinders));
+        return recreate(getVariable(), getInnerExpr().performLambdaConversion2(var, replacement, binders2, accidentalBinders));
     }
 
     protected Expr createAlphabeticalVariant(Set bindersToChange, Set variablesInUse, Map updates) {
@@ -242,7 +278,7 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
         }
 
         // Recurse
-        return create(v, getInnerExpr().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
+        return recreate(v, getInnerExpr().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
     }
     
     public Expr createAlphatypicalVariant(HashMap<Type,Type> alignments, Set variablesInUse, Map updates) {
@@ -276,7 +312,7 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
                 updates.put(getVariable(), v);
             }
         }        
-        return create(v, getInnerExpr().createAlphatypicalVariant(alignments, variablesInUse, updates));
+        return recreate(v, getInnerExpr().createAlphatypicalVariant(alignments, variablesInUse, updates));
     }
     
     
@@ -333,7 +369,7 @@ public abstract class Binder extends Expr implements VariableBindingExpr {
         throw new IllegalArgumentException();
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF(getClass().getName());
         output.writeShort(0); // data format version
         ident.writeToStream(output);
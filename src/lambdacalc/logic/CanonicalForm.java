@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * CanonicalForm.java
+ */
+
+package lambdacalc.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A nameless (de Bruijn) representation of an expression, used to test
+ * alpha-equivalence by comparing two arrays rather than by walking
+ * two expression trees with maps from bound variables to markers.
+ *
+ * The form is a pre-order listing of the expression: the class of
+ * each node and its number of subexpressions, the symbol and type of
+ * each free variable and constant, and for each bound variable the
+ * number of binders between it and the binder that binds it and its type. Binder
+ * variables and parens are left out, since alpha-equivalence ignores them.
+ *
+ * The form is exact when the expression contains no type variables,
+ * no g(n)'s and no meaning brackets.  Type variables are compared by
+ * Type.matches, g(n)'s are equal to variables named vn, and meaning brackets
+ * are compared by node, none of which fits a plain array comparison,
+ * so for inexact forms Expr.alphaEquivalent falls back on the
+ * map-based comparison. The hash code of a canonical form leaves out types,
+ * so that it is consistent with alphaEquivalent, except that g(n) hashes
+ * like a free variable vn although equals also takes it to be equal to
+ * a bound vn.
+ *
+ * Expr.getCanonicalForm() creates the canonical form lazily and caches it.
+ */
+public final class CanonicalForm {
+    private static final Object BOUND = new Object() {
+        public String toString() { return "#"; }
+    };
+    
+    private final Object[] tokens;
+    private final boolean exact;
+    private final int hashCode;
+    
+    private CanonicalForm(Object[] tokens, boolean exact) {
+        this.tokens = tokens;
+        this.exact = exact;
+        
+        int h = 1;
+        for (int i = 0; i < tokens.length; i++)
+            if (!(tokens[i] instanceof Type))
+                h = 31 * h + tokens[i].hashCode();
+        this.hashCode = h;
+    }
+    
+    /**
+     * Computes the canonical form of an expression.
+     */
+    static CanonicalForm create(Expr expr) {
+        Builder builder = new Builder();
+        expr.buildCanonicalForm(builder);
+        return new CanonicalForm(builder.tokens.toArray(), builder.exact);
+    }
+    
+    /**
+     * Gets whether comparing this form with another exact form decides
+     * alpha-equivalence.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+    
+    /**
+     * Gets the number of tokens in the form.
+     */
+    public int size() {
+        return tokens.length;
+    }
+    
+    /**
+     * Tests whether two forms have the same tokens.
+     */
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!(obj instanceof CanonicalForm))
+            return false;
+        CanonicalForm other = (CanonicalForm)obj;
+        return hashCode == other.hashCode && Arrays.equals(tokens, other.tokens);
+    }
+    
+    public int hashCode() {
+        return hashCode;
+    }
+    
+    public String toString() {
+        return Arrays.asList(tokens).toString();
+    }
+    
+    /**
+     * Accumulates the tokens of a canonical form as an expression is
+     * walked. Expr.buildCanonicalForm implementations call into this.
+     */
+    public static final class Builder {
+        private ArrayList tokens = new ArrayList();
+        private ArrayList binders = new ArrayList();
+        private boolean exact = true;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Appends a token to the form.
+         */
+        public void add(Object token) {
+            tokens.add(token);
+        }
+        
+        /**
+         * Appends the symbol and type of an identifier, or the
+         * de Bruijn index of the variable if it is bound.
+         */
+        public void addIdentifier(Identifier ident) {
+            Type type = ident.getType();
+            if (type.containsVar())
+                exact = false;
+            
+            if (ident instanceof Var) {
+                // The innermost binder of a variable with this symbol and type binds it.
+                for (int i = binders.size() - 1; i >= 0; i--) {
+                    Identifier b = (Identifier)binders.get(i);
+                    if (b instanceof Var && b.getSymbol().equals(ident.getSymbol())
+                            && (b.getType().equals(type) || type.containsVar() || b.getType().containsVar())) {
+                        tokens.add(BOUND);
+                        tokens.add(Integer.valueOf(binders.size() - 1 - i));
+                        tokens.add(type);
+                        return;
+                    }
+                }
+            }
+            
+            tokens.add(ident.getClass());
+            tokens.add(ident.getSymbol());
+            tokens.add(type);
+        }
+        
+        /**
+         * Puts a binder's variable in scope for the subexpressions
+         * added until the matching call to popBinder.
+         */
+        public void pushBinder(Identifier variable) {
+            if (variable.getType().containsVar())
+                exact = false;
+            binders.add(variable);
+        }
+        
+        public void popBinder() {
+            binders.remove(binders.size() - 1);
+        }
+        
+        /**
+         * Marks the form as not exact: equality of forms no longer
+         * decides alpha-equivalence.
+         */
+        public void markInexact() {
+            exact = false;
+        }
+    }
+}
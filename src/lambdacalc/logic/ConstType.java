@@ -33,13 +33,17 @@ import java.util.*;
  */
 public class ConstType extends AtomicType {
     
-    private char symbol;
+    private final char symbol;
     
     /**
-     * Creates a new instance of ConstType
+     * Gets the ConstType with the given symbol.
      * @param symbol the type, like e or t
      */
-    public ConstType(char symbol) {
+    public static ConstType get(char symbol) {
+        return (ConstType)intern(new ConstType(symbol));
+    }
+    
+    private ConstType(char symbol) {
         this.symbol=symbol;
     }
         
@@ -60,44 +64,22 @@ public class ConstType extends AtomicType {
         return toString();
     }
     
-    protected boolean equals(Type t) {
-	
+    protected boolean sameStructure(Type t) {
 	if(t instanceof ConstType){
 	    return (this.getSymbol() == ((ConstType) t).getSymbol());
 	}
 	return false;
     }
     
-    /**
-     * Matches the ConstType. If the other Type is not a VarType this will return null.
-     * @param t The type to be unified with.
-     * @return A MatchPair object containing the variable mappings for each Type, or null. 
-     */
-    public MatchPair matches(Type t) {
-	
-	if(t instanceof ConstType){
-	    if(this.equals(t))
-		return new MatchPair(this, t);
-	}
-	
-	else if(t instanceof VarType){
-	    MatchPair flipped = t.matches(this);
-	    return flipped.flip();
-	}
-	
-	return null;
-    }
-    
-    
     public boolean containsVar() {
         return false;
     }
     
     public int hashCode() {
-        return String.valueOf(symbol).hashCode(); // better way of doing this?
+        return symbol; // the same as String.valueOf(symbol).hashCode()
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF("ConstType");
         output.writeShort(0); // data format version
         output.writeChar(symbol);
@@ -64,17 +64,33 @@ public class Equality extends LogicalBinary {
         else
             return String.valueOf(NEQ_SYMBOL);
     }
+    
+    /**
+     * Gets whether this is an equality (true) or an inequality (false).
+     */
+    boolean isEquality() {
+        return equality;
+    }
 
     public Type getOperandType() {
         return null; // doesn't matter since we override getType()
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (getLeft().getType().matches(getRight().getType()) == null) 
             throw new TypeMismatchException("The types of the expressions on the left and right of an equality operator must be the same, but " + getLeft() + " is of type " + getLeft().getType() + " and " + getRight() + " is of type " + getRight().getType() + ".");
         return Type.T;
     }
 
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        super.buildCanonicalForm(builder);
+        builder.add(Boolean.valueOf(equality));
+    }
+    
+    protected boolean nodeDataEquals(Expr other) {
+        return equality == ((Equality)other).equality;
+    }
+
     protected boolean equalsHelper(Binary b) {
         return b instanceof Equality && equality == ((Equality)b).equality;
     }
@@ -83,8 +99,8 @@ public class Equality extends LogicalBinary {
         return new Equality(left, right, equality);
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
-        super.writeToStream(output);
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
+        super.writeFormat2(output);
         output.writeShort(0); // data format version
         output.writeBoolean(equality);
     }
@@ -31,13 +31,13 @@
 package lambdacalc.logic;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import lambdacalc.lf.MeaningEvaluationException;
@@ -53,6 +53,27 @@ public abstract class Expr {
     public static final int LATEX = 2;
     
     private boolean starred;
+    
+    // The caches below are filled in lazily and may be read and written by
+    // several threads at once, since expressions are shared between threads
+    // without locking. So each cached value is held in a single field whose
+    // default value means "not computed yet", and each is either a primitive
+    // or an object whose fields are all final. A thread that sees a filled in
+    // field then sees the whole value, and at worst a thread computes a value
+    // another thread has already computed.
+    
+    private int cachedHashCode; // 0 = not yet computed (see hashCode)
+    
+    private CanonicalForm canonicalForm;
+    
+    private Type cachedType; // null = not yet computed
+    private byte stableType; // 0 = not yet known, 1 = stable, 2 = not stable (see hasStableType)
+    
+    private Set cachedAllVars; // unmodifiable (see getCachedVars)
+    private Set cachedFreeVars;
+    
+    private static final AtomicLong typeCacheHits = new AtomicLong();
+    private static final AtomicLong typeCacheMisses = new AtomicLong();
         
     public static final Expr createIdFn() {
         try {
@@ -115,8 +136,77 @@ public abstract class Expr {
     /**
      * Gets the semantic type of the expression, or throws a
      * TypeEvaluationException if there is a type mismatch.
+     *
+     * The type is computed by computeType the first time and then cached
+     * on this node, since otherwise typing a nested expression retypes its
+     * subexpressions over and over. Expressions are immutable, so the
+     * cached type stays valid: alphatypical variants and the like are new
+     * nodes with empty caches. Types are not cached for expressions
+     * that contain meaning brackets (see hasStableType), and type errors
+     * are not cached. Identifier overrides this method to return the type
+     * it holds directly.
+     */
+    public Type getType() throws TypeEvaluationException {
+        Type type = cachedType;
+        if (type != null) {
+            typeCacheHits.incrementAndGet();
+            return type;
+        }
+        typeCacheMisses.incrementAndGet();
+        type = computeType();
+        if (hasStableType())
+            cachedType = type;
+        return type;
+    }
+    
+    /**
+     * Computes the semantic type of the expression for getType, or throws a
+     * TypeEvaluationException if there is a type mismatch.
+     */
+    protected abstract Type computeType() throws TypeEvaluationException;
+    
+    /**
+     * Gets whether the type of this expression is determined by the expression
+     * alone, so that it can be cached. This is true unless the expression
+     * contains a subexpression, such as a meaning bracket, whose type
+     * depends on something outside of the expression.
+     */
+    protected boolean hasStableType() {
+        byte stable = stableType;
+        if (stable == 0) {
+            stable = 1;
+            int n = getSubExpressionCount();
+            for (int i = 0; i < n && stable == 1; i++)
+                if (!getSubExpression(i).hasStableType())
+                    stable = 2;
+            stableType = stable;
+        }
+        return stable == 1;
+    }
+    
+    /**
+     * Gets the number of calls to getType that were answered from the
+     * type cache, across all expressions.
+     */
+    public static long getTypeCacheHits() {
+        return typeCacheHits.get();
+    }
+    
+    /**
+     * Gets the number of calls to getType that had to compute the type,
+     * across all expressions.
      */
-    public abstract Type getType() throws TypeEvaluationException;
+    public static long getTypeCacheMisses() {
+        return typeCacheMisses.get();
+    }
+    
+    /**
+     * Resets the type cache hit and miss counters.
+     */
+    public static void resetTypeCacheStatistics() {
+        typeCacheHits.set(0);
+        typeCacheMisses.set(0);
+    }
 
     public void setType(Type t) throws TypeEvaluationException {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -131,6 +221,9 @@ public abstract class Expr {
      * @return true iff the expressions are equal up to parens
      */
     public final boolean equals(Object obj) {
+        if (obj == this)
+            // the same instance, e.g. two references to an interned expression
+            return true;
         if (obj instanceof Expr)
             // call equals and specify not to collapse bound variables
             // (useMap=false)
@@ -148,6 +241,15 @@ public abstract class Expr {
      * @return true iff the expressions are equivalent up to parens and bound variables
      */
     public final boolean alphaEquivalent(Expr obj) {
+        if (obj == this)
+            return true;
+        
+        // When both canonical forms are exact, comparing them decides the question.
+        CanonicalForm thisForm = getCanonicalForm();
+        CanonicalForm otherForm = obj.getCanonicalForm();
+        if (thisForm.isExact() && otherForm.isExact())
+            return thisForm.equals(otherForm);
+        
         // call equals and specify to collapse bound variables
         // (useMap=true)
 //        MatchPair pair = this.getType().matches(i.getType());
@@ -156,6 +258,43 @@ public abstract class Expr {
         return matchesTrue; // null maps
     }
 
+    /**
+     * Gets the nameless canonical form of this expression, which is
+     * computed on the first call and cached.
+     */
+    public final CanonicalForm getCanonicalForm() {
+        CanonicalForm form = canonicalForm;
+        if (form == null) {
+            form = CanonicalForm.create(this);
+            canonicalForm = form;
+        }
+        return form;
+    }
+    
+    /**
+     * Returns a hash code that is the same for any two alpha-equivalent
+     * expressions, for use in hash tables of expressions keyed
+     * by alphaEquivalent.
+     */
+    public final int alphaHashCode() {
+        return getCanonicalForm().hashCode();
+    }
+    
+    /**
+     * Adds this expression to a canonical form being built: by default,
+     * the class of the expression, the number of its subexpressions,
+     * and then the subexpressions themselves.  Subclasses that bind
+     * variables, or that carry information compared by equals
+     * besides their subexpressions, override this.
+     */
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        int n = getSubExpressionCount();
+        builder.add(getClass());
+        builder.add(Integer.valueOf(n));
+        for (int i = 0; i < n; i++)
+            getSubExpression(i).buildCanonicalForm(builder);
+    }
+
     /**
      * Tests if two expressions are equal, modulo parens and the identity
      * of identifiers.  That is, any identifier matches any other
@@ -203,21 +342,15 @@ public abstract class Expr {
     }
     
     public final Expr stripAnyDoubleParens() {
-        
-        Expr result = this;
-        
-        if (this instanceof Parens 
-                && ((Parens) this).getInnerExpr() instanceof Parens) {
-            return ((Parens) this).getInnerExpr().stripAnyDoubleParens();
-        } //else...
-        Iterator subExpressions = this.getSubExpressions().iterator();
-        List newSubExpr = new Vector();
-        while (subExpressions.hasNext()) {
-            Expr next = (Expr) subExpressions.next();
-            next = next.stripAnyDoubleParens();
-            newSubExpr.add(next);
-        }
-        return createFromSubExpressions(newSubExpr);
+        return new ExprTransformer() {
+            protected Expr transformBefore(Expr expr) {
+                if (expr instanceof Parens 
+                        && ((Parens) expr).getInnerExpr() instanceof Parens) {
+                    return transform(((Parens) expr).getInnerExpr());
+                }
+                return null;
+            }
+        }.transform(this);
     }
     
     /**
@@ -293,21 +426,58 @@ public abstract class Expr {
      * same Object marker -- although the variables themselves may be different.
      */
 
-    public int hashCode() {
-        Iterator iter = this.getSubExpressions().iterator();
+    /**
+     * Returns a hash code computed from the structure of the expression.
+     * The hash code is computed once, by computeHashCode, and cached, since
+     * hashing otherwise walks the whole expression tree.  This is safe
+     * because none of the (few) mutable properties of expressions, such
+     * as the type of an Identifier or the shape of a Parens, go into
+     * the hash code.
+     */
+    public final int hashCode() {
+        int h = cachedHashCode;
+        if (h == 0) {
+            h = computeHashCode();
+            cachedHashCode = h;
+        }
+        return h;
+    }
+
+    /**
+     * Computes the hash code of this expression.  Subclasses that
+     * carry information besides their subexpressions (symbols, indices)
+     * override this to mix that information in.
+     */
+    protected int computeHashCode() {
         int result = this.getClass().hashCode();
-        while (iter.hasNext()) {
-            result = result^((Expr)iter.next()).hashCode();
+        int n = getSubExpressionCount();
+        for (int i = 0; i < n; i++) {
+            result = result^getSubExpression(i).hashCode();
         }
         return result;
     }
-    
+
+    /**
+     * Tests whether this expression and another expression of the same
+     * class agree on everything except their subexpressions, i.e.
+     * symbols, types, indices, and the like. Unlike equals, this is strict:
+     * it does not abstract over parens or variable names. It is used by
+     * ExprInterner to decide whether two nodes whose subexpressions are
+     * the very same instances can be shared. Subclasses with such fields
+     * must override this method.
+     *
+     * @param other an expression of the same class as this expression
+     */
+    protected boolean nodeDataEquals(Expr other) {
+        return true;
+    }
+
     /**
      * Gets the variables of this expression.
      * @return a set of all of the variables used within this expression
      */
     public final Set getAllVars() {
-        return getVars(false);
+        return new HashSet(getCachedVars(false));
     }
     
     /**
@@ -317,7 +487,7 @@ public abstract class Expr {
      * @returns a set of all of the free (unbound) variables within this expression
      */
     public final Set getFreeVars() {
-        return getVars(true);
+        return new HashSet(getCachedVars(true));
     }
 
     /**
@@ -328,11 +498,37 @@ public abstract class Expr {
      * @return a set of either all variables or all free variables used in this expression
      */
     protected abstract Set getVars(boolean unboundOnly);
+    
+    /**
+     * Returns the variables used in the expression, possibly only the free
+     * ones, as an unmodifiable set. The set is computed with getVars the first
+     * time it is asked for and then kept, so implementations of getVars
+     * should build on the cached sets of their subexpressions, and capture
+     * checks and fresh variable choices don't walk the expression again.
+     * @param unboundOnly true if only the free variables should be returned
+     */
+    protected final Set getCachedVars(boolean unboundOnly) {
+        Set vars = unboundOnly ? cachedFreeVars : cachedAllVars;
+        if (vars == null) {
+            vars = Collections.unmodifiableSet(getVars(unboundOnly));
+            if (unboundOnly)
+                cachedFreeVars = vars;
+            else
+                cachedAllVars = vars;
+        }
+        return vars;
+    }
 
     /**
      * Simplifies the expression by performing all possible lambda conversions.
      */
     public final Expr simplifyFully() throws TypeEvaluationException {
+        // Try the single-pass reducer first. It gives up if an alphabetical
+        // variant is needed, in which case we go step by step.
+        Expr normalForm = NormalOrderReducer.normalize(this);
+        if (normalForm != null)
+            return normalForm;
+        
         Expr expr = this;    
         while (true) {
             LambdaConversionResult r = expr.performLambdaConversion();
@@ -416,7 +612,7 @@ public abstract class Expr {
         // We need to make an alphabetical variant by fixing the binders in the
         // accidentalBinders set. We rename these binders' variables so they do
         // not bind anything accidentally after lambda conversion.
-        Set varsInUse = getAllVars();
+        Set varsInUse = getCachedVars(false); // createAlphabeticalVariant copies it before adding to it
         Map varMap = new HashMap(); // scratch space for createAlphabeticalVariant
         Expr alphaVary = createAlphabeticalVariant(accidentalBinders, varsInUse, varMap);
         
@@ -485,6 +681,9 @@ public abstract class Expr {
      * note that if we hit another lambda expression, we aren't supposed to be
      * lambda-converting it. We just treat it like any other binder.
      *
+     * Subexpressions in which nothing is substituted are returned as they are
+     * (the same instance), so the result shares them with this expression.
+     *
      * @param var the variable to replace with 'replacement' when we find it, or
      * null if we haven't yet found the lambda being converted
      * @param replacement the expression that replaces var
@@ -492,6 +691,7 @@ public abstract class Expr {
      * @param accidentalBinders as we perform substitution, we record here
      * those binders whose variables must be modified so that they don't accidentally
      * capture free variable in the replacement
+     *
      * @throws TypeEvaluationException if a type inconsistency is found in any subexpression
      * @return the expression with substitutions performed
      */
@@ -522,7 +722,7 @@ public abstract class Expr {
      * either bound or free in this expression.
      */
     public final Var createFreshVar(Var v) {
-        return createFreshVar(v, this.getAllVars());
+        return createFreshVar(v, this.getCachedVars(false));
     }
     
     /**
@@ -532,7 +732,7 @@ public abstract class Expr {
      * either bound or free in this expression.
      */    
     public final Var createFreshVar() {
-        return createFreshVar(Var.X, this.getAllVars());
+        return createFreshVar(Var.X, this.getCachedVars(false));
     }
 
     /**
@@ -540,24 +740,12 @@ public abstract class Expr {
      * of this expression that are equal to thisExpr
      * by byExpr. If this expression is equal to thisExpr then byExpr is returned.
      */
-    public final Expr replace(Expr thisExpr, Expr byExpr) {
-        
-        if (this.equals(thisExpr)) return byExpr;
-        
-        Iterator subExpressions = this.getSubExpressions().iterator();
-        List newSubExpr = new Vector();
-        boolean madeChange = false;
-        while (subExpressions.hasNext()) {
-            Expr next = (Expr) subExpressions.next();
-            Expr newnext = next.replace(thisExpr, byExpr);
-            newSubExpr.add(newnext);
-            if (next != newnext) madeChange = true;
-        }
-        
-        if (madeChange)
-	    return createFromSubExpressions(newSubExpr);
-	else
-	    return this;
+    public final Expr replace(final Expr thisExpr, final Expr byExpr) {
+        return new ExprTransformer() {
+            protected Expr transformBefore(Expr expr) {
+                return expr.equals(thisExpr) ? byExpr : null;
+            }
+        }.transform(this);
     }
     
     /**
@@ -569,8 +757,10 @@ public abstract class Expr {
      * the map argument will be a function from GApps to variables, but this need not
      * be the case.
      *
-     * The replacements are performed in the order of traversal inherent to the map.
-     * If the map is unsorted then no guarantee is given as to the order of replacements.
+     * The replacements are simultaneous: the expression is walked once, each
+     * subexpression (with any outer parens stripped) is looked up in the map by
+     * its hash code, and the values put in are not themselves searched for keys.
+     * Subtrees with nothing to replace are kept as they are.
      *
      * Note: An actual AssignmentFunction can't be given as an argument because
      * it's not a Map. We don't provide replaceAll(AssignmentFunction) because
@@ -583,15 +773,15 @@ public abstract class Expr {
      * @return an expression
      */
     public final Expr replaceAll(Map assignmentFunction) {
-        Iterator iter = assignmentFunction.entrySet().iterator();
-        Expr result = this;
-        while (iter.hasNext()) {
-            Map.Entry next = (Map.Entry) iter.next();
-            Expr oldExpr = (Expr) next.getKey();
-            Expr newExpr = (Expr) next.getValue();
-            result = result.replace(oldExpr, newExpr);
-        }
-        return result;
+        if (assignmentFunction.isEmpty())
+            return this;
+        final Map index = (assignmentFunction instanceof HashMap)
+                ? assignmentFunction : new HashMap(assignmentFunction);
+        return new ExprTransformer() {
+            protected Expr transformBefore(Expr expr) {
+                return (Expr)index.get(expr.stripOutermostParens());
+            }
+        }.transform(this);
     }
     
     /**
@@ -600,6 +790,26 @@ public abstract class Expr {
      */
     public abstract List getSubExpressions();
     
+    /**
+     * Gets the number of subexpressions of this expression, the size of the
+     * list getSubExpressions would return, without making the list.
+     * Subclasses override this and getSubExpression so that walking an
+     * expression doesn't allocate anything (see ExprVisitor and
+     * ExprTransformer).
+     */
+    public int getSubExpressionCount() {
+        return getSubExpressions().size();
+    }
+    
+    /**
+     * Gets the subexpression at the given index in the list
+     * getSubExpressions would return, without making the list.
+     * @throws IndexOutOfBoundsException if there is no such subexpression
+     */
+    public Expr getSubExpression(int index) {
+        return (Expr)getSubExpressions().get(index);
+    }
+    
     /**
      * Creates a new expression using all the subexpressions given. If
      * the constructor of the concrete subclass takes any additional 
@@ -625,6 +835,8 @@ public abstract class Expr {
     * and add a mapping from the old variable to the new variable in updates, passing
     * that down as well.  Variables implement this method by replacing themselves with
     * another variable according to updates.
+    * Subexpressions that don't change are returned as they are (the same
+    * instance), and so are shared with the result.
     * @param bindersToChange the set of binders whose variables are to be replaced with fresh ones
     * @param variablesInUse the variables which cannot be used as fresh variables
     * @param updates a replacement mapping from variables in use to fresh variables
@@ -729,29 +941,50 @@ public abstract class Expr {
                 newRight = oldRight;
             }
         }
-        return new CompositeType(newLeft, newRight);
+        return CompositeType.get(newLeft, newRight);
     }
     
     /**
      * Writes a serialization of the expression to a DataOutputStream.
+     * If the stream is an ExprOutputStream, the expression is written in the
+     * compact encoding of file format version 3, otherwise in the encoding of
+     * file format version 2 by writeFormat2.
+     *
+     * @param output the data stream to which the expression is written
+     */
+    public final void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+        if (output instanceof ExprOutputStream)
+            ((ExprOutputStream)output).writeExpr(this);
+        else
+            writeFormat2(output);
+    }
+    
+    /**
+     * Writes the expression in the encoding of file format version 2.
      * In implementations of this method in subclasses, the first thing written
      * must be the name of the class as a string (i.e. "lambdacalc.logic.And").
      *
      * Any subclass must provide a constructor that takes a DataInputStream as 
      * an argument and creates a deserialized instance by reading from that argument.
      *
-     * Note also that any subclass needs to be recorded into the code of readFromStream.
+     * Note also that any subclass needs to be recorded into the code of readFromStream,
+     * and given a tag in ExprOutputStream and ExprInputStream.
      *
      * @param output the data stream to which the expression is written
      */
-    public abstract void writeToStream(java.io.DataOutputStream output) throws java.io.IOException;
+    protected abstract void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException;
    
     /**
      * Reads a serialized expression from a DataInputStream.
+     * If the stream is an ExprInputStream, the expression is read in the
+     * encoding of file format version 3, otherwise in that of version 2.
      * @param input the data source from which we read the expression instance
      * @return a deserialized expression
      */
     public static Expr readFromStream(java.io.DataInputStream input) throws java.io.IOException {
+        if (input instanceof ExprInputStream)
+            return ((ExprInputStream)input).readExpr();
+        
         String exprType = input.readUTF();
         
         if (exprType.equals("lambdacalc.logic.And")) return new And(input);
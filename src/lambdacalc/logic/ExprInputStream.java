@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExprInputStream.java
+ */
+
+package lambdacalc.logic;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import static lambdacalc.logic.ExprOutputStream.*;
+
+/**
+ * A data stream that reads expressions and types written by an
+ * ExprOutputStream, i.e. in the encoding of file format version 3.
+ * Expr.readFromStream and Type.readFromStream use this encoding whenever
+ * they are given an ExprInputStream. See ExprOutputStream for the layout
+ * of the records.
+ *
+ * Nodes that were written once and referred to many times are read
+ * back as a single shared instance.
+ */
+public class ExprInputStream extends DataInputStream {
+    
+    private ArrayList symbols = new ArrayList(); // of String
+    private ArrayList types = new ArrayList(); // of Type
+    private ArrayList nodes = new ArrayList(); // of Expr
+    
+    /**
+     * Creates a new stream with empty tables that reads from the given stream.
+     */
+    public ExprInputStream(InputStream in) {
+        super(in);
+    }
+    
+    /**
+     * Creates a new stream that reads from the given stream and starts out
+     * with a copy of the tables of another stream, for reading what an
+     * ExprOutputStream wrote starting out with the tables of the stream
+     * that the other one read.
+     */
+    public ExprInputStream(InputStream in, ExprInputStream tables) {
+        super(in);
+        symbols = new ArrayList(tables.symbols);
+        types = new ArrayList(tables.types);
+        nodes = new ArrayList(tables.nodes);
+    }
+    
+    /**
+     * Reads the records up to the end of the next expression and returns it.
+     */
+    public Expr readExpr() throws IOException {
+        while (true) {
+            int tag = readUnsignedByte();
+            if (tag == EXPR_ROOT)
+                return (Expr)get(nodes, readVarInt(this));
+            if (!readDefinition(tag))
+                throw new IOException("Invalid data: expected an expression.");
+        }
+    }
+    
+    /**
+     * Reads the records up to the end of the next type and returns it.
+     */
+    public Type readType() throws IOException {
+        while (true) {
+            int tag = readUnsignedByte();
+            if (tag == TYPE_ROOT)
+                return (Type)get(types, readVarInt(this));
+            if (tag >= AND || !readDefinition(tag))
+                throw new IOException("Invalid data: expected a type.");
+        }
+    }
+    
+    /**
+     * Reads a symbol, type or node record and adds it to its table.
+     * @return false if tag is not the tag of such a record
+     */
+    private boolean readDefinition(int tag) throws IOException {
+        switch (tag) {
+            case SYMBOL:
+                symbols.add(readUTF());
+                return true;
+            case CONST_TYPE:
+                types.add(ConstType.get(readChar()));
+                return true;
+            case VAR_TYPE:
+                types.add(VarType.get(readChar()));
+                return true;
+            case COMPOSITE_TYPE: {
+                Type left = readTypeRef();
+                Type right = readTypeRef();
+                types.add(CompositeType.get(left, right));
+                return true;
+            }
+            case PRODUCT_TYPE: {
+                Type[] subtypes = new Type[readVarInt(this)];
+                for (int i = 0; i < subtypes.length; i++)
+                    subtypes[i] = readTypeRef();
+                types.add(ProductType.get(subtypes));
+                return true;
+            }
+        }
+        
+        Expr node;
+        try {
+            node = readNode(tag);
+        } catch (IllegalArgumentException e) { // e.g. an ArgList with one element
+            throw new IOException("Invalid data.");
+        }
+        if (node == null)
+            return false;
+        nodes.add(node);
+        return true;
+    }
+    
+    private Expr readNode(int tag) throws IOException {
+        switch (tag) {
+            case AND: return new And(readNodeRef(), readNodeRef());
+            case OR: return new Or(readNodeRef(), readNodeRef());
+            case IF: return new If(readNodeRef(), readNodeRef());
+            case IFF: return new Iff(readNodeRef(), readNodeRef());
+            case EQUALITY: return new Equality(readNodeRef(), readNodeRef(), true);
+            case INEQUALITY: return new Equality(readNodeRef(), readNodeRef(), false);
+            case MULTIPLICATION: return new Multiplication(readNodeRef(), readNodeRef());
+            case FUSION: return new Fusion(readNodeRef(), readNodeRef());
+            case FUNAPP: return new FunApp(readNodeRef(), readNodeRef());
+            case SET_WITH_GENERATOR: return new SetWithGenerator(readNodeRef(), readNodeRef());
+            case LESS_THAN: return new NumericRelation.LessThan(readNodeRef(), readNodeRef());
+            case LESS_THAN_OR_EQUAL: return new NumericRelation.LessThanOrEqual(readNodeRef(), readNodeRef());
+            case GREATER_THAN: return new NumericRelation.GreaterThan(readNodeRef(), readNodeRef());
+            case GREATER_THAN_OR_EQUAL: return new NumericRelation.GreaterThanOrEqual(readNodeRef(), readNodeRef());
+            case SUBSET: return new SetRelation.Subset(readNodeRef(), readNodeRef());
+            case PROPER_SUBSET: return new SetRelation.ProperSubset(readNodeRef(), readNodeRef());
+            case NOT_SUBSET: return new SetRelation.NotSubset(readNodeRef(), readNodeRef());
+            case SUPERSET: return new SetRelation.Superset(readNodeRef(), readNodeRef());
+            case PROPER_SUPERSET: return new SetRelation.ProperSuperset(readNodeRef(), readNodeRef());
+            case NOT_SUPERSET: return new SetRelation.NotSuperset(readNodeRef(), readNodeRef());
+            case INTERSECT: return new SetRelation.Intersect(readNodeRef(), readNodeRef());
+            case UNION: return new SetRelation.Union(readNodeRef(), readNodeRef());
+            case PART_OF: return new MereologicalRelation.PartOf(readNodeRef(), readNodeRef());
+            case NOT: return new Not(readNodeRef());
+            case CARDINALITY: return new Cardinality(readNodeRef());
+            case ROUND_PARENS: return new Parens(readNodeRef(), Parens.ROUND);
+            case SQUARE_PARENS: return new Parens(readNodeRef(), Parens.SQUARE);
+            case FORALL: case EXISTS: case IOTA: case LAMBDA: {
+                int flags = readUnsignedByte();
+                Expr ident = readNodeRef();
+                Expr inner = readNodeRef();
+                if (!(ident instanceof Identifier))
+                    throw new IOException("Invalid data.");
+                boolean hasPeriod = (flags & FLAG_PERIOD) != 0;
+                if (tag == FORALL) return new ForAll((Identifier)ident, inner, hasPeriod);
+                if (tag == EXISTS) return new Exists((Identifier)ident, inner, hasPeriod);
+                if (tag == IOTA) return new Iota((Identifier)ident, inner, hasPeriod);
+                return new Lambda((Identifier)ident, inner, hasPeriod, (flags & FLAG_STARRED) != 0);
+            }
+            case CONST: case VAR: {
+                int flags = readUnsignedByte();
+                String symbol = (String)get(symbols, readVarInt(this));
+                Type type = readTypeRef();
+                boolean explicit = (flags & FLAG_TYPE_EXPLICIT) != 0;
+                boolean starred = (flags & FLAG_STARRED) != 0;
+                if (tag == CONST) return new Const(symbol, type, explicit, starred);
+                return new Var(symbol, type, explicit, starred);
+            }
+            case GAPP: {
+                int index = readVarInt(this);
+                return new GApp(index, readTypeRef());
+            }
+            case ARGLIST: case SET_WITH_ELEMENTS: {
+                Expr[] elements = new Expr[readVarInt(this)];
+                for (int i = 0; i < elements.length; i++)
+                    elements[i] = readNodeRef();
+                if (tag == ARGLIST)
+                    return new ArgList(elements);
+                if (elements.length == 0)
+                    return new SetWithElements(readTypeRef());
+                return new SetWithElements(elements);
+            }
+        }
+        return null;
+    }
+    
+    private Expr readNodeRef() throws IOException {
+        return (Expr)get(nodes, readVarInt(this));
+    }
+    
+    private Type readTypeRef() throws IOException {
+        return (Type)get(types, readVarInt(this));
+    }
+    
+    private static Object get(ArrayList table, int id) throws IOException {
+        if (id >= table.size()) // refers to a record that hasn't been read
+            throw new IOException("Invalid data.");
+        return table.get(id);
+    }
+    
+    /**
+     * Reads an integer written by ExprOutputStream.writeVarInt.
+     */
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid data.");
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExprInterner.java
+ */
+
+package lambdacalc.logic;
+
+import java.util.HashMap;
+
+/**
+ * A hash-consing table for expressions. Interning an expression returns an
+ * expression that is structurally identical to it (the same classes, symbols,
+ * types, parens and so on, all the way down), and which is shared with every
+ * other expression interned in the same table that has that structure.
+ * Two interned expressions are thus structurally identical just when they
+ * are the same instance, which Expr.equals and Expr.alphaEquivalent
+ * check before walking the trees, and since Expr caches its hash code,
+ * interned expressions can be put into hash tables cheaply too.
+ *
+ * Interning works bottom-up: the subexpressions of an expression are
+ * interned first, and the expression is rebuilt with createFromSubExpressions
+ * only if one of its subexpressions was replaced by a shared instance.
+ *
+ * Expressions are not quite immutable: Identifier.setType changes the type
+ * of an identifier. That is only done on freshly created variables before they
+ * are put into an expression, but it must never be called on an expression
+ * that has been interned.
+ */
+public class ExprInterner {
+    private HashMap table = new HashMap();
+    
+    // Looks up each expression once its subexpressions have been interned.
+    private final ExprTransformer interning = new ExprTransformer() {
+        protected Expr transformAfter(Expr expr) {
+            Key key = new Key(expr);
+            Expr shared = (Expr)table.get(key);
+            if (shared != null)
+                return shared;
+            table.put(key, expr);
+            return expr;
+        }
+    };
+    
+    // Replaces each subexpression that has a shared instance with it,
+    // leaving the table as it is.
+    private final ExprTransformer lookingUp = new ExprTransformer() {
+        protected Expr transformAfter(Expr expr) {
+            Expr shared = (Expr)table.get(new Key(expr));
+            return shared != null ? shared : expr;
+        }
+    };
+    
+    /**
+     * Creates a new, empty table.
+     */
+    public ExprInterner() {
+    }
+    
+    /**
+     * Returns the shared instance of the given expression, adding the
+     * expression (and its subexpressions) to the table if no structurally
+     * identical expression has been interned yet.
+     */
+    public Expr intern(Expr expr) {
+        return interning.transform(expr);
+    }
+    
+    /**
+     * Returns the given expression with each of its subexpressions (and
+     * itself) replaced by the shared instance of its structure, if there is
+     * one, without adding anything to the table. Use this for expressions
+     * that are compared against the table only once, such as answers.
+     */
+    public Expr lookup(Expr expr) {
+        return lookingUp.transform(expr);
+    }
+    
+    /**
+     * Returns whether the given expression is the shared instance
+     * of its structure in this table.
+     */
+    public boolean isInterned(Expr expr) {
+        return table.get(new Key(expr)) == expr;
+    }
+    
+    /**
+     * Gets the number of distinct expressions and subexpressions in the table.
+     */
+    public int size() {
+        return table.size();
+    }
+    
+    /**
+     * Removes all expressions from the table.
+     */
+    public void clear() {
+        table.clear();
+    }
+    
+    /**
+     * Wraps an expression to compare it strictly by its node data and
+     * the identity of its subexpressions, which are assumed to be interned
+     * already.
+     */
+    private static class Key {
+        private Expr expr;
+        
+        Key(Expr expr) {
+            this.expr = expr;
+        }
+        
+        public int hashCode() {
+            return expr.hashCode();
+        }
+        
+        public boolean equals(Object obj) {
+            Expr other = ((Key)obj).expr;
+            if (other == expr)
+                return true;
+            if (other.getClass() != expr.getClass() || !expr.nodeDataEquals(other))
+                return false;
+            int n = expr.getSubExpressionCount();
+            if (n != other.getSubExpressionCount())
+                return false;
+            for (int i = 0; i < n; i++)
+                if (expr.getSubExpression(i) != other.getSubExpression(i))
+                    return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExprOutputStream.java
+ */
+
+package lambdacalc.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * A data stream that writes expressions and types in the encoding of
+ * file format version 3. Expr.writeToStream and Type.writeToStream use
+ * this encoding whenever they are given an ExprOutputStream, and
+ * ExprInputStream reads it back.
+ *
+ * Rather than writing out every expression as a tree of class names (as in
+ * version 2), the stream is a flat sequence of records, each starting with a
+ * one-byte tag. Symbols, types and expression nodes are each defined once,
+ * by a record that gives them the next number in their table, and are
+ * referred to by that number afterwards. Numbers and counts are written
+ * as unsigned variable-length integers (seven bits per byte, low bits first).
+ * <ul>
+ * <li>SYMBOL records hold the string of an identifier.</li>
+ * <li>Type records hold the symbol of an atomic type, or the numbers of
+ *     the parts of a composite or product type.</li>
+ * <li>Node records hold the numbers of the subexpressions of an expression,
+ *     and for identifiers and binders their flags, symbol and type.
+ *     A node whose record would be the same as that of a node that was
+ *     already written, which is the case for repeated subtrees, is not
+ *     written again but referred to by its number.</li>
+ * <li>EXPR_ROOT and TYPE_ROOT records end a top-level call to writeExpr
+ *     or writeType by giving the number of the expression or type written.</li>
+ * </ul>
+ * The tables are kept for the life of the stream, so symbols, types and
+ * subtrees are shared among all of the expressions written to it, e.g.
+ * among all of the exercises in a file.
+ */
+public class ExprOutputStream extends DataOutputStream {
+    
+    // Record tags. These must never be renumbered, since they are saved in files.
+    static final int EXPR_ROOT = 0;
+    static final int TYPE_ROOT = 1;
+    static final int SYMBOL = 2;
+    static final int CONST_TYPE = 3;
+    static final int VAR_TYPE = 4;
+    static final int COMPOSITE_TYPE = 5;
+    static final int PRODUCT_TYPE = 6;
+    
+    static final int AND = 16;
+    static final int OR = 17;
+    static final int IF = 18;
+    static final int IFF = 19;
+    static final int EQUALITY = 20;
+    static final int INEQUALITY = 21;
+    static final int MULTIPLICATION = 22;
+    static final int FUSION = 23;
+    static final int FUNAPP = 24;
+    static final int SET_WITH_GENERATOR = 25;
+    static final int LESS_THAN = 26;
+    static final int LESS_THAN_OR_EQUAL = 27;
+    static final int GREATER_THAN = 28;
+    static final int GREATER_THAN_OR_EQUAL = 29;
+    static final int SUBSET = 30;
+    static final int PROPER_SUBSET = 31;
+    static final int NOT_SUBSET = 32;
+    static final int SUPERSET = 33;
+    static final int PROPER_SUPERSET = 34;
+    static final int NOT_SUPERSET = 35;
+    static final int INTERSECT = 36;
+    static final int UNION = 37;
+    static final int PART_OF = 38;
+    static final int NOT = 39;
+    static final int CARDINALITY = 40;
+    static final int ROUND_PARENS = 41;
+    static final int SQUARE_PARENS = 42;
+    static final int FORALL = 43;
+    static final int EXISTS = 44;
+    static final int IOTA = 45;
+    static final int LAMBDA = 46;
+    static final int CONST = 47;
+    static final int VAR = 48;
+    static final int GAPP = 49;
+    static final int ARGLIST = 50;
+    static final int SET_WITH_ELEMENTS = 51;
+    
+    // Flags in the records of identifiers and binders.
+    static final int FLAG_TYPE_EXPLICIT = 1;
+    static final int FLAG_STARRED = 2;
+    static final int FLAG_PERIOD = 4;
+    
+    private HashMap symbols = new HashMap(); // String => Integer
+    private HashMap types = new HashMap(); // Type => Integer
+    private HashMap nodes = new HashMap(); // ByteBuffer (the node's record) => Integer
+    private IdentityHashMap written = new IdentityHashMap(); // Expr => Integer, for instances already written
+    
+    private ByteArrayOutputStream record = new ByteArrayOutputStream();
+    
+    /**
+     * Creates a new stream with empty tables that writes to the given stream.
+     */
+    public ExprOutputStream(OutputStream out) {
+        super(out);
+    }
+    
+    /**
+     * Creates a new stream that writes to the given stream and starts out
+     * with a copy of the tables of another stream, so that the symbols, types
+     * and subtrees already written to that one are referred to rather than
+     * written again. What is written must be read by an ExprInputStream
+     * that starts out with the tables of the one that read the other stream.
+     */
+    public ExprOutputStream(OutputStream out, ExprOutputStream tables) {
+        super(out);
+        symbols = new HashMap(tables.symbols);
+        types = new HashMap(tables.types);
+        nodes = new HashMap(tables.nodes);
+        written = new IdentityHashMap(tables.written);
+    }
+    
+    /**
+     * Writes an expression, along with the records of any symbols, types and
+     * subtrees it uses that haven't been written to this stream yet.
+     */
+    public void writeExpr(Expr expr) throws IOException {
+        int id = defineNode(expr);
+        write(EXPR_ROOT);
+        writeVarInt(this, id);
+    }
+    
+    /**
+     * Writes a type, along with the records of any of its parts that haven't
+     * been written to this stream yet.
+     */
+    public void writeType(Type type) throws IOException {
+        int id = defineType(type);
+        write(TYPE_ROOT);
+        writeVarInt(this, id);
+    }
+    
+    private int defineSymbol(String symbol) throws IOException {
+        Integer id = (Integer)symbols.get(symbol);
+        if (id != null)
+            return id.intValue();
+        write(SYMBOL);
+        writeUTF(symbol);
+        symbols.put(symbol, Integer.valueOf(symbols.size()));
+        return symbols.size() - 1;
+    }
+    
+    private int defineType(Type type) throws IOException {
+        Integer id = (Integer)types.get(type);
+        if (id != null)
+            return id.intValue();
+        
+        if (type instanceof ConstType) {
+            write(CONST_TYPE);
+            writeChar(((ConstType)type).getSymbol());
+        } else if (type instanceof VarType) {
+            write(VAR_TYPE);
+            writeChar(((VarType)type).getSymbol());
+        } else if (type instanceof CompositeType) {
+            int left = defineType(((CompositeType)type).getLeft());
+            int right = defineType(((CompositeType)type).getRight());
+            write(COMPOSITE_TYPE);
+            writeVarInt(this, left);
+            writeVarInt(this, right);
+        } else if (type instanceof ProductType) {
+            Type[] subtypes = ((ProductType)type).getSubTypes();
+            int[] ids = new int[subtypes.length];
+            for (int i = 0; i < subtypes.length; i++)
+                ids[i] = defineType(subtypes[i]);
+            write(PRODUCT_TYPE);
+            writeVarInt(this, ids.length);
+            for (int i = 0; i < ids.length; i++)
+                writeVarInt(this, ids[i]);
+        } else {
+            throw new IOException("The type " + type + " cannot be serialized.");
+        }
+        
+        types.put(type, Integer.valueOf(types.size()));
+        return types.size() - 1;
+    }
+    
+    private int defineNode(Expr expr) throws IOException {
+        Integer id = (Integer)written.get(expr);
+        if (id != null)
+            return id.intValue();
+        
+        // Write out everything the node refers to first, since the node's
+        // own record is built up in a buffer that is shared by all nodes.
+        int tag = getTag(expr);
+        int[] children;
+        int flags = 0, symbol = 0, type = 0;
+        
+        if (expr instanceof Binary) {
+            children = new int[] { defineNode(((Binary)expr).getLeft()), defineNode(((Binary)expr).getRight()) };
+        } else if (expr instanceof Unary) {
+            children = new int[] { defineNode(((Unary)expr).getInnerExpr()) };
+        } else if (expr instanceof Binder) {
+            Binder b = (Binder)expr;
+            children = new int[] { defineNode(b.getVariable()), defineNode(b.getInnerExpr()) };
+            if (b.hasPeriod()) flags |= FLAG_PERIOD;
+            if (b instanceof Lambda && ((Lambda)b).isStarred()) flags |= FLAG_STARRED;
+        } else if (expr instanceof Identifier) {
+            Identifier ident = (Identifier)expr;
+            children = new int[0];
+            if (ident.isTypeExplicit()) flags |= FLAG_TYPE_EXPLICIT;
+            if (ident.isStarred()) flags |= FLAG_STARRED;
+            symbol = defineSymbol(ident.getSymbol());
+            type = defineType(ident.getType());
+        } else if (expr instanceof GApp) {
+            children = new int[0];
+            try {
+                type = defineType(expr.getType());
+            } catch (TypeEvaluationException e) {
+                throw new IOException(e.getMessage()); // GApp.getType doesn't actually throw
+            }
+        } else if (expr instanceof NAry) {
+            Expr[] elements = ((NAry)expr).getElements();
+            children = new int[elements.length];
+            for (int i = 0; i < elements.length; i++)
+                children[i] = defineNode(elements[i]);
+            if (elements.length == 0 && expr instanceof SetWithElements)
+                type = defineType(((SetWithElements)expr).elementType);
+        } else {
+            throw new IOException("The expression " + expr + " cannot be serialized.");
+        }
+        
+        DataOutputStream r = new DataOutputStream(record);
+        record.reset();
+        r.write(tag);
+        if (expr instanceof Identifier) {
+            r.write(flags);
+            writeVarInt(r, symbol);
+            writeVarInt(r, type);
+        } else if (expr instanceof GApp) {
+            writeVarInt(r, ((GApp)expr).getIndex());
+            writeVarInt(r, type);
+        } else {
+            if (expr instanceof Binder)
+                r.write(flags);
+            if (expr instanceof NAry)
+                writeVarInt(r, children.length);
+            for (int i = 0; i < children.length; i++)
+                writeVarInt(r, children[i]);
+            if (expr instanceof NAry && children.length == 0)
+                writeVarInt(r, type);
+        }
+        r.flush();
+        
+        ByteBuffer key = ByteBuffer.wrap(record.toByteArray());
+        id = (Integer)nodes.get(key);
+        if (id == null) {
+            id = Integer.valueOf(nodes.size());
+            nodes.put(key, id);
+            write(key.array());
+        }
+        written.put(expr, id);
+        return id.intValue();
+    }
+    
+    private static int getTag(Expr expr) throws IOException {
+        Class c = expr.getClass();
+        if (c == And.class) return AND;
+        if (c == Or.class) return OR;
+        if (c == If.class) return IF;
+        if (c == Iff.class) return IFF;
+        if (c == Equality.class) return ((Equality)expr).isEquality() ? EQUALITY : INEQUALITY;
+        if (c == Multiplication.class) return MULTIPLICATION;
+        if (c == Fusion.class) return FUSION;
+        if (c == FunApp.class) return FUNAPP;
+        if (c == SetWithGenerator.class) return SET_WITH_GENERATOR;
+        if (c == NumericRelation.LessThan.class) return LESS_THAN;
+        if (c == NumericRelation.LessThanOrEqual.class) return LESS_THAN_OR_EQUAL;
+        if (c == NumericRelation.GreaterThan.class) return GREATER_THAN;
+        if (c == NumericRelation.GreaterThanOrEqual.class) return GREATER_THAN_OR_EQUAL;
+        if (c == SetRelation.Subset.class) return SUBSET;
+        if (c == SetRelation.ProperSubset.class) return PROPER_SUBSET;
+        if (c == SetRelation.NotSubset.class) return NOT_SUBSET;
+        if (c == SetRelation.Superset.class) return SUPERSET;
+        if (c == SetRelation.ProperSuperset.class) return PROPER_SUPERSET;
+        if (c == SetRelation.NotSuperset.class) return NOT_SUPERSET;
+        if (c == SetRelation.Intersect.class) return INTERSECT;
+        if (c == SetRelation.Union.class) return UNION;
+        if (c == MereologicalRelation.PartOf.class) return PART_OF;
+        if (c == Not.class) return NOT;
+        if (c == Cardinality.class) return CARDINALITY;
+        if (c == Parens.class) return ((Parens)expr).getShape() == Parens.SQUARE ? SQUARE_PARENS : ROUND_PARENS;
+        if (c == ForAll.class) return FORALL;
+        if (c == Exists.class) return EXISTS;
+        if (c == Iota.class) return IOTA;
+        if (c == Lambda.class) return LAMBDA;
+        if (c == Const.class) return CONST;
+        if (c == Var.class) return VAR;
+        if (c == GApp.class) return GAPP;
+        if (c == ArgList.class) return ARGLIST;
+        if (c == SetWithElements.class) return SET_WITH_ELEMENTS;
+        throw new IOException("The expression " + expr + " cannot be serialized.");
+    }
+    
+    /**
+     * Writes a non-negative integer in as few bytes as possible, seven bits
+     * at a time, low bits first, with the high bit set on all but the last byte.
+     */
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        if (value < 0)
+            throw new IOException("Invalid data.");
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
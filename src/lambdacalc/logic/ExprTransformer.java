@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExprTransformer.java
+ */
+
+package lambdacalc.logic;
+
+import java.util.Arrays;
+
+/**
+ * Rebuilds an expression bottom-up, replacing some of its subexpressions.
+ * Subclasses override transformBefore, which can replace an expression
+ * outright before its subexpressions are looked at (pre-order), and
+ * transformAfter, which is given the expression rebuilt from its
+ * transformed subexpressions (post-order).
+ *
+ * An expression is only rebuilt (with createFromSubExpressions) if one of
+ * its subexpressions actually changed; otherwise the same instance is kept.
+ * So transforming an expression that has nothing to replace returns the
+ * expression itself and allocates nothing.
+ */
+public abstract class ExprTransformer {
+    
+    /**
+     * Returns the transformed expression.
+     */
+    public final Expr transform(Expr expr) {
+        Expr replacement = transformBefore(expr);
+        if (replacement != null)
+            return replacement;
+        
+        int n = expr.getSubExpressionCount();
+        Expr[] newSubExpressions = null;
+        for (int i = 0; i < n; i++) {
+            Expr sub = expr.getSubExpression(i);
+            Expr newSub = transform(sub);
+            if (newSub != sub && newSubExpressions == null) {
+                newSubExpressions = new Expr[n];
+                for (int j = 0; j < i; j++)
+                    newSubExpressions[j] = expr.getSubExpression(j);
+            }
+            if (newSubExpressions != null)
+                newSubExpressions[i] = newSub;
+        }
+        
+        if (newSubExpressions != null)
+            expr = expr.createFromSubExpressions(Arrays.asList(newSubExpressions));
+        return transformAfter(expr);
+    }
+    
+    /**
+     * Called on an expression before its subexpressions are transformed.
+     * @return the replacement for the expression, in which case its
+     * subexpressions are not transformed, or null to go on as usual
+     */
+    protected Expr transformBefore(Expr expr) {
+        return null;
+    }
+    
+    /**
+     * Called on an expression after its subexpressions were transformed,
+     * with the expression rebuilt from them if any changed.
+     * @return the replacement for the expression
+     */
+    protected Expr transformAfter(Expr expr) {
+        return expr;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExprVisitor.java
+ */
+
+package lambdacalc.logic;
+
+/**
+ * Walks an expression and its subexpressions depth-first. Subclasses
+ * override enter, which is called on each expression before its
+ * subexpressions (pre-order) and can cut the walk short below it, and
+ * leave, which is called after them (post-order). The walk uses
+ * Expr.getSubExpressionCount and Expr.getSubExpression, so it doesn't
+ * allocate anything itself.
+ */
+public abstract class ExprVisitor {
+    
+    /**
+     * Walks expr and, unless enter says otherwise, its subexpressions.
+     */
+    public final void visit(Expr expr) {
+        if (enter(expr)) {
+            int n = expr.getSubExpressionCount();
+            for (int i = 0; i < n; i++)
+                visit(expr.getSubExpression(i));
+        }
+        leave(expr);
+    }
+    
+    /**
+     * Called on an expression before its subexpressions are visited.
+     * @return false if the subexpressions should not be visited
+     */
+    protected boolean enter(Expr expr) {
+        return true;
+    }
+    
+    /**
+     * Called on an expression after its subexpressions were visited (or
+     * skipped).
+     */
+    protected void leave(Expr expr) {
+    }
+}
@@ -62,6 +62,18 @@ import java.util.*;
  * is "[Lx.P(x)]", but tagged with the SyntaxException that occurred parsing the
  * next bit. This is used as the message for the user when the remainder of the
  * string couldn't be parsed.
+ *
+ * Because every production returns all of its parses ending anywhere, the
+ * same production is asked about the same position many times over: each
+ * partial parse of a binder's scope is continued separately by the infix
+ * operators around it. The result sets of parsePrefixExpression,
+ * parseFunctionApplicationExpression and parseInfixExpression are therefore
+ * memoized for the duration of a call to parse, keyed on the production, the
+ * start position, the parsing context and the production's flags (packrat
+ * parsing). Binders reuse a single nested context per variable so that the
+ * scopes of sibling binders share their memo entries. This keeps long
+ * sequences of connectives and nested binders polynomial in the length of the
+ * expression.
  */
 public class ExpressionParser {
 
@@ -73,8 +85,10 @@ public class ExpressionParser {
   public static void main(String[] args) {
     ParseOptions opts = new ParseOptions();
     opts.ASCII = true;
+    opts.memo = new HashMap();
 
     ParseResultSet rs = parseExpression(args[0], 0, opts, "an expression");
+    opts.memo = null;
     if (rs.Exception != null) {
       rs.Exception.printStackTrace();
       return;
@@ -137,6 +151,20 @@ public class ExpressionParser {
      */
     public Map explicitTypes = new HashMap();
 
+    /**
+     * The memo table of the parse in progress, mapping MemoKeys to
+     * ParseResultSets or nested ParseOptions. It is shared by the cloned
+     * contexts of binders and discarded when parse returns.
+     */
+    Map memo;
+
+    /**
+     * Set by cancel. Shared by the cloned contexts of binders so that the
+     * whole parse sees it.
+     */
+    private java.util.concurrent.atomic.AtomicBoolean cancelled =
+        new java.util.concurrent.atomic.AtomicBoolean();
+
     public boolean hasExplicitTypes() {
       return !explicitTypes.isEmpty();
     }
@@ -162,8 +190,24 @@ public class ExpressionParser {
       ret.ASCII = ASCII;
       ret.typer = typer.cloneTyper();
       ret.explicitTypes = explicitTypes;
+      ret.memo = memo;
+      ret.cancelled = cancelled;
       return ret;
     }
+
+    /**
+     * Asks a parse running with these options on another thread to give up.
+     * The parse then throws a java.util.concurrent.CancellationException the
+     * next time it enters a production. The options can't be reused for
+     * another parse afterwards.
+     */
+    public void cancel() {
+      cancelled.set(true);
+    }
+
+    boolean isCancelled() {
+      return cancelled.get();
+    }
   }
 
   /**
@@ -171,27 +215,27 @@ public class ExpressionParser {
    * given position in the string, taking into account that some strings are
    * legitimately ambiguous, to be resolved at the end. This class can also
    * represent a fatal error condition when no parses are possible. So, either
-   * Exception is set at Parses is null, or else Parses is a vector of one or
+   * Exception is set at Parses is null, or else Parses is a list of one or
    * more elements, and Exception is null.
    */
   private static class ParseResultSet {
 
     public final SyntaxException Exception; // if set, a fatal error, no parses available
-    public final Vector Parses; // if set, one or more possible parses
+    public final ArrayList Parses; // if set, one or more possible parses
 
     public ParseResultSet(SyntaxException ex) {
       Exception = ex;
       Parses = null;
     }
 
-    public ParseResultSet(Vector parses) {
+    public ParseResultSet(ArrayList parses) {
       Exception = null;
       Parses = parses;
     }
 
     public ParseResultSet(ParseResult singletonParse) {
       Exception = null;
-      Parses = new Vector();
+      Parses = new ArrayList(1);
       Parses.add(singletonParse);
     }
   }
@@ -222,6 +266,118 @@ public class ExpressionParser {
     }
   }
 
+  /**
+   * The key of a memoized result: which production was run, where it started,
+   * in what context (by identity) and with what flags. The whatIsExpected
+   * string is part of the key since it ends up in error messages.
+   */
+  private static class MemoKey {
+
+    public static final int PREFIX = 0;
+    public static final int FUNCTION_APPLICATION = 1;
+    public static final int INFIX = 2;
+    public static final int SCOPE = 3;
+    public static final int REMAINDER_AFTER_BINDER = 4;
+
+    private final int production;
+    private final int start;
+    private final ParseOptions context;
+    private final Object detail;
+    private final int flags;
+
+    public MemoKey(int production, int start, ParseOptions context, Object detail, int flags) {
+      this.production = production;
+      this.start = start;
+      this.context = context;
+      this.detail = detail;
+      this.flags = flags;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof MemoKey)) {
+        return false;
+      }
+      MemoKey k = (MemoKey) obj;
+      return production == k.production && start == k.start && context == k.context
+          && flags == k.flags && (detail == null ? k.detail == null : detail.equals(k.detail));
+    }
+
+    public int hashCode() {
+      int hc = production;
+      hc = 31 * hc + start;
+      hc = 31 * hc + System.identityHashCode(context);
+      hc = 31 * hc + (detail == null ? 0 : detail.hashCode());
+      return 31 * hc + flags;
+    }
+  }
+
+  /**
+   * Returns a copy of the memoized result for key, or null if the production
+   * hasn't been run there yet. Callers are free to modify the Parses list
+   * of the copy.
+   */
+  private static ParseResultSet recall(MemoKey key) {
+    if (key.context.isCancelled()) {
+      throw new java.util.concurrent.CancellationException();
+    }
+    if (key.context.memo == null) {
+      return null;
+    }
+    ParseResultSet rs = (ParseResultSet) key.context.memo.get(key);
+    if (rs == null) {
+      return null;
+    }
+    return copyResultSet(rs);
+  }
+
+  /**
+   * Stores the result of running a production in the memo table and returns
+   * a copy of it for the caller.
+   */
+  private static ParseResultSet remember(MemoKey key, ParseResultSet rs) {
+    if (key.context.memo == null) {
+      return rs;
+    }
+    key.context.memo.put(key, rs);
+    return copyResultSet(rs);
+  }
+
+  private static ParseResultSet copyResultSet(ParseResultSet rs) {
+    if (rs.Exception != null) {
+      return rs;
+    }
+    return new ParseResultSet(new ArrayList(rs.Parses));
+  }
+
+  /**
+   * Gets the context for the scope of a binder over the given variable.
+   * Within one parse, the same nested context object is returned each time
+   * the same variable is bound in the same outer context, so that memoized
+   * results inside the scope can be reused.
+   */
+  private static ParseOptions getScopeContext(ParseOptions context, Identifier varid) {
+    MemoKey key = null;
+    if (context.memo != null) {
+      key = new MemoKey(
+        MemoKey.SCOPE, 0, context,
+        Arrays.asList(new Object[]{varid.getSymbol(), Boolean.valueOf(varid instanceof Var), varid.getType()}),
+        0
+      );
+      ParseOptions ret = (ParseOptions) context.memo.get(key);
+      if (ret != null) {
+        return ret;
+      }
+    }
+
+    ParseOptions ret = context.cloneContext();
+    ret.typer.addEntry(varid.getSymbol(), varid instanceof Var, varid.getType());
+
+    if (key != null) {
+      context.memo.put(key, ret);
+    }
+    return ret;
+  }
+
   /**
    * Private constructor. All the methods in this class are static.
    */
@@ -255,9 +411,14 @@ public class ExpressionParser {
       throw new SyntaxException("Enter a lambda expression.", 0);
     }
 
-    ParseResult r = parse2(expression, 0, options, "an expression", true);
+    options.memo = new HashMap();
+    try {
+      ParseResult r = parse2(expression, 0, options, "an expression", true);
 
-    return r.Expression;
+      return r.Expression;
+    } finally {
+      options.memo = null;
+    }
   }
 
   /**
@@ -355,7 +516,7 @@ public class ExpressionParser {
   
     // If more than one parse remains, the expression might be ambiguous.
     if (rs.Parses.size() > 1) {
-      Vector alternatives = new Vector();
+      ArrayList alternatives = new ArrayList();
       parses:
       for (int i = 0; i < rs.Parses.size(); i++) {
         ParseResult r = (ParseResult) rs.Parses.get(i);
@@ -477,6 +638,20 @@ public class ExpressionParser {
    */
   private static ParseResultSet parsePrefixExpression(
     String expression, int start, ParseOptions context, String whatIsExpected
+  ) {
+    MemoKey key = new MemoKey(MemoKey.PREFIX, start, context, whatIsExpected, 0);
+    ParseResultSet rs = recall(key);
+    if (rs == null) {
+      rs = remember(key, parsePrefixExpression2(expression, start, context, whatIsExpected));
+    }
+    return rs;
+  }
+
+  /**
+   * Does the work of parsePrefixExpression, without memoization.
+   */
+  private static ParseResultSet parsePrefixExpression2(
+    String expression, int start, ParseOptions context, String whatIsExpected
   ) {
     start = skipWhitespace(expression, start);
     if (start == -1) {
@@ -519,7 +694,7 @@ public class ExpressionParser {
         // HowToContinue exception that resulted in
         // not parsing more of the inner expression
 
-        Vector result = new Vector(); // possible parses
+        ArrayList result = new ArrayList(); // possible parses
 
         // Wrap each possible parse of the subexpression in Parens.
         for (int i = 0; i < parenrs.Parses.size(); i++) {
@@ -644,11 +819,10 @@ public class ExpressionParser {
 
         // Remember the type of the variable, since it might have been given explicitly,
         // so that when we encounter it within our scope, we can give it the same type.
-        // Cloning the context clones the IdentifierTyper, so we can modify it
+        // The scope context has its own clone of the IdentifierTyper, so we can modify it
         // in context2 and it will be unchanged when we pop out of this scope.
-        ParseOptions context2 = context.cloneContext();
         Identifier varid = (Identifier) var.Expression;
-        context2.typer.addEntry(varid.getSymbol(), varid instanceof Var, varid.getType());
+        ParseOptions context2 = getScopeContext(context, varid);
 
         // Just parse anything inside the scope of the binder
         ParseResultSet insides = parseInfixExpression(
@@ -689,7 +863,7 @@ public class ExpressionParser {
         //break
 
       case '{':
-        Vector elements = new Vector();
+        ArrayList elements = new ArrayList();
 
         int next = start + 1;
         boolean gotPipe = false;
@@ -759,7 +933,7 @@ public class ExpressionParser {
           next++;
         }
 
-        Vector results = new Vector();
+        ArrayList results = new ArrayList();
         if (rightExpr == null) {
           results.add(
             new ParseResult(new SetWithElements((Expr[]) elements.toArray(new Expr[0])), next)
@@ -923,7 +1097,7 @@ public class ExpressionParser {
       if (specifiedType == null) {
         specifiedType = Type.E; // default element type
       }
-      specifiedType = new CompositeType(specifiedType, Type.T);
+      specifiedType = CompositeType.get(specifiedType, Type.T);
       parsePredicate = false;
       specifiedTypeIsReallySpecified = false;
     }
@@ -1092,13 +1266,13 @@ public class ExpressionParser {
     Type inferType = null;
     try {
       if (arguments.size() == 1) {
-        inferType = new CompositeType(((Expr) arguments.get(0)).getType(), Type.T);
+        inferType = CompositeType.get(((Expr) arguments.get(0)).getType(), Type.T);
       } else {
         Type[] argtypes = new Type[arguments.size()];
         for (int i = 0; i < arguments.size(); i++) {
           argtypes[i] = ((Expr) arguments.get(i)).getType();
         }
-        inferType = new CompositeType(new ProductType(argtypes), Type.T);
+        inferType = CompositeType.get(ProductType.get(argtypes), Type.T);
       }
     } catch (TypeEvaluationException e) {
     }
@@ -1200,8 +1374,9 @@ public class ExpressionParser {
 
     if (specifiedType == null) {
       try {
-        isvar = context.typer.isVariable(id);
-        type = context.typer.getType(id);
+        IdentifierTyper.Entry convention = context.typer.lookup(id);
+        isvar = convention.isVariable();
+        type = convention.getType();
       } catch (IdentifierTypeUnknownException e) {
         if (inferredType == null) {
           throw e;
@@ -1269,7 +1444,28 @@ public class ExpressionParser {
     String expression, int start, ParseOptions context, String whatIsExpected,
     boolean testSpaceRequired, boolean allowFunctionApplicationSpaceInTrivialReturn
   ) {
-    Vector results = new Vector();
+    MemoKey key = new MemoKey(
+      MemoKey.INFIX, start, context, whatIsExpected,
+      (testSpaceRequired ? 1 : 0) | (allowFunctionApplicationSpaceInTrivialReturn ? 2 : 0)
+    );
+    ParseResultSet rs = recall(key);
+    if (rs == null) {
+      rs = remember(key, parseInfixExpression2(
+        expression, start, context, whatIsExpected,
+        testSpaceRequired, allowFunctionApplicationSpaceInTrivialReturn
+      ));
+    }
+    return rs;
+  }
+
+  /**
+   * Does the work of parseInfixExpression, without memoization.
+   */
+  private static ParseResultSet parseInfixExpression2(
+    String expression, int start, ParseOptions context, String whatIsExpected,
+    boolean testSpaceRequired, boolean allowFunctionApplicationSpaceInTrivialReturn
+  ) {
+    ArrayList results = new ArrayList();
 
     // The first thing to do is parse the first operand. However, if the
     // allowFunctionApplicationSpaceInTrivialReturn parameter is false,
@@ -1336,7 +1532,7 @@ public class ExpressionParser {
    */
   private static SyntaxException parseInfixExpressionRemainder(
     String expression, int start, ParseOptions context,
-    ArrayList operators, ArrayList operands, Vector results, boolean testSpaceRequired
+    ArrayList operators, ArrayList operands, ArrayList results, boolean testSpaceRequired
   ) {
     // Skip any white space after the previous expression to where we expect an operator
     int pstart = start;
@@ -1475,6 +1671,18 @@ public class ExpressionParser {
     // nondeterministic path, and recursively parse for more operands.
     for (int i = 0; i < nextoperands.Parses.size(); i++) {
       ParseResult right = (ParseResult) nextoperands.Parses.get(i);
+
+      SyntaxException err;
+      if (operands == null) {
+        // We're past a binder already (see below).
+        err = parseInfixExpressionRemainderAfterBinder(
+          expression, right.Next, context, testSpaceRequired
+        );
+        if (err != null) {
+          return err;
+        }
+        continue;
+      }
       
       // Clone the list of operators and operands that we have so
       // far and add our latest operator/operand to them.
@@ -1493,9 +1701,19 @@ public class ExpressionParser {
       }
 
       // Try to parse more infix operators...
-      SyntaxException err = parseInfixExpressionRemainder(
-        expression, right.Next, context, operators2, operands2, results, testSpaceRequired
-      );
+      if (right.Expression instanceof Binder ||
+          right.Expression instanceof Not && ((Not) right.Expression).dominatesBinder()) {
+        // Any further operand would put the binder in the middle of the
+        // sequence, which parseInfixExpressionFinish rejects, so the rest of
+        // this path can only contribute an error condition.
+        err = parseInfixExpressionRemainderAfterBinder(
+          expression, right.Next, context, testSpaceRequired
+        );
+      } else {
+        err = parseInfixExpressionRemainder(
+          expression, right.Next, context, operators2, operands2, results, testSpaceRequired
+        );
+      }
       if (err != null) {
         return err;
       }
@@ -1504,6 +1722,29 @@ public class ExpressionParser {
     return null;
   }
 
+  /**
+   * Continues parsing an infix expression after a binder has been taken as a
+   * non-initial operand. No parse can be recorded from here on, but we still
+   * have to scan ahead for the fatal errors that parseInfixExpressionRemainder
+   * would have returned. Since these don't depend on the operands seen so far,
+   * the outcome is memoized by position.
+   */
+  private static SyntaxException parseInfixExpressionRemainderAfterBinder(
+    String expression, int start, ParseOptions context, boolean testSpaceRequired
+  ) {
+    MemoKey key = new MemoKey(
+      MemoKey.REMAINDER_AFTER_BINDER, start, context, null, testSpaceRequired ? 1 : 0
+    );
+    ParseResultSet rs = recall(key);
+    if (rs == null) {
+      SyntaxException err = parseInfixExpressionRemainder(
+        expression, start, context, null, null, null, testSpaceRequired
+      );
+      rs = remember(key, err != null ? new ParseResultSet(err) : new ParseResultSet(new ArrayList()));
+    }
+    return rs.Exception;
+  }
+
   /**
    * Finish parsing an infix expression. Handle operator precedence and record
    * the result. An exception is returned just when grouping the operators is
@@ -1512,7 +1753,7 @@ public class ExpressionParser {
    */
   private static SyntaxException parseInfixExpressionFinish(
     ArrayList operators, ArrayList operands, int next,
-    SyntaxException continuationException, Vector results
+    SyntaxException continuationException, ArrayList results
   ) {
     // Group the operands we found by operator precedence, tighter operators first.
     // After these calls, only a single operand will be left, the one with
@@ -1814,6 +2055,24 @@ public class ExpressionParser {
    */
   private static ParseResultSet parseFunctionApplicationExpression(
     String expression, int start, ParseOptions context, String whatIsExpected, boolean allowSpace
+  ) {
+    MemoKey key = new MemoKey(
+      MemoKey.FUNCTION_APPLICATION, start, context, whatIsExpected, allowSpace ? 1 : 0
+    );
+    ParseResultSet rs = recall(key);
+    if (rs == null) {
+      rs = remember(key, parseFunctionApplicationExpression2(
+        expression, start, context, whatIsExpected, allowSpace
+      ));
+    }
+    return rs;
+  }
+
+  /**
+   * Does the work of parseFunctionApplicationExpression, without memoization.
+   */
+  private static ParseResultSet parseFunctionApplicationExpression2(
+    String expression, int start, ParseOptions context, String whatIsExpected, boolean allowSpace
   ) {
     // Parse the left-hand side of the function application, which can be
     // any type of expression besides function application.
@@ -1822,7 +2081,7 @@ public class ExpressionParser {
       return lefts; // return any fatal errors immediately
     }
     // Collect possible parses here. Delay adding the left expression until later.
-    Vector results = new Vector();
+    ArrayList results = new ArrayList();
 
     // For each possible parse of the left hand side, try to parse an expression
     // after it as its argument.
@@ -1855,7 +2114,7 @@ public class ExpressionParser {
    * (ending at any point) are added
    */
   private static void parseFunctionApplicationRemainder(
-    String expression, ParseOptions context, ParseResult left, Vector results, boolean allowSpace
+    String expression, ParseOptions context, ParseResult left, ArrayList results, boolean allowSpace
   ) {
     // Attempt to parse a second expression, and if we get one,
     // we create a FunApp between the first (left) and second.
@@ -96,9 +96,10 @@ public class FunApp extends Binary {
             if (!(getFunc() instanceof Parens)) {
               func = "[" + func + "]";
             } else {
-              if (getFunc() instanceof Parens) {    
-                ((Parens)getFunc()).setSquare();
-              }
+              // Show parens around a function in square brackets, but without
+              // calling setSquare(): the Parens may be shared with other
+              // expressions (see ExprInterner).
+              func = "[" + ((Parens)getFunc()).getInnerExpr().toString(mode) + "]";
             }
         }
         return func + arg;
@@ -108,7 +109,7 @@ public class FunApp extends Binary {
         return new FunApp(left, right);
     }
 
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (!(getFunc().getType() instanceof CompositeType))
             throw new TypeMismatchException
                     (getFunc() + " cannot be applied as a function " +
@@ -256,7 +257,7 @@ public class FunApp extends Binary {
     protected Expr performLambdaConversion2(Var var, Expr replacement, Set binders, Set accidentalBinders) throws TypeEvaluationException {
         // We're in the scope of a lambda. In that case, we keep performing substitutions
         // in our function and in our argument.
-        return new FunApp(
+        return recreate(
                 getFunc().performLambdaConversion2(var, replacement, binders, accidentalBinders),
                 getArg().performLambdaConversion2(var, replacement, binders, accidentalBinders));
     }
@@ -68,7 +68,7 @@ public class Fusion extends Binary {
         return new Fusion(left, right);
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (getLeft().getType().matches(Type.E) == null ||
             getRight().getType().matches(Type.E) == null) {
             String msg = "The types of the expressions on the left and right " +
@@ -28,12 +28,12 @@
 
 package lambdacalc.logic;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,8 +66,21 @@ public class GApp extends Expr {
         return this.index;
     }
     
-    public int hashCode() {
-        return new Integer(this.getIndex()).hashCode() ^ super.hashCode();
+    protected int computeHashCode() {
+        return new Integer(this.getIndex()).hashCode() ^ super.computeHashCode();
+    }
+    
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        // g(n) equals the variable vn, but not the other way around,
+        // so leave the comparison to equals
+        builder.add(Var.class);
+        builder.add("v" + index);
+        builder.markInexact();
+    }
+    
+    protected boolean nodeDataEquals(Expr other) {
+        GApp g = (GApp)other;
+        return index == g.index && (type == null ? g.type == null : type.equals(g.type));
     }
     
     /**
@@ -80,9 +93,9 @@ public class GApp extends Expr {
     
     
     /**
-     * Gets the semantic type of this expression, that is, e.
+     * Computes the semantic type of this expression, that is, e.
      */
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() {
         return this.type;
     }
     
@@ -194,7 +207,15 @@ public class GApp extends Expr {
      * @return an empty list
      */
     public List getSubExpressions() {
-        return new Vector(0);
+        return new ArrayList(0);
+    }
+    
+    public int getSubExpressionCount() {
+        return 0;
+    }
+    
+    public Expr getSubExpression(int index) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
     }
     
     /**
@@ -229,7 +250,7 @@ public class GApp extends Expr {
      * Writes a serialization of the expression to a DataOutputStream.
      * @param output the data stream to which the expression is written
      */
-    public void writeToStream(java.io.DataOutputStream output)
+    protected void writeFormat2(java.io.DataOutputStream output)
         throws java.io.IOException {
         output.writeUTF(getClass().getName());
         output.writeShort(1); // data format version
@@ -27,10 +27,10 @@
 
 package lambdacalc.logic;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 
 /**
  * The abstract base class of constants (Const) and variables (Var).
@@ -86,8 +86,18 @@ public abstract class Identifier extends Expr {
         }
     }
     
-    public int hashCode() {
-        return this.symbol.hashCode()^super.hashCode();
+    protected int computeHashCode() {
+        return this.symbol.hashCode()^super.computeHashCode();
+    }
+    
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        builder.addIdentifier(this);
+    }
+    
+    protected boolean nodeDataEquals(Expr other) {
+        Identifier i = (Identifier)other;
+        return symbol.equals(i.symbol) && type.equals(i.type)
+            && typeIsExplicit == i.typeIsExplicit && starred == i.starred;
     }
     
     protected abstract boolean equals(Identifier i, boolean useMaps, Map thisMap, Map otherMap, Map freeVarMap, boolean matching);
@@ -141,6 +151,10 @@ public abstract class Identifier extends Expr {
         return type;
     }
     
+    protected Type computeType() {
+        return type;
+    }
+    
     @Override
     public void setType(Type t) {
         type = t;
@@ -168,7 +182,15 @@ public abstract class Identifier extends Expr {
      * @return an empty list
      */
     public List getSubExpressions() {
-        return new Vector(0);
+        return new ArrayList(0);
+    }
+    
+    public int getSubExpressionCount() {
+        return 0;
+    }
+    
+    public Expr getSubExpression(int index) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
     }
     
     /**
@@ -185,7 +207,7 @@ public abstract class Identifier extends Expr {
         return create();
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF(getClass().getName());
         output.writeShort(1); // data format version
         output.writeUTF(symbol);
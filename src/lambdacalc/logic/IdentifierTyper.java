@@ -39,23 +39,47 @@ import lambdacalc.exercises.ExerciseFileVersionException;
  * the conventions about which letters stand for which types of things.
  */
 public class IdentifierTyper {
-    private class Entry {
-        public String start, end;
-        public boolean var;
-        public Type type;
-        public String descr;
+    /**
+     * A typing convention for a range of identifiers. lookup returns the
+     * entry in effect for an identifier.
+     */
+    public static class Entry {
+        String start, end;
+        boolean var;
+        Type type;
+        String descr;
         
-        public Entry(String s, String e, boolean v, Type t, String descr) {
+        Entry(String s, String e, boolean v, Type t, String descr) {
             start = s;
             end = e;
             var = v;
             type = t;
             this.descr = descr;
         }
+        
+        /**
+         * Gets whether identifiers covered by this entry are variables.
+         */
+        public boolean isVariable() {
+            return var;
+        }
+        
+        /**
+         * Gets the semantic type of identifiers covered by this entry.
+         */
+        public Type getType() {
+            return type;
+        }
     }
     
     private ArrayList entries = new ArrayList();
     
+    // Indexes into entries used by findEntry. Since later entries override
+    // earlier ones, each slot holds the last entry added that covers it.
+    private Entry[] letters = new Entry[128]; // single-letter ranges, by ASCII character
+    private ArrayList otherLetters = new ArrayList(); // single-letter ranges that go beyond ASCII
+    private HashMap words = new HashMap(); // multi-letter entries, by their start
+    
     /**
      * Creates a new IdentifierTyper with no type mappings.
      */
@@ -87,6 +111,9 @@ public class IdentifierTyper {
      */
     public void clear() {
         entries.clear();
+        Arrays.fill(letters, null);
+        otherLetters.clear();
+        words.clear();
     }
     
     /**
@@ -119,7 +146,21 @@ public class IdentifierTyper {
         if (Character.isLowerCase(start.charAt(0)) != Character.isLowerCase(end.charAt(0)))
             throw new IllegalArgumentException("In a range, the start and end of the range must be both uppercase or both lowercase.");
             
-        entries.add(new Entry(start, end, isVariable, type, description));
+        add(new Entry(start, end, isVariable, type, description));
+    }
+    
+    private void add(Entry e) {
+        entries.add(e);
+        
+        if (e.start.length() > 1) {
+            words.put(e.start, e);
+        } else if (e.end.length() == 1) { // otherwise the entry never matches
+            char first = e.start.charAt(0), last = e.end.charAt(0);
+            for (int c = first; c <= last && c < letters.length; c++)
+                letters[c] = e;
+            if (last >= letters.length)
+                otherLetters.add(e);
+        }
     }
     
     private Entry findEntry(String identifier) throws IdentifierTypeUnknownException {
@@ -131,33 +172,39 @@ public class IdentifierTyper {
             || !Character.isLetterOrDigit(identifier.charAt(1))
             || ExpressionParser.isPrime(identifier.charAt(1));
 
-        for (int i = entries.size() - 1; i >= 0; i--) {
-            Entry e = (Entry)entries.get(i);
-
-            if (!isSingleLetter) {
-                if (e.start.equals(identifier))
-                    return e;
-                continue;
+        Entry ret = null;
+        if (!isSingleLetter) {
+            // Only entries whose start is the whole identifier apply.
+            ret = (Entry)words.get(identifier);
+        } else {
+            // Only entries whose start and end are single letters apply.
+            char c = identifier.charAt(0);
+            if (c < letters.length) {
+                ret = letters[c];
+            } else {
+                for (int i = otherLetters.size() - 1; i >= 0; i--) {
+                    Entry e = (Entry)otherLetters.get(i);
+                    if (c >= e.start.charAt(0) && c <= e.end.charAt(0)) {
+                        ret = e;
+                        break;
+                    }
+                }
             }
-            
-            if (e.start.length() > 1 || e.end.length() > 1) continue;
-
-            boolean startOK, endOK;
-
-            if (e.start.length() == 1)
-                startOK = identifier.charAt(0) >= e.start.charAt(0);
-            else
-                startOK = identifier.compareTo(e.start) <= 0;
-
-            if (e.end.length() == 1)
-                endOK = identifier.charAt(0) <= e.end.charAt(0);
-            else
-                endOK = identifier.compareTo(e.end) <= 0;
-
-            if (startOK && endOK)
-                return e;
         }
-        throw new IdentifierTypeUnknownException(identifier);
+        
+        if (ret == null)
+            throw new IdentifierTypeUnknownException(identifier);
+        return ret;
+    }
+    
+    /**
+     * Gets the typing convention in effect for the identifier, which says
+     * both whether it is a variable and what its type is.
+     * @throws IdentifierTypeUnknownException if the identifier cannot be
+     * typed because it starts with a character not mapped
+     */
+    public Entry lookup(String identifier) throws IdentifierTypeUnknownException {
+        return findEntry(identifier);
     }
     
     /**
@@ -206,11 +253,12 @@ public class IdentifierTyper {
      * Clones this instance.
      */
     public IdentifierTyper cloneTyper() {
+        // Entries are never modified, so they and the indexes can be shared.
         IdentifierTyper ret = new IdentifierTyper();
-        for (int j = 0; j < entries.size(); j++) {
-            Entry e = (Entry)entries.get(j);
-            ret.addEntry(e.start, e.end, e.var, e.type, e.descr);
-        }
+        ret.entries.addAll(entries);
+        System.arraycopy(letters, 0, ret.letters, 0, letters.length);
+        ret.otherLetters.addAll(otherLetters);
+        ret.words.putAll(words);
         return ret;
     }
     
@@ -365,8 +413,7 @@ public class IdentifierTyper {
             if (input.readBoolean())
                 descr = input.readUTF();
             
-            Entry e = new Entry(start, end, var, type, descr);
-            entries.add(e);
+            add(new Entry(start, end, var, type, descr));
         }
     }
 }
@@ -87,7 +87,7 @@ public class Iota extends Binder {
         return 8;
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         checkVariable();
         if (getInnerExpr().getType().matches(Type.T) == null)
             throw new TypeEvaluationException("The inside of the iota binder in " + toString() + " must be of type t.");
@@ -80,6 +80,10 @@ public class Lambda extends Binder {
         return starred; 
     }
     
+    protected boolean nodeDataEquals(Expr other) {
+        return super.nodeDataEquals(other) && starred == ((Lambda)other).starred;
+    }
+    
     public String getSymbol() {
         return String.valueOf(SYMBOL);
     }
@@ -88,9 +92,9 @@ public class Lambda extends Binder {
         return this.LATEX_REPR;
     }
 
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         checkVariable();
-        return new CompositeType(getVariable().getType(), getInnerExpr().getType());
+        return CompositeType.get(getVariable().getType(), getInnerExpr().getType());
     }
 
     protected Binder create(Identifier variable, Expr inner) {
@@ -31,7 +31,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 import java.util.stream.Stream;
 
 /**
@@ -91,7 +90,7 @@ public abstract class LogicalBinary extends Binary {
         return 6;
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         // Our default implementation checks that the operands are of type t,
         // but this is overridden in Equality which only checks that the
         // types of the operands are the same.
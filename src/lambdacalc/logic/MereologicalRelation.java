@@ -44,7 +44,7 @@ public abstract class MereologicalRelation extends LogicalBinary {
     
     protected abstract Type getResultingType() throws TypeEvaluationException;
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (getLeft().getType().matches(Type.E) == null||
             getRight().getType().matches(Type.E) == null) {
             String msg = "The types of the expressions on the left and right " +
@@ -64,7 +64,7 @@ public class Multiplication extends Binary {
         return new Multiplication(left, right);
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (getLeft().getType().matches(Type.N) == null||
             getRight().getType().matches(Type.N) == null) {
             String msg = "The types of the expressions on the left and right " +
@@ -121,7 +121,7 @@ public abstract class NAry extends Expr {
     protected Set getVars(boolean unboundOnly) {
         HashSet ret = new HashSet();
         for (int i = 0; i < exprs.length; i++)
-            ret.addAll(exprs[i].getVars(unboundOnly));
+            ret.addAll(exprs[i].getCachedVars(unboundOnly));
         return ret;
     }
 
@@ -155,7 +155,7 @@ public abstract class NAry extends Expr {
         Expr[] e = new Expr[exprs.length];
         for (int i = 0; i < exprs.length; i++)
             e[i] = exprs[i].performLambdaConversion2(var, replacement, binders, accidentalBinders);
-        return createFromSubExpressions(e);
+        return recreate(e);
     }
  
     /**
@@ -166,6 +166,14 @@ public abstract class NAry extends Expr {
         return Arrays.asList(this.getElements());
     }
     
+    public int getSubExpressionCount() {
+        return exprs.length;
+    }
+    
+    public Expr getSubExpression(int index) {
+        return exprs[index];
+    }
+    
     /**
      * Creates a new NAry using all the subexpressions given.
      *
@@ -179,23 +187,36 @@ public abstract class NAry extends Expr {
     
     protected abstract Expr createFromSubExpressions(Expr[] subExpressions);
     
+    /**
+     * Returns this expression if the given subexpressions are the very
+     * same ones that it has, or else a new one made from them, so that
+     * rewriting an expression shares its unchanged subtrees.
+     */
+    protected final Expr recreate(Expr[] subExpressions) {
+        for (int i = 0; i < exprs.length; i++) {
+            if (subExpressions[i] != exprs[i])
+                return createFromSubExpressions(subExpressions);
+        }
+        return this;
+    }
+    
     
     
     protected Expr createAlphabeticalVariant(Set bindersToChange, Set variablesInUse, Map updates) {
         Expr[] e = new Expr[exprs.length];
         for (int i = 0; i < exprs.length; i++)
             e[i] = exprs[i].createAlphabeticalVariant(bindersToChange, variablesInUse, updates);
-        return createFromSubExpressions(e);
+        return recreate(e);
     }
     
     public Expr createAlphatypicalVariant(HashMap<Type,Type> alignments, Set variablesInUse, Map updates) {
         Expr[] e = new Expr[exprs.length];
         for (int i = 0; i < exprs.length; i++)
             e[i] = exprs[i].createAlphatypicalVariant(alignments, variablesInUse, updates);
-        return createFromSubExpressions(e);
+        return recreate(e);
     }
 
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF(getClass().getName());
         output.writeShort(0); // data format version
         output.writeInt(exprs.length);
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * NormalOrderReducer.java
+ */
+
+package lambdacalc.logic;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Computes the normal form of an expression in a single pass, for
+ * Expr.simplifyFully.
+ *
+ * Expr.performLambdaConversion carries out one lambda conversion at a time,
+ * and each call searches for the next redex from the root of the expression
+ * and rebuilds the path to it, so simplifying by repeating it is quadratic
+ * (or worse) in the size of the expression. This class instead walks
+ * the expression once: it reduces the head of each function application
+ * until it is no longer a lambda, and then normalizes the function
+ * and the argument. This contracts the same redexes in the same order as
+ * repeated calls to performLambdaConversion (leftmost-outermost), and
+ * substitutes with the same performLambdaConversion2 methods, so the result
+ * is the same expression, not just an alphabetical variant of it. Only
+ * subexpressions that actually contain redexes are rebuilt, and since
+ * a substitution puts the same instance of the argument at every occurrence
+ * of the variable, normal forms are memoized by instance so that an argument
+ * is normalized just once.
+ *
+ * When a substitution would accidentally bind a free variable of the
+ * argument, the names chosen for the alphabetical variant depend on all of
+ * the variables in the whole expression at that point of the step-by-step
+ * simplification. Rather than reproduce that, the reducer gives up and the
+ * caller falls back on repeated calls to performLambdaConversion, which
+ * also remains the API for showing the individual steps.
+ */
+public class NormalOrderReducer {
+    
+    /**
+     * Thrown internally when a lambda conversion requires an alphabetical variant.
+     */
+    private static class AlphabeticalVariantNeededException extends Exception {
+    }
+    
+    private IdentityHashMap normalForms = new IdentityHashMap();
+    
+    private NormalOrderReducer() {
+    }
+    
+    /**
+     * Returns the normal form of the expression, the same as
+     * what repeatedly applying performLambdaConversion gives, or null
+     * if an alphabetical variant would be needed along the way.
+     * If no lambda conversions are possible, expr itself is returned.
+     */
+    public static Expr normalize(Expr expr) throws TypeEvaluationException {
+        try {
+            return new NormalOrderReducer().normalForm(expr);
+        } catch (AlphabeticalVariantNeededException e) {
+            return null;
+        }
+    }
+    
+    private Expr normalForm(Expr expr) throws TypeEvaluationException, AlphabeticalVariantNeededException {
+        Expr result = (Expr)normalForms.get(expr);
+        if (result != null)
+            return result;
+        
+        if (expr instanceof FunApp)
+            result = normalFormOfApplication((FunApp)expr);
+        else
+            result = normalFormOfSubExpressions(expr);
+        
+        normalForms.put(expr, result);
+        return result;
+    }
+    
+    /**
+     * Normalizes each subexpression, rebuilding the expression only
+     * if one of them changed.
+     */
+    private Expr normalFormOfSubExpressions(Expr expr) throws TypeEvaluationException, AlphabeticalVariantNeededException {
+        int n = expr.getSubExpressionCount();
+        if (n == 0)
+            return expr;
+        
+        ArrayList newSubExpressions = null;
+        for (int i = 0; i < n; i++) {
+            Expr sub = expr.getSubExpression(i);
+            Expr newSub = normalForm(sub);
+            if (newSub != sub && newSubExpressions == null) {
+                newSubExpressions = new ArrayList(n);
+                for (int j = 0; j < i; j++)
+                    newSubExpressions.add(expr.getSubExpression(j));
+            }
+            if (newSubExpressions != null)
+                newSubExpressions.add(newSub);
+        }
+        
+        if (newSubExpressions == null)
+            return expr;
+        return expr.createFromSubExpressions(newSubExpressions);
+    }
+    
+    private Expr normalFormOfApplication(FunApp app) throws TypeEvaluationException, AlphabeticalVariantNeededException {
+        Expr head = reduceHead(app);
+        
+        // If the head was converted into something that is not a
+        // function application, normalize that.
+        if (!(head instanceof FunApp))
+            return normalForm(head);
+        app = (FunApp)head;
+        
+        // The function is now an identifier, a g(n), or a function application
+        // headed by one of those. Normalize its arguments and then our argument.
+        Expr func = app.getFunc();
+        Expr strippedFunc = func.stripOutermostParens();
+        if (strippedFunc instanceof FunApp) {
+            Expr newFunc = normalForm(strippedFunc);
+            if (newFunc != strippedFunc)
+                func = newFunc; // parens are dropped, as performLambdaConversion1 does
+        }
+        
+        Expr arg = normalForm(app.getArg());
+        
+        if (func == app.getFunc() && arg == app.getArg())
+            return app;
+        return new FunApp(func, arg);
+    }
+    
+    /**
+     * Performs lambda conversions at the head of a function application
+     * until its function is not a lambda (or a function application that
+     * reduces to one). Returns app itself if there was nothing to do.
+     * This follows FunApp.performLambdaConversion1.
+     */
+    private Expr reduceHead(FunApp app) throws TypeEvaluationException, AlphabeticalVariantNeededException {
+        while (true) {
+            Expr func = app.getFunc().stripOutermostParens();
+            
+            if (func instanceof FunApp) {
+                Expr newFunc = reduceHead((FunApp)func);
+                if (newFunc == func)
+                    return app;
+                app = new FunApp(newFunc, app.getArg());
+                continue;
+            }
+            
+            if (func instanceof Lambda) {
+                Expr result = convert((Lambda)func, app.getArg().stripOutermostParens());
+                if (!(result instanceof FunApp))
+                    return result;
+                app = (FunApp)result;
+                continue;
+            }
+            
+            if (func instanceof Identifier || func instanceof GApp)
+                return app;
+            
+            throw new TypeMismatchException("The left hand side of a function application must be a lambda expression or a function-typed constant or variable: " + func);
+        }
+    }
+    
+    private Expr convert(Lambda lambda, Expr arg) throws TypeEvaluationException, AlphabeticalVariantNeededException {
+        if (!(lambda.getVariable() instanceof Var))
+            throw new ConstInsteadOfVarException
+                    ("A variable must be bound by the " + Lambda.SYMBOL
+                    + ", but " + lambda.getVariable() + " is a constant " +
+                    "according to the typing conventions in effect.");
+        Var var = (Var)lambda.getVariable();
+        
+        Set accidentalBinders = new HashSet();
+        Expr result = lambda.getInnerExpr().stripOutermostParens()
+                .performLambdaConversion2(var, arg, new HashSet(), accidentalBinders);
+        if (accidentalBinders.size() != 0)
+            throw new AlphabeticalVariantNeededException();
+        return result;
+    }
+}
@@ -70,7 +70,7 @@ public class Not extends Unary {
             return prefix + nestedToString(getInnerExpr(), mode);
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (getInnerExpr().getType().matches(Type.T) == null)
             throw new TypeMismatchException("Negation can only be applied to something of type t, but " + getInnerExpr() + " is of type " + getInnerExpr().getType() + ".");
         return Type.T;
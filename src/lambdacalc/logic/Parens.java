@@ -70,8 +70,9 @@ public class Parens extends Unary {
     
     String getOpenSymbol() { return shape == ROUND ? "(" : "["; }
     String getCloseSymbol() { return shape == ROUND ? ")" : "]"; }
+    boolean getShape() { return shape; }
 
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         return getInnerExpr().getType();
     }
     
@@ -88,12 +89,21 @@ public class Parens extends Unary {
         return this.stripOutermostParens().equals(e, useMaps, thisMap, otherMap, collapseAllVars, freeVarMap, matching);
     }
         
+    protected void buildCanonicalForm(CanonicalForm.Builder builder) {
+        // parens are ignored by equality tests
+        getInnerExpr().buildCanonicalForm(builder);
+    }
+    
+    protected boolean nodeDataEquals(Expr other) {
+        return shape == ((Parens)other).shape;
+    }
+        
     protected Unary create(Expr inner) {
         return new Parens(inner, shape);
     }
 
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
-        super.writeToStream(output);
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
+        super.writeFormat2(output);
         output.writeShort(0); // data format version
         output.writeBoolean(shape);
     }
@@ -43,18 +43,32 @@ public class ProductType extends Type {
 
     public static final String LATEX_SYMBOL = "\\times";
     
-    private Type[] subtypes;
+    private final Type[] subtypes;
+    private final int hash;
     
     /**
-     * Creates a new product type with the given sub-types.
+     * Gets the product type with the given sub-types.
      */
-    public ProductType(Type[] subtypes) {
+    public static ProductType get(Type[] subtypes) {
+        return (ProductType)intern(new ProductType(subtypes.clone()));
+    }
+    
+    private ProductType(Type[] subtypes) {
         this.subtypes = subtypes;
         if (subtypes.length <= 1) throw new IllegalArgumentException();
+        this.hash = computeHash();
+    }
+    
+    private int computeHash() {
+        int hc = 7;
+        for (int i = 0; i < subtypes.length; i++)
+            hc = 31 * hc + subtypes[i].hashCode();
+        return hc;
     }
     
     /**
-     * Gets the sub-types of this product type.
+     * Gets the sub-types of this product type. The array is shared by
+     * everything that uses this type and must not be modified.
      */
     public Type[] getSubTypes() {
         return subtypes;
@@ -67,17 +81,14 @@ public class ProductType extends Type {
         return subtypes.length;
     }
     
-    protected boolean equals(Type t) {
+    protected boolean sameStructure(Type t) {
 	if (t instanceof ProductType) {
             Type[] a1 = getSubTypes();
             Type[] a2 = ((ProductType)t).getSubTypes();
             if (a1.length != a2.length) 
 		return false;
             for (int i = 0; i < a1.length; i++) {
-                Type l = a1[i];
-                Type r = a2[i];
-                boolean guard = a1[i].equals(a2[i]);
-                if (!guard)
+                if (a1[i] != a2[i])
                     return false;
             }
             return true;
@@ -86,80 +97,6 @@ public class ProductType extends Type {
 	return false;
     }
     
-    //sets all instances of a variable for a given ProductType to the same reference. Uses getAlignedType in Matchpair logic
-    public ProductType renameVariables(ArrayList<Type> varList){
-        Type[] newParts = this.getSubTypes();
-        for(Type part : newParts){
-            if (part instanceof ProductType) {
-            part = ((ProductType) part).renameVariables(varList);
-            }
-            else if(part instanceof CompositeType){
-            part = ((CompositeType) part).renameVariables(varList);
-            }
-            else if(part instanceof VarType){
-                if(varList.contains(part))
-                part = varList.get(varList.indexOf(part));
-
-                else{
-                varList.add(part);
-                }
-            }
-        }
-        return new ProductType(newParts);
-    }
-    
-	/**
-	 * Tests whether two types can be unified. 
-	 * @param t the Type to be unified with.
-	 * @return a MatchPair class containing the variable mappings (unifier) for each Type,
-         * or null if cannot be unified.
-	 */
-	public MatchPair matches(Type t){
-	    return matches2(t, false);
-	}
-        
-	/**
-	 * Helper method for matches. Only two ProductTypes can be unified.
-	 * For each sub-type of the ProductType, unify them. If successful, insert the pairing 
-         * into the parent ProductType. If not successful, try the unification procedure from right to left.
-	 * @param t the ProductType to be unified with
-	 * @param RtoL whether the pass is right to left
-	 * @return A MatchPair class containing the mappings for each productType, 
-         * or null if cannot be matched. 
-	 */
-        private MatchPair matches2(Type t, boolean RtoL){
-	    
-	    if(t instanceof ProductType){
-		if (this.getSubTypes().length == ((ProductType) t).getSubTypes().length){
-		    MatchPair pair;
-		    if(RtoL)
-			pair = new MatchPair(t, this);
-		    else
-			pair = new MatchPair(this, t);
-		    for(int i = 0; i < this.getSubTypes().length; i++){
-			MatchPair parts = this.getSubTypes()[i].matches(((ProductType) t).getSubTypes()[i]);
-			if(parts != null){
-			    
-			    boolean pass;
-			    pass = pair.insertMatch(parts.getMatches(parts.getLeft()), parts.getMatches(parts.getRight()), parts.getGraph());
-			  
-			    if(!(pass)){
-				if(RtoL)
-				    return null;
-			    
-				else
-				    return ((ProductType) t).matches2(this, true);
-			    }
-			}
-		    }
-		    if(RtoL)
-			return pair.flip();
-		    return pair;
-		}
-	    }
-	    return null;
-	}
-    
     public boolean containsVar() {
         for (Type subtype : subtypes) {
             if (subtype.containsVar()) {
@@ -179,10 +116,7 @@ public class ProductType extends Type {
     }
     
     public int hashCode() {
-        int hc = 0;
-        for (int i = 0; i < subtypes.length; i++)
-            hc ^= subtypes[i].hashCode(); // XOR the hash codes
-        return hc;
+        return hash;
     }
     
     public String toShortString() {
@@ -219,7 +153,7 @@ public class ProductType extends Type {
         return ret;
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF("ProductType");
         output.writeShort(0); // data format version
         output.writeInt(subtypes.length);
@@ -236,5 +170,6 @@ public class ProductType extends Type {
         subtypes = new Type[ntypes];
         for (int i = 0; i < ntypes; i++)
             subtypes[i] = Type.readFromStream(input);
+        hash = computeHash();
     }
 }
@@ -53,7 +53,7 @@ public abstract class PropositionalBinder extends Binder {
         return 8;
     }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         checkVariable();
         if (getInnerExpr().getType().matches(Type.T) == null)
             throw new TypeEvaluationException("The inside of the propositional binder in " + toString() + " must be of type t.");
@@ -45,7 +45,7 @@ public abstract class SetRelation extends LogicalBinary {
     
     protected abstract Type getResultingType() throws TypeEvaluationException;
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         Type lefttype = getLeft().getType();
         Type righttype = getRight().getType();
         if ((!(lefttype instanceof CompositeType) || (((CompositeType)lefttype).getRight().matches(Type.T)) == null)
@@ -67,7 +67,7 @@ public class SetWithElements extends NAry {
 
     protected String getCloseSymbol() { return "}"; }
     
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         Type t = elementType;
         if (elementType == null) {
             // non-null set, check that the types of the elements are the same
@@ -77,9 +77,14 @@ public class SetWithElements extends NAry {
                 if (elems[i].getType().matches(t) == null)
                     throw new TypeEvaluationException("The elements of a set must all have the same type. The type of '" + elems[0] + "' is not the same as the type of '" + elems[i] + "'.");
         }
-        return new CompositeType(t, Type.T); // the type of the characteristic function
+        return CompositeType.get(t, Type.T); // the type of the characteristic function
     }
 
+    protected boolean nodeDataEquals(Expr other) {
+        Type t = ((SetWithElements)other).elementType;
+        return elementType == null ? t == null : elementType.equals(t);
+    }
+    
     public Expr createFromSubExpressions(Expr[] subExpressions)
      throws IllegalArgumentException {
         return new SetWithElements(subExpressions);
@@ -69,10 +69,10 @@ public class SetWithGenerator extends Binary implements VariableBindingExpr {
         return 0;
     }
 
-    public Type getType() throws TypeEvaluationException {
+    protected Type computeType() throws TypeEvaluationException {
         if (getFilter().getType().matches(Type.T) == null)
             throw new TypeMismatchException("The right-hand part of the set " + toString() + " must have type t.");
-        return new CompositeType(getTemplate().getType(), Type.T);
+        return CompositeType.get(getTemplate().getType(), Type.T);
     }
     
     protected boolean equals(Expr e, boolean useMaps, Map thisMap, Map otherMap, boolean collapseAllVars, java.util.Map freeVarMap) {
@@ -144,11 +144,11 @@ public class SetWithGenerator extends Binary implements VariableBindingExpr {
     }
 
     protected Set getVars(boolean unboundOnly) {
-        Set ret = getRight().getVars(unboundOnly);
+        Set ret = new HashSet(getRight().getCachedVars(unboundOnly));
         if (unboundOnly) // minus the free variables on the left side, which bind into the right
-            ret.removeAll(getLeft().getVars(true));
+            ret.removeAll(getLeft().getCachedVars(true));
         else // plus any variable on the left side
-            ret.addAll(getLeft().getVars(false));
+            ret.addAll(getLeft().getCachedVars(false));
         return ret;
     }
     
@@ -157,7 +157,7 @@ public class SetWithGenerator extends Binary implements VariableBindingExpr {
         
         // If var is bound by the template of the generator, then we just return ourself directly
         // because var won't be replaced by the lambda conversion argument within this expression.
-        if (getTemplate().getFreeVars().contains(var))
+        if (getTemplate().getCachedVars(true).contains(var))
             return this;
         
         // Mark that this binder outscopes things in its scope, so that when we
@@ -167,7 +167,7 @@ public class SetWithGenerator extends Binary implements VariableBindingExpr {
         binders2.add(this);
         
         // We're in the scope of a lambda conversion. Just recurse.
-        return create(getLeft(), getRight().performLambdaConversion2(var, replacement, binders2, accidentalBinders));
+        return recreate(getLeft(), getRight().performLambdaConversion2(var, replacement, binders2, accidentalBinders));
     }
 
     protected Expr createAlphabeticalVariant(Set bindersToChange, Set variablesInUse, Map updates) {
@@ -193,11 +193,11 @@ public class SetWithGenerator extends Binary implements VariableBindingExpr {
         }
 
         // Recurse
-        return create(left, getRight().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
+        return recreate(left, getRight().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
     }
     
     public boolean bindsAny(Set vars) {
-        Set boundvars = getTemplate().getFreeVars();
+        Set boundvars = getTemplate().getCachedVars(true);
         for (Iterator fvs = vars.iterator(); fvs.hasNext(); ) {
             if (boundvars.contains(fvs.next()))
                 return true;
@@ -32,9 +32,22 @@ import java.util.*;
 /**
  * Represents a semantic type, an AtomicType like e and t,
  * a CompositeType like &lt;e,t&gt;, or a ProductType like (e x e).
+ *
+ * Types are immutable and interned: there is only ever one instance of
+ * each distinct type, which is obtained from the static get methods of the
+ * subclasses (e.g. CompositeType.get(Type.E, Type.T)). Two types are thus
+ * equal just when they are the same instance.
  */
 public abstract class Type implements Comparable {
     
+    /**
+     * The table of all types created so far, mapping an InternKey for each
+     * type to the type itself. This must be initialized before the constant
+     * types below are created.
+     */
+    private static final java.util.concurrent.ConcurrentHashMap internTable
+            = new java.util.concurrent.ConcurrentHashMap();
+    
     /**
      * Type variables identified by preceding apostrophe
      */
@@ -43,61 +56,96 @@ public abstract class Type implements Comparable {
     /**
      * The type of entities, e.
      */
-    public static final Type E = new ConstType('e');
+    public static final Type E = ConstType.get('e');
 
      /**
      * The type of truth values, t.
      */
-    public static final Type T = new ConstType('t');
+    public static final Type T = ConstType.get('t');
 
     /**
      * The type of worlds used for Intensional Function Application, s.
      */
-    public static final Type S = new ConstType('s');
+    public static final Type S = ConstType.get('s');
 
     /**
      * The type of one place predicates, &lt;e,t&gt;.
      */
-    public static final Type ET = new CompositeType(new ConstType('e'), new ConstType('t'));
+    public static final Type ET = CompositeType.get(E, T);
 
     /**
      * The type of two place predicates, &lt;e x e , t&gt;.
      */
-    public static final Type ExET = new CompositeType(
-            new ProductType(new Type[] { new ConstType('e'), new ConstType('e') }),
-            new ConstType('t'));
+    public static final Type ExET = CompositeType.get(
+            ProductType.get(new Type[] { E, E }),
+            T);
     
     /**
      * The type of an integer.
      */
-    public static final Type N = new ConstType('n');
+    public static final Type N = ConstType.get('n');
     
-    public static final Type WILD = new VarType('_');
+    public static final Type WILD = VarType.get('_');
         
     /**
-     * Tests two types for equality (as you would expect).
+     * Returns the shared instance of a type that is structurally identical
+     * to the given newly constructed type, which becomes the shared instance
+     * if there is none yet. The subtypes of t must already be interned.
      */
-    public boolean equals(Object obj) {
-        if (obj instanceof Type)
-            return equals((Type)obj);
-        else
-            return false;
+    static Type intern(Type t) {
+        Type shared = (Type)internTable.putIfAbsent(new InternKey(t), t);
+        return shared == null ? t : shared;
+    }
+    
+    /**
+     * Wraps a type for lookup in the intern table, with the structural
+     * equality that the type itself no longer has.
+     */
+    private static final class InternKey {
+        private final Type type;
+        
+        InternKey(Type type) {
+            this.type = type;
+        }
+        
+        public int hashCode() {
+            return type.hashCode();
+        }
+        
+        public boolean equals(Object obj) {
+            return obj instanceof InternKey && type.sameStructure(((InternKey)obj).type);
+        }
     }
     
     /**
-     * Implemented by subclasses to test for equality between types.
+     * Tests two types for equality. Since types are interned, this is just
+     * a test of whether they are the same instance.
      */
-    protected abstract boolean equals(Type t);
+    public final boolean equals(Object obj) {
+        return this == obj;
+    }
     
     /**
-    * Implemented by subclasses to test whether two types can be unified. 
+     * Implemented by subclasses to test whether a type is of the same kind
+     * as this one and has the same symbol or the same subtypes.
+     * Subtypes are compared by reference, since they are interned.
+     */
+    protected abstract boolean sameStructure(Type t);
+    
+    /**
+    * Tests whether two types can be unified. 
     * This method supports composition of polymorphic functions (combinators) by 
     * checking whether two types that possibly contain variables can be matched.
     * For example, 'a,t and e,t can be unified, with 'a mapping to e, while 
     * 'a,'a and e,t cannot be unified because 'a cannot be mapped to two concrete types.
-    * Outputs a MatchPair, which contains the unifier of the two types if there is one.
+    * The variables of this type and of t are distinct even when they have the
+    * same name, and a variable is never unified with a product type.
+    * Outputs a MatchPair, which contains the unifier of the two types if there is one,
+    * or null if there is not.
     */
-    public abstract MatchPair matches(Type t);
+    public MatchPair matches(Type t) {
+        return MatchPair.unify(this, t);
+    }
     
     /**
      * Compares two types.  The natural ordering of types is as follows:
@@ -106,6 +154,8 @@ public abstract class Type implements Comparable {
      *   Finally composite types, ordered first according to domain, then range.
      */
     public int compareTo(Object other) {
+        if (this == other)
+            return 0;
         if (this instanceof AtomicType) {
             if (other instanceof AtomicType) {
                 char x = ((AtomicType)this).getSymbol();
@@ -157,22 +207,37 @@ public abstract class Type implements Comparable {
     public abstract String toLatexString();
     
     /**
-     * Writes a serialization of the type to a DataOutputStream.
+     * Writes a serialization of the type to a DataOutputStream: to the
+     * shared type table if the stream is an ExprOutputStream (file format
+     * version 3), otherwise by writeFormat2.
+     */
+    public final void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+        if (output instanceof ExprOutputStream)
+            ((ExprOutputStream)output).writeType(this);
+        else
+            writeFormat2(output);
+    }
+    
+    /**
+     * Writes the type in the encoding of file format version 2.
      * In implementations of this method in subclasses, the first thing written
      * must be the name of the class as a string (i.e. "AtomicType").
      */
-    public abstract void writeToStream(java.io.DataOutputStream output) throws java.io.IOException;
+    protected abstract void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException;
    
     /**
      * Reads a serialization of the types from a DataInputStream.
      */
     public static Type readFromStream(java.io.DataInputStream input) throws java.io.IOException {
+        if (input instanceof ExprInputStream)
+            return ((ExprInputStream)input).readType();
+        
         String exprType = input.readUTF();
         
-        if (exprType.equals("ConstType")) return new ConstType(input);
-        if (exprType.equals("VarType")) return new VarType(input);
-        if (exprType.equals("CompositeType")) return new CompositeType(input);
-        if (exprType.equals("ProductType")) return new ProductType(input);
+        if (exprType.equals("ConstType")) return intern(new ConstType(input));
+        if (exprType.equals("VarType")) return intern(new VarType(input));
+        if (exprType.equals("CompositeType")) return intern(new CompositeType(input));
+        if (exprType.equals("ProductType")) return intern(new ProductType(input));
         
         throw new java.io.IOException("Invalid data.");
     }
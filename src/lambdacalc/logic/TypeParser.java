@@ -77,7 +77,7 @@ public class TypeParser {
     
     static ParseResult parseType(String type, int start, boolean stopSoon) 
     throws SyntaxException {
-        Stack stack = new Stack();
+        ArrayDeque stack = new ArrayDeque();
         ParseState current = new ParseState();
         
 //        boolean isParsingProduct = false;
@@ -90,14 +90,14 @@ public class TypeParser {
                 if ('a' <= c && c <= 'z' || 'A' <= c && c <= 'Z') {
                     Type newType;
                     if (isParsingVarType) {
-                        newType = new VarType(c);
+                        newType = VarType.get(c);
                         isParsingVarType = false;
                     } else {
-                        newType = new ConstType(c);
+                        newType = ConstType.get(c);
                     }
                     if (current.Right != null) {
                         if (current.JustClosedProduct) {
-                            current.Right = new ProductType(new Type[] {current.Right, newType});
+                            current.Right = ProductType.get(new Type[] {current.Right, newType});
                             current.ReadParen = false;
                         } else {
                             current.Right = addProduct(current.Right, newType);
@@ -106,7 +106,7 @@ public class TypeParser {
                         continue;
                     } else {
                         if (current.JustClosedProduct) {
-                            current.Left = new ProductType(new Type[] {current.Left, newType});
+                            current.Left = ProductType.get(new Type[] {current.Left, newType});
                             current.ReadParen = false;
                         } else {
                             current.Left = addProduct(current.Left, newType);
@@ -189,7 +189,7 @@ public class TypeParser {
                     current = closeType(stack, current);
                     if (stopSoon && stack.size() == 0 && current.Right != null && current.FinalBracket) {
 //                    if (stopSoon && stack.size() == 0 && current.Right == null) {
-                        Type ct = new CompositeType(current.Left, current.Right);
+                        Type ct = CompositeType.get(current.Left, current.Right);
                         return new ParseResult(ct, i);
 //                        return new ParseResult(current.Left, i);
                     }  
@@ -205,7 +205,7 @@ public class TypeParser {
                     } else if (!current.ReadBracket && !current.ReadComma) {
                         throw new SyntaxException("A pair of complex types must be surrounded by angle brackets < >. Add brackets where needed.", i);
                     } else if (current.ReadBracket && !current.ReadComma) {
-                        current.Left = new CompositeType(current.Left, current.Right);
+                        current.Left = CompositeType.get(current.Left, current.Right);
                         current.Right = null;
                         current.ReadComma = true;
                     } else if (current.ReadBracket && current.ReadComma) {
@@ -230,10 +230,10 @@ public class TypeParser {
             } else if ('a' <= c && c <= 'z' || 'A' <= c && c <= 'Z') {
                 AtomicType at;
                 if (isParsingVarType) {
-                    at = new VarType(c);
+                    at = VarType.get(c);
                     isParsingVarType = false;
                 } else {
-                    at = new ConstType(c);
+                    at = ConstType.get(c);
                 }
                 if (current.Left == null) {
                     if (stopSoon && stack.size() == 0 && !current.ReadBracket)
@@ -258,7 +258,7 @@ public class TypeParser {
                                 "in order to indicate what you mean.", i);
                     else if (current.ReadBracket && current.ReadComma && current.Right instanceof AtomicType)
                         // <e, et>
-                        current.Right = new CompositeType(current.Right, at);
+                        current.Right = CompositeType.get(current.Right, at);
                     else
                         throw new SyntaxException("The expression is ambiguous. Add some angle brackets <>.", i);
                 }
@@ -392,12 +392,12 @@ public class TypeParser {
                             "type with a comma when the type is surrounded by " +
                             "angle brackets < >. Add brackets around the whole type, or " +
                             "remove the comma.", start);
-            return new ParseResult(new CompositeType(current.Left, current.Right), type.length()-1);
+            return new ParseResult(CompositeType.get(current.Left, current.Right), type.length()-1);
         }
     }
     
-    private static ParseState closeType(Stack domains, ParseState current) {
-        Type ct = new CompositeType(current.Left, current.Right);
+    private static ParseState closeType(ArrayDeque domains, ParseState current) {
+        Type ct = CompositeType.get(current.Left, current.Right);
         if (domains.size() == 0) {
             current.FinalBracket = true;
             return current;
@@ -405,7 +405,7 @@ public class TypeParser {
             current = (ParseState) domains.pop();
             if (current.ParsingProduct) {
                 if (current.JustClosedProduct) {
-                    current.Left = new ProductType(new Type[]{current.Left, ct});
+                    current.Left = ProductType.get(new Type[]{current.Left, ct});
                 } else {
                     current.Left = addProduct(current.Left, ct);
                 }
@@ -425,12 +425,12 @@ public class TypeParser {
 //        while (true) {
 //            if (current.ParsingProduct) {
 //                if (current.JustClosedProduct) {
-//                    ct = new ProductType(new Type[]{current.Left, ct});
+//                    ct = ProductType.get(new Type[]{current.Left, ct});
 //                } else {
 //                    ct = addProduct(current.Left, ct);
 //                }
 //            } else {
-//                ct = new CompositeType(current.Left, current.Right);
+//                ct = CompositeType.get(current.Left, current.Right);
 //            }
 //            if (domains.size() == 0) {
 //                current = new ParseState();
@@ -449,7 +449,7 @@ public class TypeParser {
 //        }
 //    }
 
-    private static ParseState closeProductType(Stack domains, ParseState current) {
+    private static ParseState closeProductType(ArrayDeque domains, ParseState current) {
         Type pt = current.Left;
         if (domains.size() == 0) {
             current = new ParseState();
@@ -461,7 +461,7 @@ public class TypeParser {
         current = (ParseState)domains.pop();
         if (current.ParsingProduct) {
             if (current.JustClosedProduct) {
-                current.Left = new ProductType(new Type[]{current.Left, pt});
+                current.Left = ProductType.get(new Type[]{current.Left, pt});
             } else {
                 current.Left = addProduct(current.Left, pt);
             }
@@ -482,9 +482,9 @@ public class TypeParser {
             for (int i = 0; i < pt.getSubTypes().length; i++)
                 st[i] = pt.getSubTypes()[i];
             st[st.length-1] = t2;
-            return new ProductType(st);
+            return ProductType.get(st);
         } else {
-            return new ProductType(new Type[] { t, t2 });
+            return ProductType.get(new Type[] { t, t2 });
         }
     }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ * 
+ * This file is part of The Lambda Calculator.
+ * 
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * TypeUnifier.java
+ */
+
+package lambdacalc.logic;
+
+import java.util.*;
+
+/**
+ * Unifies pairs of types by union-find over their type variables.
+ *
+ * The two types being unified are kept apart: a variable 'a on the left and
+ * a variable 'a on the right are different variables, just as they are when a
+ * polymorphic function is applied to a polymorphic argument. Each variable of
+ * each side is interned as a single node, so every occurrence of 'a on one
+ * side refers to the same node and no type objects are ever renamed.
+ *
+ * Unifying two variables merges their classes (union by rank, with path
+ * compression on lookup). Unifying a variable with any other type binds the
+ * variable's class to that type as it stands, without substituting into it;
+ * substitutions are applied only when a type is resolved afterwards.
+ * A variable never unifies with a product type, and a variable never unifies
+ * with a type that contains it.
+ */
+class TypeUnifier {
+    static final int LEFT = 0;
+    static final int RIGHT = 1;
+
+    /**
+     * A type variable on one side. Nodes form a forest in which each tree is
+     * a class of variables that have been unified together.
+     */
+    private static class Node {
+        final VarType var;
+        final int side;
+        final int order; // the order in which the nodes were created
+        Node parent = this;
+        int rank;
+
+        // These fields are meaningful only at the root of a class.
+        Node first = this; // the earliest variable in the class, which stands for it
+        Type bound; // the type the class is bound to, or null
+        int boundSide; // the side whose variables occur in bound
+
+        Node(VarType var, int side, int order) {
+            this.var = var;
+            this.side = side;
+            this.order = order;
+        }
+    }
+
+    private final HashMap[] vars = { new HashMap(), new HashMap() };
+    private int count = 0;
+
+    /**
+     * Unifies t1, a type on side s1, with t2, a type on side s2.
+     * @return false if the types cannot be unified, in which case the
+     * unifier should be discarded
+     */
+    boolean unify(Type t1, int s1, Type t2, int s2) {
+        if (t1 instanceof VarType) {
+            if (t2 instanceof ProductType)
+                return false;
+            return bind(intern((VarType)t1, s1), t2, s2);
+        }
+        if (t2 instanceof VarType) {
+            if (t1 instanceof ProductType)
+                return false;
+            return bind(intern((VarType)t2, s2), t1, s1);
+        }
+        if (t1 instanceof ConstType)
+            return t1.equals(t2);
+        if (t1 instanceof CompositeType) {
+            if (!(t2 instanceof CompositeType))
+                return false;
+            CompositeType c1 = (CompositeType)t1, c2 = (CompositeType)t2;
+            return unify(c1.getLeft(), s1, c2.getLeft(), s2)
+                && unify(c1.getRight(), s1, c2.getRight(), s2);
+        }
+        if (t1 instanceof ProductType) {
+            if (!(t2 instanceof ProductType))
+                return false;
+            Type[] p1 = ((ProductType)t1).getSubTypes(), p2 = ((ProductType)t2).getSubTypes();
+            if (p1.length != p2.length)
+                return false;
+            for (int i = 0; i < p1.length; i++)
+                if (!unify(p1[i], s1, p2[i], s2))
+                    return false;
+            return true;
+        }
+        return t1.equals(t2);
+    }
+
+    /**
+     * Unifies the class of node v with the type t on side s.
+     */
+    private boolean bind(Node v, Type t, int s) {
+        Node r = find(v);
+
+        if (t instanceof VarType) {
+            Node r2 = find(intern((VarType)t, s));
+            if (r == r2)
+                return true;
+
+            Type b1 = r.bound, b2 = r2.bound;
+            int bs1 = r.boundSide, bs2 = r2.boundSide;
+            Node first = r.first.order <= r2.first.order ? r.first : r2.first;
+
+            // union by rank
+            if (r.rank < r2.rank) {
+                Node x = r; r = r2; r2 = x;
+            }
+            r2.parent = r;
+            if (r.rank == r2.rank)
+                r.rank++;
+            r.first = first;
+
+            if (b1 == null && b2 == null)
+                return true;
+
+            // Merging the classes may not make a variable contain itself.
+            r.bound = null;
+            Type b = b1 != null ? b1 : b2;
+            int bs = b1 != null ? bs1 : bs2;
+            if (occurs(r, b, bs))
+                return false;
+            r.bound = b;
+            r.boundSide = bs;
+            if (b1 != null && b2 != null)
+                return unify(b1, bs1, b2, bs2);
+            return true;
+        }
+
+        if (r.bound != null)
+            return unify(r.bound, r.boundSide, t, s);
+
+        if (occurs(r, t, s))
+            return false;
+        r.bound = t;
+        r.boundSide = s;
+        return true;
+    }
+
+    /**
+     * Tests whether the class rooted at r occurs in t on side s, looking
+     * through the bindings of the variables in t.
+     */
+    private boolean occurs(Node r, Type t, int s) {
+        if (t instanceof VarType) {
+            Node n = lookup((VarType)t, s);
+            if (n == null)
+                return false;
+            n = find(n);
+            if (n == r)
+                return true;
+            return n.bound != null && occurs(r, n.bound, n.boundSide);
+        }
+        if (t instanceof CompositeType)
+            return occurs(r, ((CompositeType)t).getLeft(), s)
+                || occurs(r, ((CompositeType)t).getRight(), s);
+        if (t instanceof ProductType) {
+            Type[] parts = ((ProductType)t).getSubTypes();
+            for (int i = 0; i < parts.length; i++)
+                if (occurs(r, parts[i], s))
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies the unifier to a type on side s, returning the most specific
+     * type it stands for. Variables that are unified with other variables
+     * but never with anything more specific are replaced by the earliest
+     * variable in their class. The same Type object is returned if
+     * nothing in it changes.
+     */
+    Type resolve(Type t, int s) {
+        if (t instanceof VarType) {
+            Node n = lookup((VarType)t, s);
+            if (n == null)
+                return t;
+            n = find(n);
+            if (n.bound != null)
+                return resolve(n.bound, n.boundSide);
+            return n.first.var;
+        }
+        if (t instanceof CompositeType) {
+            CompositeType c = (CompositeType)t;
+            Type l = resolve(c.getLeft(), s);
+            Type r = resolve(c.getRight(), s);
+            if (l == c.getLeft() && r == c.getRight())
+                return t;
+            return CompositeType.get(l, r);
+        }
+        if (t instanceof ProductType) {
+            Type[] parts = ((ProductType)t).getSubTypes();
+            Type[] newParts = null;
+            for (int i = 0; i < parts.length; i++) {
+                Type p = resolve(parts[i], s);
+                if (p != parts[i] && newParts == null)
+                    newParts = parts.clone();
+                if (newParts != null)
+                    newParts[i] = p;
+            }
+            return newParts == null ? t : ProductType.get(newParts);
+        }
+        return t;
+    }
+
+    /**
+     * Gets the variables on side s whose resolution is something other
+     * than themselves, mapped to what they resolve to.
+     */
+    HashMap<Type, Type> getMatches(int s) {
+        HashMap<Type, Type> matches = new HashMap<Type, Type>();
+        for (Iterator i = vars[s].values().iterator(); i.hasNext(); ) {
+            Node n = (Node)i.next();
+            Type t = resolve(n.var, s);
+            if (!t.equals(n.var))
+                matches.put(n.var, t);
+        }
+        return matches;
+    }
+
+    private Node intern(VarType v, int s) {
+        Character key = Character.valueOf(v.getSymbol());
+        Node n = (Node)vars[s].get(key);
+        if (n == null) {
+            n = new Node(v, s, count++);
+            vars[s].put(key, n);
+        }
+        return n;
+    }
+
+    private Node lookup(VarType v, int s) {
+        return (Node)vars[s].get(Character.valueOf(v.getSymbol()));
+    }
+
+    private static Node find(Node n) {
+        Node root = n;
+        while (root.parent != root)
+            root = root.parent;
+        while (n != root) { // path compression
+            Node next = n.parent;
+            n.parent = root;
+            n = next;
+        }
+        return root;
+    }
+}
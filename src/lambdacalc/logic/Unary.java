@@ -27,11 +27,12 @@
 
 package lambdacalc.logic;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 
 /**
  * Abstract base class of unary operators, including
@@ -56,6 +57,17 @@ public abstract class Unary extends Expr {
      */
     protected abstract Unary create(Expr innerExpr);
     
+    /**
+     * Returns this expression if innerExpr is the very same one that it
+     * has, or else a new one made with create, so that rewriting an
+     * expression shares its unchanged subtrees.
+     */
+    protected final Unary recreate(Expr innerExpr) {
+        if (innerExpr == getInnerExpr())
+            return this;
+        return create(innerExpr);
+    }
+    
     protected boolean equals(Expr e, boolean useMaps, Map thisMap, Map otherMap, boolean collapseAllVars, java.util.Map freeVarMap, boolean matching) {
         
         // ignore parentheses for equality test
@@ -81,7 +93,7 @@ public abstract class Unary extends Expr {
     }
 
     protected Set getVars(boolean unboundOnly) {
-        return getInnerExpr().getVars(unboundOnly);
+        return new HashSet(getInnerExpr().getCachedVars(unboundOnly));
     }
 
     protected Expr performLambdaConversion1(Set accidentalBinders) throws TypeEvaluationException {
@@ -94,7 +106,7 @@ public abstract class Unary extends Expr {
 
     protected Expr performLambdaConversion2(Var var, Expr replacement, Set binders, Set accidentalBinders) throws TypeEvaluationException {
         // In the scope of a lambda...
-        return create(getInnerExpr().performLambdaConversion2(var, replacement, binders, accidentalBinders));
+        return recreate(getInnerExpr().performLambdaConversion2(var, replacement, binders, accidentalBinders));
     }
     
     /**
@@ -102,11 +114,21 @@ public abstract class Unary extends Expr {
      * @return a list
      */
     public List getSubExpressions() {
-        Vector result = new Vector(1);
+        ArrayList result = new ArrayList(1);
         result.add(this.getInnerExpr());
         return result;
     }
     
+    public int getSubExpressionCount() {
+        return 1;
+    }
+    
+    public Expr getSubExpression(int index) {
+        if (index != 0)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        return this.getInnerExpr();
+    }
+    
     /**
      * Creates a new unary expression using the subexpression given.
      *
@@ -123,14 +145,14 @@ public abstract class Unary extends Expr {
     }
 
     protected Expr createAlphabeticalVariant(Set bindersToChange, Set variablesInUse, Map updates) {
-        return create(getInnerExpr().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
+        return recreate(getInnerExpr().createAlphabeticalVariant(bindersToChange, variablesInUse, updates));
     }
     
     public Expr createAlphatypicalVariant(HashMap<Type,Type> alignments, Set variablesInUse, Map updates) {
-        return create(getInnerExpr().createAlphatypicalVariant(alignments, variablesInUse, updates));
+        return recreate(getInnerExpr().createAlphatypicalVariant(alignments, variablesInUse, updates));
     }
 
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF(getClass().getName());
         output.writeShort(0); // data format version
         innerExpr.writeToStream(output);
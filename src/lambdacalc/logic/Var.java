@@ -115,12 +115,15 @@ public class Var extends Identifier {
         if (!this.equals(var))
             return this;
         
-        Set freevars = replacement.getFreeVars();
+        Set freevars = replacement.getCachedVars(true);
         
         // In any case, we'll just return our replacement. However, we must check
         // if any free variables in the replacement would be accidentally bound
         // by any of the binders that scope over this variable. We'll do this
-        // inefficiently because expressions ought to be fairly small.
+        // inefficiently because expressions ought to be fairly small, but
+        // there is nothing to check if the replacement has no free variables.
+        if (freevars.isEmpty())
+            return replacement;
         for (Iterator bi = binders.iterator(); bi.hasNext(); ) {
             VariableBindingExpr b = (VariableBindingExpr)bi.next();
             if (b.bindsAny(freevars))
@@ -33,13 +33,17 @@ import java.util.*;
  */
 public class VarType extends AtomicType {
     
-    private char symbol;
+    private final char symbol;
     
     /**
-     * Creates a new instance of VarType
+     * Gets the VarType with the given symbol.
      * @param symbol the type, like e or t
      */
-    public VarType(char symbol) {
+    public static VarType get(char symbol) {
+        return (VarType)intern(new VarType(symbol));
+    }
+    
+    private VarType(char symbol) {
         this.symbol=symbol;
     }
         
@@ -219,26 +223,11 @@ public class VarType extends AtomicType {
         return toString();
     }
     
-    protected boolean equals(Type t) {
+    protected boolean sameStructure(Type t) {
 	if(t instanceof VarType){
 	    return (this.getSymbol() == ((VarType) t).getSymbol());
 	}
 	return false;
-    }  
-    
-    /**
-     * Tests whether a VarType can be unified with another type.
-     * @param t The Type to be unified with.
-     * @return A MatchPair containing the variable mappings (unifier) of the two types, 
-     * so long as the other Type is not productType, in which case it returns null. 
-     */
-    public MatchPair matches(Type t){
-	if(t instanceof ProductType)
-	    return null;
-
-	MatchPair pair = new MatchPair(this, t);
-	pair.setMatches(this, this, t);
-	return pair;
     }
     
     public boolean containsVar() {
@@ -246,10 +235,10 @@ public class VarType extends AtomicType {
     }
     
     public int hashCode() {
-        return String.valueOf(symbol).hashCode(); // better way of doing this?
+        return symbol; // the same as String.valueOf(symbol).hashCode()
     }
     
-    public void writeToStream(java.io.DataOutputStream output) throws java.io.IOException {
+    protected void writeFormat2(java.io.DataOutputStream output) throws java.io.IOException {
         output.writeUTF("VarType");
         output.writeShort(0); // data format version
         output.writeChar(symbol);
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2007-2014 Dylan Bumford, Lucas Champollion, Maribel Romero
+ * and Joshua Tauberer
+ *
+ * This file is part of The Lambda Calculator.
+ *
+ * The Lambda Calculator is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * The Lambda Calculator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with The Lambda Calculator.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ * ExprSharingTest.java
+ */
+
+package lambdacalc.logic;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that lambda conversion and alphabetical variation return the
+ * subexpressions they don't change as they are, i.e. the same instances,
+ * rather than copies of them.
+ */
+public class ExprSharingTest {
+
+    private static Expr parse(String expression) throws SyntaxException {
+        return ExpressionParser.parse(expression, new ExpressionParser.ParseOptions(false, true));
+    }
+
+    // Finds the subexpression of e that is equal to target and returns that
+    // instance, or null if there is none.
+    private static Expr find(Expr e, Expr target) {
+        if (e.equals(target))
+            return e;
+        for (Iterator i = e.getSubExpressions().iterator(); i.hasNext(); ) {
+            Expr found = find((Expr)i.next(), target);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+
+    private static void assertShared(Expr before, Expr after, String subexpression) throws SyntaxException {
+        Expr sub = parse(subexpression);
+        Expr original = find(before, sub);
+        assertNotNull(subexpression + " is in " + before, original);
+        assertSame(subexpression + " is shared by " + after, original, find(after, sub));
+    }
+
+    @Test
+    public void lambdaConversionSharesSubtreesOutsideTheRedex() throws Exception {
+        Expr e = parse("[Lx.P(x)](a) & Q(b)");
+        Expr r = e.performLambdaConversion().result;
+        assertEquals(parse("P(a) & Q(b)"), r);
+        assertShared(e, r, "Q(b)");
+    }
+
+    @Test
+    public void lambdaConversionSharesSubtreesWithoutTheVariable() throws Exception {
+        Expr e = parse("[Lx.[P(x) & [Q(b) & R(b)]]](a)");
+        Expr r = e.performLambdaConversion().result;
+        assertEquals(parse("P(a) & [Q(b) & R(b)]"), r);
+        assertShared(e, r, "[Q(b) & R(b)]");
+    }
+
+    @Test
+    public void alphabeticalVariantSharesSubtreesWithoutTheVariable() throws Exception {
+        // y would be captured by Ly, so Ly is renamed first.
+        Expr e = parse("[Lx.Ly.[P(x) & P(y) & Q(b)]](y)");
+        Expr.LambdaConversionResult r = e.performLambdaConversion();
+        assertNotNull(r.alphabeticalVariant);
+        assertShared(e, r.alphabeticalVariant, "Q(b)");
+        assertShared(e, r.result, "Q(b)");
+    }
+
+    @Test
+    public void alphabeticalVariantWithNothingToChangeIsTheSameInstance() throws Exception {
+        Expr e = parse("Lx.Ly.[P(x) & Q(y)]");
+        assertSame(e, e.createAlphabeticalVariant(new HashSet(), e.getAllVars(), new HashMap()));
+    }
+}